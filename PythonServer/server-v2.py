@@ -45,8 +45,8 @@ class host:
     def increment(self):
         self.number += 1
 
-hostsA = [] #List of hosts that sent a request to /hostA
-hostsB = [] #List of hosts that sent a request to /hostB
+hostsA = {} #Hosts that sent a request to /hostA, indexed by IP address
+hostsB = {} #Hosts that sent a request to /hostB, indexed by IP address
 
 # FUNCTION: respond((host) targetHost, (string) originPage, (bool) legit)
 # RETURNS: Flask response with the appropriate security header (depending on whether the request
@@ -103,7 +103,7 @@ def respond(targetHost, originPage, legit):
 #                                                       PROCESS                                                   #
 # 1. Extract the necessary information (i.e., the ip address and the content of the X-Time-Sent header) from the  #
 #    request                                                                                                      #
-# 2. Look for the host in the list of saved hosts                                                                 #
+# 2. Look for the host in the saved hosts (dictionary lookup by IP address)                                       #
 # 3. If the host never contacted the approute, create an instance of the host class using the ip address and the  #
 #    supplied time of the first request, then add it to the relevant hosts list                                   #
 # 4. Generate a local checksum to be compared with the one sent by the client application                         #
@@ -115,19 +115,13 @@ def respond(targetHost, originPage, legit):
 @app.route('/hostA', methods=['GET','POST'])
 def resultA():
     global hostsA
-    present = False
     ipAddr = request.remote_addr
     timeSent = request.headers.get('X-Time-Sent')
-    for computer in hostsA:
-        if computer.ip == ipAddr:
-            present = True
-            tempHost = computer
-            break
-    if(not(present)):
+    tempHost = hostsA.get(ipAddr)
+    if(tempHost is None):
         print("Adding this host to A's list: ", ipAddr)
-        tempHost = host(ipAddr, timeSent, 0)
+        tempHost = hostsA.setdefault(ipAddr, host(ipAddr, timeSent, 0))
         print("IP: ", ipAddr, " TIME : ", timeSent)
-        hostsA.append(tempHost)
     expectedChecksum = str(tempHost.generateHash())
     receivedChecksum = str(request.headers.get('X-CheckSum'))
     checked = (expectedChecksum == receivedChecksum)
@@ -136,19 +130,13 @@ def resultA():
 @app.route('/hostB', methods=['GET','POST'])
 def resultB():
     global hostsB
-    present = False
     ipAddr = request.remote_addr
     timeSent = request.headers.get('X-Time-Sent')
-    for computer in hostsB:
-        if computer.ip == ipAddr:
-            present = True
-            tempHost = computer
-            break
-    if(not(present)):
+    tempHost = hostsB.get(ipAddr)
+    if(tempHost is None):
         print("Adding this host to B's list: ", ipAddr)
-        tempHost = host(ipAddr, timeSent, 0)
+        tempHost = hostsB.setdefault(ipAddr, host(ipAddr, timeSent, 0))
         print("IP: ", ipAddr, " TIME : ", timeSent)
-        hostsB.append(tempHost)
     expectedChecksum = str(tempHost.generateHash())
     receivedChecksum = str(request.headers.get('X-CheckSum'))
     checked = (expectedChecksum == receivedChecksum)
@@ -10,26 +10,40 @@ import android.widget.Button;
 import android.widget.EditText;
 import android.widget.TextView;
 
-import com.android.volley.AuthFailureError;
 import com.android.volley.Request;
 import com.android.volley.RequestQueue;
 import com.android.volley.Response;
 import com.android.volley.VolleyError;
+import com.android.volley.toolbox.BaseHttpStack;
 import com.android.volley.toolbox.HurlStack;
 import com.android.volley.toolbox.Volley;
+import com.example.requestsender.core.AsyncLogWriter;
+import com.example.requestsender.core.ChecksumEncoding;
+import com.example.requestsender.core.ChecksumMode;
+import com.example.requestsender.core.ConnectionEvent;
+import com.example.requestsender.core.ConnectionEventLog;
+import com.example.requestsender.core.ConnectionOutcome;
+import com.example.requestsender.core.Host;
+import com.example.requestsender.core.HostJournal;
+import com.example.requestsender.core.HostLoader;
+import com.example.requestsender.core.HostRegistry;
+import com.example.requestsender.core.HostStore;
+import com.example.requestsender.core.MappedHostTable;
+import com.example.requestsender.core.PrometheusExporter;
+import com.example.requestsender.core.RequestMetrics;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.URL;
-import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
-import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.HttpsURLConnection;
@@ -38,16 +52,31 @@ import javax.net.ssl.SSLSession;
 public class MainActivity extends AppCompatActivity {
 
     //region Variables declaration
-    ArrayList<Host> hosts = new ArrayList<>(); //Local list of the saved hosts
+    HostRegistry hosts = new HostRegistry(); //Local index of the saved hosts, by address
     String targetA = "https://192.168.0.17:5000/hostA"; //URL of one host
     String targetB = "https://192.168.0.17:5000/hostB"; //URL of another host
     TextView communicationText; //Initialization fo the TextView that will be used to communicate with the user
-    private String hostsFile = "hosts.txt"; //Log/Database file used for hosts persistence when the app is closed
+    private String hostsFile = "hosts.txt"; //Legacy database file used for hosts persistence by the previous versions
     private String systemLogFile = "applog.txt"; //Log file used for debugging
     private String connexLogFile = "connlog.txt"; //Log file used to save all connexion related events
+    private String connexEventFile = "connlog.bin"; //Binary log of the connexion events, queried with ConnectionLogQuery
+    private String metricsFile = "metrics.prom"; //Metrics of the requests, written when the activity is stopped or destroyed
     private String filesPath = "dataSource"; //Folder in which the log and database files are stored
-    File externalHostsFile; //Initialization of the database file
-    File externalLogFile; //Initialization of the log file (its value will change depending on which kind of log is necessary)
+    private static final boolean MAPPED_HOST_TABLE = true; //Store the hosts in a memory-mapped table (false: host journal)
+    private static final long STORE_SYNC_BUDGET_MILLIS = 50; //Maximum time a verified counter waits before being on the disk
+    private static final boolean POOLED_TRANSPORT = true; //Send the requests on pooled, multiplexed connections (false: one HttpURLConnection per request)
+    private static final int BATCH_SIZE = 1; //Protected operations packed in each request (1: one per request, the server must support X-Batch-Size otherwise)
+    private static final ChecksumMode CHECKSUM_MODE = ChecksumMode.LEGACY; //Checksum algorithm of the hosts (HMAC_SHA256 needs a server supporting X-Checksum-Mode)
+    private static final ChecksumEncoding CHECKSUM_ENCODING = ChecksumEncoding.HEX; //Encoding of the checksums in the headers (BASE64URL/BASE64URL_128 need a server supporting X-Checksum-Encoding)
+    private static final int PIPELINE_WINDOW = 0; //Requests that can be in flight per host (0: one at a time, the server must process them in order)
+    File externalHostsFile; //Legacy database file, only read to import its hosts in the host store
+    volatile HostStore hostStore; //Persistent storage of the hosts (memory-mapped table or host journal), set once loaded
+    AsyncLogWriter connexionLog; //Writer of the connexion log file (connlog.txt)
+    AsyncLogWriter systemLog; //Writer of the application log file (applog.txt)
+    ConnectionEventLog connexionEvents; //Writer of the binary connexion event log (connlog.bin)
+    OkHttpStack pooledStack; //Transport of the request queue when POOLED_TRANSPORT is enabled
+    RequestMetrics metrics = new RequestMetrics(); //Durations of the stages of the requests and outcomes per host
+    ExecutorService persistenceExecutor = Executors.newSingleThreadExecutor(); //Thread persisting and logging the verdicts
     //endregion
 
     //region Network ToolBox
@@ -81,64 +110,61 @@ public class MainActivity extends AppCompatActivity {
         };
     }
 
-    /* FUNCTION: mResponseListener.onResponse(secureRequests.secureResponse response)
+    /* FUNCTION: mResponseListener.onResponse(secureRequests.Verdict verdict)
     *  RETURNS: void
     *  PARAMETERS:
-    *       - secureRequests.secureResponse response: response given by the server
+    *       - secureRequests.Verdict verdict: result of the security assessment of the response
     *
-    *  AIM: Handle the response to the request from the server to assess the security status of the
-    *  communication
-    *
-    *  OUTPUT: Displays the result of the security assessment and logs it into a text file.
+    *  AIM: Show the result of the security assessment of a response to the user. The response was
+    *  already verified by secureRequests on a network thread, and the event is persisted and logged by
+    *  recordVerdict() on the persistence thread: this listener, called on the UI thread, only displays.
     *
     *  PROCESS:
-    *       1. Get the "X-Checksum" header from the response
-    *       2. Call the function "Evaluate" and store its result in the boolean "legitimate"
-    *       3. If the response IS meeting the security requirements, its content is examined
-    *           A. If the server replied normally to the request, the user is informed through the use
-    *              of the "communicationText" communicationText, and the event is logged internally.
-    *           B. If the server denied us access to the content because the client request WAS NOT
-    *              meeting the security requirements, the user is informed through the use of the
-    *              "communicationText" communicationText, and the event is logged internally.
-    *       4. If the response IS NOT meeting the security requirements
-    *           A. The user is warned through the use of the "communicationText" TextView
-    *           B. The incident is logged internally so that an investigator could assess the security
-    *              of the connexion if forensics investigations are necessary
+    *       1. If the response IS meeting the security requirements, its content is displayed through the
+    *          use of the "communicationText" TextView (the server either granted or denied the access)
+    *       2. If the response IS NOT meeting the security requirements, the user is warned through the
+    *          use of the "communicationText" TextView
     */
-    public Response.Listener<secureRequests.secureResponse> mResponseListener = new Response.Listener<secureRequests.secureResponse>() {
+    public Response.Listener<secureRequests.Verdict> mResponseListener = new Response.Listener<secureRequests.Verdict>() {
         @Override
-        public void onResponse(secureRequests.secureResponse response) {
-            String localChecksum = "";
-            Boolean legitimate = false;
-            localChecksum = response.getHeaders().get("X-Checksum"); // STEP 1
-            legitimate = Evaluate(localChecksum, response.getOriginHost()); // STEP 2
-            response.getOriginHost().IncrementNbPacket();
-            if(legitimate) { //STEP 3
-                if(response.getResponseBody().contains("GRANTED")) { //STEP 3.A
-                    String connexionInfo =
-                            nowTime() + " - " + response.getOriginHost().getRemoteAddress() +
-                            " - VALIDATED US at " + response.getOriginHost().getNbPacket().toString() + " packets!";
-                    updateHostDatabaseEntry(getApplicationContext(), response.getOriginHost());
-                    logConnexion(false, false, connexionInfo);
-                }
-                else{ //STEP 3.B
-                    String connexionInfo =
-                            nowTime() + " - " + response.getOriginHost().getRemoteAddress() +
-                            " - REJECTED US at " + response.getOriginHost().getNbPacket().toString() + " packets!";
-                    logConnexion(true, true, connexionInfo);
-                }
-                communicationText.setText(response.getResponseBody());
+        public void onResponse(secureRequests.Verdict verdict) {
+            if(verdict.isLegitimate()) { //STEP 1
+                communicationText.setText(verdict.getMessage());
             }
-            else{ //STEP 4
-                String connexionInfo =
-                        nowTime() + response.getOriginHost().getRemoteAddress() +
-                        " - ISSUED A WRONG CHECKSUM at " + response.getOriginHost().getNbPacket().toString() + " packets!";
-                logConnexion(true, false, connexionInfo);
+            else{ //STEP 2
                 communicationText.setText("WARNING: The connection is unsafe, the host did not give the correct hash !");
             }
         }
     };
 
+    /* FUNCTION: mVerdictRecorder.record(secureRequests.Verdict verdict)
+    *  RETURNS: void
+    *  PARAMETERS:
+    *       - secureRequests.Verdict verdict: result of the security assessment of a response
+    *
+    *  AIM: Called on the network thread that assessed the response: hand the verdict to the persistence
+    *  thread, so that neither the network threads nor the UI thread wait for the disk. The requests that
+    *  got no response are counted as NETWORK_ERROR in the metrics, with the time it took them to fail.
+    */
+    public secureRequests.VerdictRecorder mVerdictRecorder = new secureRequests.VerdictRecorder() {
+        @Override
+        public void record(secureRequests.Verdict verdict) {
+            try {
+                persistenceExecutor.execute(() -> recordVerdict(verdict));
+            } catch (RejectedExecutionException e) {
+                Log.e("Main Error", "Verdict received after the activity was destroyed: " + verdict.getOutcome());
+            }
+        }
+
+        @Override
+        public void recordError(Host host, long failedAfterNanos) {
+            metrics.recordOutcome(host.getRemoteAddress(), ConnectionOutcome.NETWORK_ERROR);
+            if (failedAfterNanos >= 0) {
+                metrics.record(RequestMetrics.Stage.FAILED, failedAfterNanos);
+            }
+        }
+    };
+
     /* FUNCTION: mErrorListener.onErrorResponse(VolleyError error)
     *  RETURNS: void
     *  PARAMETERS:
@@ -168,19 +194,6 @@ public class MainActivity extends AppCompatActivity {
         return java.text.DateFormat.getDateTimeInstance().format(new Date());
     }
 
-    /* FUNCTION: Evaluate(String checksum, Host host)
-     * RETURNS: Boolean
-     * PARAMETERS:
-     *      - String checksum: the checksum provided by the server
-     *      - Host host: the host which sent the request
-     *
-     * AIM: Compare the checksum received from the server with the one that should be generated by
-     * the host (hence the call to generateHash())
-     */
-    private Boolean Evaluate(String checksum, Host host){
-        return(checksum.equals(host.generateHash()));
-    }
-
     /* FUNCTION: isExternalStorageReadOnly()
      * RETURNS: Boolean
      *
@@ -210,6 +223,65 @@ public class MainActivity extends AppCompatActivity {
     //endregion
 
     //region Log
+    /* FUNCTION: openLogs()
+     * RETURNS: void
+     *
+     * AIM: Open the two log files once, when the activity is created
+     *
+     * PROCESS:
+     *      1. Make sure that the external storage is available and writeable (only once, instead of
+     *         before each event)
+     *      2. Create an AsyncLogWriter for each file (filesPath = dataSource): the events are written
+     *         in batches by a background thread, out of the UI and network callbacks. The connexion
+     *         events are never dropped (the caller waits if the buffer is full) as they may be needed
+     *         for forensics, while the application events are dropped and counted.
+     *      3. Open the binary connexion event log, whose fixed-size records can be filtered quickly
+     */
+    private void openLogs() {
+        if(isExternalStorageAvailable() && !(isExternalStorageReadOnly())) { //STEP 1
+            File logDirectory = getExternalFilesDir(filesPath);
+            try {
+                //STEP 2
+                connexionLog = new AsyncLogWriter(new File(logDirectory, connexLogFile), AsyncLogWriter.OverflowPolicy.BLOCK);
+                systemLog = new AsyncLogWriter(new File(logDirectory, systemLogFile), AsyncLogWriter.OverflowPolicy.DROP);
+                //END OF STEP 2
+                connexionEvents = new ConnectionEventLog(new File(logDirectory, connexEventFile)); //STEP 3
+            } catch (IOException e) {
+                Log.e("Main Error", e.toString());
+            }
+        }
+    }
+
+    /* FUNCTION: closeLogs()
+     * RETURNS: void
+     *
+     * AIM: Write the remaining events and close the log files
+     */
+    private void closeLogs() {
+        try {
+            if(connexionLog != null) { connexionLog.close(); }
+            if(systemLog != null) { systemLog.close(); }
+            if(connexionEvents != null) { connexionEvents.close(); }
+        } catch (IOException e) {
+            Log.e("Main Error", e.toString());
+        }
+    }
+
+    /* FUNCTION: flushLogs()
+     * RETURNS: void
+     *
+     * AIM: Write the events waiting in memory in the three log files, without closing them
+     */
+    private void flushLogs() throws IOException {
+        if(connexionEvents != null) { connexionEvents.flush(); }
+        try {
+            if(connexionLog != null) { connexionLog.flush(); }
+            if(systemLog != null) { systemLog.flush(); }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     /* FUNCTION: logConnexion(boolean isError, boolean isOutbound, String connexionDetails)
      * RETURNS: Boolean
      * PARAMETERS:
@@ -224,9 +296,8 @@ public class MainActivity extends AppCompatActivity {
      *      1. Depending on the type of log (error, outbound...), some prefixes are added to the string "toWrite",
      *         which will be the one used to write in the file
      *      2. The details (date, time, status of connexion) are added to the main string
-     *      3. Make sure that the external storage is available and writeable
-     *      4. Writing in the file with a FileOutputStream (filesPath = dataSource, connexLogFile = "connlog.txt", APPEND)
-     *      5. Returns true if all of the above succeeded
+     *      3. Hand the line to the connexion log writer (connexLogFile = "connlog.txt")
+     *      4. Returns true if all of the above succeeded
      */
     private Boolean logConnexion(boolean isError, boolean isOutbound, String connexionDetails){
         String toWrite = "\n";
@@ -239,21 +310,102 @@ public class MainActivity extends AppCompatActivity {
         //END OF STEP1
         toWrite += connexionDetails; //STEP 2
 
-        if(isExternalStorageAvailable() && !(isExternalStorageReadOnly())) { //STEP 3
-            externalLogFile = new File(getExternalFilesDir(filesPath), connexLogFile);
-            try {
-                //STEP 4
-                FileOutputStream toLogStream = new FileOutputStream(externalLogFile, true);
-                toLogStream.write(toWrite.getBytes());
-                toLogStream.close();
-                //END OF STEP 4
-                written = true;
+        if(connexionLog != null) { //STEP 3
+            written = connexionLog.log(toWrite);
+        }
+        return written; //STEP 4
+    }
 
-            } catch (Exception e) {
-                logEvent("Error", e.toString());
-            }
+    /* FUNCTION: recordVerdict(secureRequests.Verdict verdict)
+     * RETURNS: void
+     * PARAMETERS:
+     *      - secureRequests.Verdict verdict: result of the security assessment of a response
+     *
+     * AIM: Persist and log the result of the security assessment. Runs on the persistence thread, one
+     * verdict after the other, in the order the responses were assessed.
+     *
+     * PROCESS:
+     *      1. If the server validated the request, save the new state of the host and log the event
+     *      2. If the server denied the access, log the event
+     *      3. If the checksum of the response was wrong, log the incident so that an investigator could
+     *         assess the security of the connexion if forensics investigations are necessary. If the
+     *         response resynchronized the host with the server, save its new position and log it too
+     *      4. Record the outcome in the binary connexion log
+     *      5. Record the durations of the stages of the request (including this one) and the outcome in
+     *         the metrics
+     */
+    private void recordVerdict(secureRequests.Verdict verdict) {
+        long start = System.nanoTime();
+        Host host = verdict.getHost();
+        switch (verdict.getOutcome()) {
+            case VALIDATED: //STEP 1
+                updateHostDatabaseEntry(getApplicationContext(), host);
+                logConnexion(false, false, nowTime() + " - " + host.getRemoteAddress() +
+                        " - VALIDATED US at " + verdict.getPackets() + " packets!");
+                break;
+            case REJECTED: //STEP 2
+                logConnexion(true, true, nowTime() + " - " + host.getRemoteAddress() +
+                        " - REJECTED US at " + verdict.getPackets() + " packets!");
+                break;
+            default: //STEP 3
+                logConnexion(true, false, nowTime() + " - " + host.getRemoteAddress() +
+                        " - ISSUED A WRONG CHECKSUM at " + verdict.getPackets() + " packets!");
+                if (verdict.isResynchronized()) {
+                    updateHostDatabaseEntry(getApplicationContext(), host);
+                    logConnexion(false, false, nowTime() + " - " + host.getRemoteAddress() +
+                            " - RESYNCHRONIZED US at " + verdict.getPackets() + " packets!");
+                }
+                break;
+        }
+        recordConnexion(host, verdict.getOutcome(), verdict.getPackets()); //STEP 4
+        //STEP 5
+        metrics.record(RequestMetrics.Stage.HEADERS, verdict.getHeadersNanos());
+        metrics.record(RequestMetrics.Stage.NETWORK, verdict.getNetworkNanos());
+        metrics.record(RequestMetrics.Stage.VERIFICATION, verdict.getVerificationNanos());
+        metrics.record(RequestMetrics.Stage.PERSISTENCE, System.nanoTime() - start);
+        metrics.recordOutcome(host.getRemoteAddress(), verdict.getOutcome());
+        //END OF STEP 5
+    }
+
+    /* FUNCTION: exportMetrics()
+     * RETURNS: void
+     *
+     * AIM: Write a snapshot of the metrics in the metricsFile (metrics.prom), in the Prometheus text format,
+     * so that it can be collected with the log files. metrics.snapshot() gives the same values in memory.
+     */
+    private void exportMetrics() {
+        if(!isExternalStorageAvailable() || isExternalStorageReadOnly()) {
+            return;
+        }
+        File file = new File(getExternalFilesDir(filesPath), metricsFile);
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            new PrometheusExporter().export(metrics.snapshot(), out);
+        } catch (IOException e) {
+            logEvent("Error", "Cannot export the metrics: " + e.toString());
+        }
+    }
+
+    /* FUNCTION: recordConnexion(Host host, ConnectionOutcome outcome, long packets)
+     * RETURNS: void
+     * PARAMETERS:
+     *      - Host host: the host of the connexion
+     *      - ConnectionOutcome outcome: result of the security assessment
+     *      - long packets: number of packets exchanged once the response is handled
+     *
+     * AIM: Append the event to the binary connexion log (connlog.bin), with the hash of the address of the
+     * host instead of the address itself (unlike the id of the host in the store, the hash is never given
+     * to another host after a purge)
+     */
+    private void recordConnexion(Host host, ConnectionOutcome outcome, long packets) {
+        if(connexionEvents == null) {
+            return;
+        }
+        try {
+            connexionEvents.append(new ConnectionEvent(System.currentTimeMillis(),
+                    HostRegistry.addressHash(host.getRemoteAddress()), outcome, packets));
+        } catch (IOException e) {
+            logEvent("Error", "Cannot record the connexion event: " + e.toString());
         }
-        return written; //STEP 5
     }
 
     /* FUNCTION: logEvent(String eventType, String connexionDetails)
@@ -269,8 +421,8 @@ public class MainActivity extends AppCompatActivity {
      *      1. Depending on the type of log (error, information...), some prefixes are added to the string "toWrite",
      *         which will be the one used to write in the file
      *      2. The details (date, time, error message) are added to the main string
-     *      3. Make sure that the external storage is available and writeable
-     *      4. Writing in the file with a FileOutputStream (filesPath = dataSource, connexLogFile = "applog.txt", APPEND)
+     *      3. Hand the line to the application log writer (systemLogFile = "applog.txt"), or to the system
+     *         log if the file could not be opened
      */
     private void logEvent(String eventType, String eventContent){
         String toWrite = "\n";
@@ -279,18 +431,11 @@ public class MainActivity extends AppCompatActivity {
         toWrite += nowTime() + " - ";
         toWrite += eventContent; //STEP 2
 
-        if(isExternalStorageAvailable() && !(isExternalStorageReadOnly())) { //STEP 3
-            externalLogFile = new File(getExternalFilesDir(filesPath), systemLogFile);
-            try {
-                //STEP 4
-                FileOutputStream toLogStream = new FileOutputStream(externalLogFile, true);
-                toLogStream.write(toWrite.getBytes());
-                toLogStream.close();
-                //END OF STEP 4
-
-            } catch (Exception e) {
-                Log.e("Main Error", e.toString());
-            }
+        if(systemLog != null) { //STEP 3
+            systemLog.log(toWrite);
+        }
+        else{
+            Log.e("Main Error", toWrite);
         }
     }
     //endregion
@@ -302,109 +447,88 @@ public class MainActivity extends AppCompatActivity {
         being able to connect securely and reliably with the hosts. The persistence is maintained
         even if the mobile device is restarted.
 
-        The structure of each line in the "hosts.txt" file is the following:
-        [HOST EXACT ADDRESS];[TIME OF THE FIRST PACKET SENT];[PACKET NUMBER EXPECTED ON THE NEXT RESPONSE]
+        The hosts are stored in a HostStore instead of being rewritten after each validated response:
+            - MappedHostTable (default): fixed-width slots of a memory-mapped file, saving the counter
+              of a host is one in-place 8-byte write and loading the table needs no parsing
+            - HostJournal: a snapshot of all the hosts plus an append-only journal, saving the counter
+              of a host is a single small append
+        See the classes for the formats.
         The host exact address (complete URL) was used in this experimentation as it was not possible to
         handle different IPs. The two hosts (https://192.168.0.17:5000/[hostA||hostB]) actually represent
         two different webservers.
+
+        The "hosts.txt" file of the previous versions has the following structure:
+        [HOST EXACT ADDRESS];[TIME OF THE FIRST PACKET SENT];[PACKET NUMBER EXPECTED ON THE NEXT RESPONSE]
+        It is imported in the store the first time the application starts with an empty store (see
+        LegacyHostsMigrator: converted into the snapshot of a new HostJournal, or added host by host).
+
+        The hosts are loaded on the persistence thread (see HostLoader), so that the user interface is
+        shown at once whatever the number of hosts: the buttons are enabled when the load is over.
      */
 
-    /* FUNCTION: getHostsFromFile(Context context)
-     * RETURNS: ArrayList<Host>
-     * PARAMETERS:
-     *      - Context context: context of the application
+    /* FUNCTION: loadHosts()
+     * RETURNS: String (the status to show to the user)
+     * PARAMETERS: none
      *
-     * AIM: Retrieve the hosts from the file "hosts.txt"
+     * AIM: Fill the hosts registry from the host store. Runs on the persistence thread, before any
+     * verdict can be recorded.
      *
      * PROCESS:
      *      1. Check if the external storage is available
-     *      2. If the hosts file does not exists, create it
-     *          A. Check if the external storage is writeable
-     *          B. Write nothing in the file with a FileOutputStream and a FileWriter to create it
-     *      3. Create the necessary components to read and save the content of the hosts.txt file
-     *      4. Prepare the information of each line to create the Host instances
-     *          A. Check that the line is not null (which would mean the reader reached the end of the file)
-     *          B. Splits the line under the ";" character (used to separate a Host attributes)
-     *          C. Check that there are more than 2 elements (to prevent empty lines or incomplete information)
-     *          D. Creates an instance of the Host class with the given parameters
-     *          E. Add this instance to the list of hosts
-     *      5. Return the hosts list
+     *      2. Open the store, load its hosts (importing the legacy "hosts.txt" file if the store is
+     *         empty) and register them. The counters are synced to the disk in groups, at most
+     *         STORE_SYNC_BUDGET_MILLIS after being written (or as soon as 32 updates of the table wait).
+     *      3. Set the checksum mode and encoding, and enable the pipelined mode of the loaded hosts
+     *      4. Log how many hosts were loaded and how long it took, and return it
      */
-    private ArrayList<Host> getHostsFromFile(Context context){
-        ArrayList<Host> hostsListFromFile = new ArrayList<>();
+    private String loadHosts(){
         try{
-            if(isExternalStorageAvailable()) { //STEP 1
-                if(!(externalHostsFile.exists())){ //STEP 2
-                    if(isExternalStorageAvailable() && !(isExternalStorageReadOnly())) { //STEP 2.A
-                        try {
-                            //STEP 2.B
-                            FileOutputStream toHostsFile = new FileOutputStream(externalLogFile, true);
-                            FileWriter writer = new FileWriter(externalHostsFile);
-                            writer.write("");
-                            writer.close();
-                            toHostsFile.close();
-                            //END OF STEP 2.B
-                        } catch (Exception e) {
-                            logEvent("Error", e.toString());
-                        }
-                    }
-                }
-                //STEP 3
-                FileInputStream fis = new FileInputStream(externalHostsFile);
-                if (null != fis) {
-                    InputStreamReader hostsFileReader = new InputStreamReader(fis);
-                    BufferedReader hostsFileBuffReader = new BufferedReader(hostsFileReader);
-                    String line = "";
-                    //END OF STEP 3
-
-                    while ((line = hostsFileBuffReader.readLine()) != null) { //STEP 4.A
-                        String[] tempContent = line.split(";"); //STEP 4.B
-                        if(tempContent.length >=2) { //STEP 4.C
-                            Host tempHost = new Host(tempContent[0], tempContent[1], (Integer.parseInt(tempContent[2]) - 2)); //STEP 4.D
-                            hostsListFromFile.add(tempHost); //STEP 4.E
-                        }
-                    }
-
-                    fis.close();
-                }
-            }
-            else{
+            if(!isExternalStorageAvailable()) { //STEP 1
                 logEvent("Info", "External Storage Not Available");
+                return "External Storage Not Available";
+            }
+            File storeDirectory = getExternalFilesDir(filesPath);
+            HostStore store = MAPPED_HOST_TABLE ? new MappedHostTable(storeDirectory, 32, STORE_SYNC_BUDGET_MILLIS)
+                    : new HostJournal(storeDirectory, HostJournal.DEFAULT_COMPACT_EVERY, STORE_SYNC_BUDGET_MILLIS);
+            HostLoader.Result result = HostLoader.load(store, externalHostsFile, hosts); //STEP 2
+            hostStore = store;
+            for (Host loadedHost : hosts) { //STEP 3
+                loadedHost.setChecksumMode(CHECKSUM_MODE);
+                loadedHost.setChecksumEncoding(CHECKSUM_ENCODING);
+                loadedHost.enablePipelining(PIPELINE_WINDOW);
+            }
+            //STEP 4
+            if(!result.isLegacyRenamed()) {
+                logEvent("Error", "Could not rename " + externalHostsFile.getPath());
             }
-        } catch (FileNotFoundException notFound) {
-            logEvent("Error", notFound.toString());
+            logEvent("Info", result.toString());
+            return result.toString();
         } catch (IOException ioE){
             logEvent("Error", ioE.toString());
+            return "AN ERROR OCCURED: " + ioE.getMessage();
         }
-        return hostsListFromFile; //STEP 5
     }
 
     /* FUNCTION: addHostToDatabase(Context context, Host host)
      * RETURNS: boolean
      * PARAMETERS:
      *      - Context context: context of the running application
-     *      - Host host: Instance of the Host class to be added to the "hosts.txt" file
+     *      - Host host: Instance of the Host class to be added to the host store
      *
-     * AIM: Add a line to the "hosts.txt" to represent a new host to be memorized
+     * AIM: Add an entry to the host store to represent a new host to be memorized. Runs on the persistence
+     * thread, so that the store is only written by one thread, in the order of the events.
      *
      * PROCESS:
-     *      1. Generate the string to be written (description available in the Host class)
-     *      2. Check if the external storage is available and writeable
-     *      3. Write the string as a new line at the end of the file (append: true)
-     *      4. Return true if all of the above went without errors
+     *      1. Check if the external storage is available and writeable
+     *      2. Add the host to the store
+     *      3. Return true if all of the above went without errors
      */
     private boolean addHostToDatabase(Context context, Host host){
-        String toWrite = host.toStringForLog(); //STEP 1
         boolean written = false;
-        if(isExternalStorageAvailable() && !(isExternalStorageReadOnly())) { //STEP 2
+        if(hostStore != null && isExternalStorageAvailable() && !(isExternalStorageReadOnly())) { //STEP 1
             try {
-                //STEP 3
-                FileWriter writer = new FileWriter(externalHostsFile, true);
-                writer.write(toWrite);
-                writer.close();
+                hostStore.add(host); //STEP 2
                 written = true;
-                //END OF STEP 3
-
             } catch (Exception e) {
                 logEvent("Error", e.toString());
             }
@@ -412,73 +536,27 @@ public class MainActivity extends AppCompatActivity {
         else{
             logEvent("Info", "External Storage Not Available");
         }
-        return written; //STEP 4
+        return written; //STEP 3
     }
 
     /* FUNCTION: updateHostDatabaseEntry(Context context, Host host)
      * RETURNS: void
      * PARAMETERS:
      *      - Context context: context of the running app
-     *      - Host host: instance of the Host class which entry's will be updated in "hosts.txt"
+     *      - Host host: instance of the Host class which entry's will be updated in the host store
      *
      * AIM: Update the entry for the host in the database to reflect the changes in the class
-     * instance (new packet sent)
+     * instance (new packet verified)
      *
-     * PROCESS: This function rewrites the whole file to avoid extending the database, only modifying the desired line
+     * PROCESS:
      *      1. Check if the external storage is accessible and writeable
-     *      2. Initialize the variables needed to read the database
-     *      3. Search for the host which entry's will be updated and create the entry that will replace
-     *         the old one
-     *              A. Check the address of the entry against the host's one
-     *              B. Add 2 to the number of the expected packet (+1 is the one the app is going to sent)
-     *                 in the new entry
-     *              C. Add the new entry to the string buffer, and declare that the program found the right line
-     *              D. If another line with the same host address is found, do nothing
-     *              E. If a line with an address differing from the host's address, append it to the string buffer
-     *      4. Rewrite the whole file with the modified line
+     *      2. Store the number of packets verified for the host (an in-place write in the mapped
+     *         table, or a fixed-size record appended to the journal), without rewriting the database
      */
     private void updateHostDatabaseEntry(Context context, Host host){
         try {
-            if(isExternalStorageAvailable() && !(isExternalStorageReadOnly())) { //STEP 1
-                FileInputStream hostsFileInput = new FileInputStream(externalHostsFile);
-
-                if (null != hostsFileInput) {
-                    //STEP 2
-                    InputStreamReader hostsFileReader = new InputStreamReader(hostsFileInput);
-                    BufferedReader hostsFileBuffReader = new BufferedReader(hostsFileReader);
-                    StringBuffer strBuff = new StringBuffer();
-                    String line = "";
-                    Boolean found = false;
-                    //END OF STEP 2
-
-                    //STEP 3
-                    while(!found){
-                        line = hostsFileBuffReader.readLine();
-                        if(!(null == line)){
-                            if(line.split(";")[0].equals(host.getRemoteAddress())){ //STEP 3.A
-                                Integer val = Integer.parseInt(line.split(";")[2]) + 2; //STEP 3.B
-                                String vali = val.toString();
-                                //STEP 3.C
-                                String lino = line.split(";")[0] + ";" + line.split(";")[1] + ";" + vali + "\r";
-                                strBuff.append(lino);
-                                found = true;
-                                //END OF STEP 3.C
-                            }
-                            else if(line.split(";")[0].equals(host.getRemoteAddress())) {} //STEP 3.D
-                            else{ //STEP 3.E
-                                strBuff.append(line.split(";")[0] + ";" + line.split(";")[1] + ";" + line.split(";")[2] + "\r");
-                            }
-                        }
-                    }
-                    hostsFileReader.close();
-                    hostsFileInput.close();
-                    //STEP 4
-                    FileWriter hostWrite = new FileWriter(externalHostsFile, Boolean.FALSE);
-                    Log.d("strBuff", strBuff.toString());
-                    hostWrite.write(strBuff.toString());
-                    hostWrite.close();
-                    //END OF STEP 4
-                }
+            if(hostStore != null && isExternalStorageAvailable() && !(isExternalStorageReadOnly())) { //STEP 1
+                hostStore.update(host); //STEP 2
             }
         } catch (Exception e) {
             logEvent("Error", e.toString());
@@ -489,26 +567,30 @@ public class MainActivity extends AppCompatActivity {
      * RETURNS: void
      * PARAMETERS: none
      *
-     * AIM: Empty the "hosts.txt" to reset the database, and clear the ArrayList hosts (hosts list)
+     * AIM: Empty the host store to reset the database, and clear the hosts registry
      *
      * PROCESS:
-     *      1. Create a new FileOutputStream with append set to false to replace the whole file
-     *      2. Call the "flush" method of the FileOutputStream to clear the file's content
+     *      1. Clear the hosts registry at once: the hosts created from now on are added to the store after
+     *         the purge
+     *      2. Purge the store on the persistence thread, after the verdicts already queued. The verdicts of
+     *         the requests still in flight are recorded afterwards, but the store ignores the purged hosts.
      *      3. Inform the user that the hosts list is now cleared
      */
     private void purgeHosts(){
+        hosts.clear(); //STEP 1
         try {
-            FileOutputStream purgingHosts = new FileOutputStream(externalHostsFile); //STEP 1
-            //STEP 2
-            purgingHosts.flush();
-            purgingHosts.close();
-            hosts.clear();
-            //END OF STEP 2
-            communicationText.setText("Hosts list cleared !"); //STEP 3
-        } catch (FileNotFoundException e) {
-            logEvent("Error", e.toString());
-        } catch (IOException e){
-            logEvent("Error", e.toString());
+            persistenceExecutor.execute(() -> {
+                try {
+                    if(hostStore != null) {
+                        hostStore.purge(); //STEP 2
+                    }
+                    runOnUiThread(() -> communicationText.setText("Hosts list cleared !")); //STEP 3
+                } catch (IOException e){
+                    logEvent("Error", e.toString());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            Log.e("Main Error", "Purge requested after the activity was destroyed");
         }
     }
     //endregion
@@ -518,11 +600,17 @@ public class MainActivity extends AppCompatActivity {
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
+        openLogs(); //Open the log files once for the whole activity
         logEvent("Info", "Activity started"); //Log in the appLog that the activity started
         externalHostsFile = new File(getExternalFilesDir(filesPath), hostsFile);
-        hosts = getHostsFromFile(this); //Get the list of hosts saved in "hosts.txt"
 
         //region Request Queue
+        /*
+            The transport of the queue is pluggable (BaseHttpStack): the pooled transport keeps the
+            connections (and TLS sessions) to each host open between the requests, while the HurlStack
+            below opens a new HttpURLConnection for each request. Both use the same hostname verifier,
+            and the security headers are generated by secureRequests whatever the transport.
+         */
         /* FUNCTION: createConnection(URL url)
          *
          * AIM: This function is used to override the hostname verifier, as an unexpected and unresolved
@@ -542,7 +630,12 @@ public class MainActivity extends AppCompatActivity {
             }
         };
 
-        RequestQueue requestQueue = Volley.newRequestQueue(MainActivity.this, hurlStack); //Initialization of the requestQueue with the modified hostname verifier
+        BaseHttpStack transport = hurlStack;
+        if(POOLED_TRANSPORT) {
+            pooledStack = new OkHttpStack(getHostnameVerifier());
+            transport = pooledStack;
+        }
+        RequestQueue requestQueue = Volley.newRequestQueue(MainActivity.this, transport); //Initialization of the requestQueue with the modified hostname verifier
         //endregion
 
         //region User Interface Declaration
@@ -570,6 +663,77 @@ public class MainActivity extends AppCompatActivity {
         btnPOSTtoB.setOnClickListener(View -> clicked( Request.Method.POST, ipBPlaceholder.getText().toString(), requestQueue));
         btnPURGE.setOnClickListener(View -> purgeHosts());
         //endregion
+
+        //region Hosts Loading
+        Button[] buttons = {btnGETtoA, btnGETtoB, btnPOSTtoA, btnPOSTtoB, btnPURGE};
+        for (Button button : buttons) {
+            button.setEnabled(false); //No request can be sent before the hosts it may use are known
+        }
+        communicationText.setText("Loading the hosts...");
+        persistenceExecutor.execute(() -> {
+            String status = loadHosts();
+            runOnUiThread(() -> {
+                communicationText.setText(status);
+                for (Button button : buttons) {
+                    button.setEnabled(true);
+                }
+            });
+        });
+        //endregion
+    }
+
+    /* FUNCTION: onStop()
+     *
+     * AIM: Make sure the counters already verified, the events already logged and the metrics are on the
+     * disk once the activity is hidden, as the process may then be killed without onDestroy() being called
+     */
+    @Override
+    protected void onStop() {
+        super.onStop();
+        if(!persistenceExecutor.isShutdown()) {
+            persistenceExecutor.execute(() -> {
+                try {
+                    if(hostStore != null) {
+                        hostStore.awaitDurable();
+                    }
+                    flushLogs();
+                    exportMetrics();
+                } catch (IOException e) {
+                    logEvent("Error", e.toString());
+                }
+            });
+        }
+    }
+
+    /* FUNCTION: onDestroy()
+     *
+     * AIM: Let the persistence thread record the pending verdicts, export the metrics, then close the host
+     * store (which forces or compacts it), the pooled connections and the log files when the activity is
+     * destroyed
+     */
+    @Override
+    protected void onDestroy() {
+        persistenceExecutor.shutdown();
+        try {
+            if(!persistenceExecutor.awaitTermination(2, TimeUnit.SECONDS)) {
+                Log.e("Main Error", "Some verdicts could not be recorded before closing");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        exportMetrics();
+        try {
+            if(hostStore != null) {
+                hostStore.close();
+            }
+        } catch (IOException e) {
+            logEvent("Error", e.toString());
+        }
+        if(pooledStack != null) {
+            pooledStack.close();
+        }
+        closeLogs();
+        super.onDestroy();
     }
 
     /* FUNCTION: clicked(Integer method, String targetHost, RequestQueue rq)
@@ -585,33 +749,24 @@ public class MainActivity extends AppCompatActivity {
      * a new one.
      *
      * PROCESS:
-     *      1. Check if the selected host exists in the list
-     *      2. Add the host to the hosts list and to the database if the host is a new one
+     *      1. Get the selected host from the registry, or create it if it is a new one
+     *      2. Add the host to the database, on the persistence thread, if it was just created (the registry
+     *         guarantees that only one host is created per address)
      *      3. Call the craftRequest function with the type of request (GET/POST) and the selected host
      *         as parameters
      *      4. Add the request to the queue (which sends it)
      */
     private void clicked(Integer method, String targetHost, RequestQueue rq) {
-        Host localHost = new Host("");
-        boolean firstPacket = false;
-
-        //STEP 1
-        for (Host test:hosts) {
-            if(test.getRemoteAddress().equals(targetHost)){
-                localHost = test;
-                break;
+        Host localHost = hosts.getOrCreate(targetHost, newHost -> {
+            newHost.setChecksumMode(CHECKSUM_MODE);
+            newHost.setChecksumEncoding(CHECKSUM_ENCODING);
+            newHost.enablePipelining(PIPELINE_WINDOW);
+            try {
+                persistenceExecutor.execute(() -> addHostToDatabase(this, newHost));
+            } catch (RejectedExecutionException e) {
+                Log.e("Main Error", "Host created after the activity was destroyed: " + newHost.getRemoteAddress());
             }
-        }
-        //END OF STEP 1
-
-        //STEP 2
-        if(localHost.getRemoteAddress().equals("")) {
-            localHost = new Host(targetHost);
-            hosts.add(localHost);
-            addHostToDatabase(this, localHost);
-            firstPacket = true;
-        }
-        //END OF STEP 2
+        }); //STEP 1 & 2
         secureRequests secReq;
         secReq = craftRequest(method, localHost); //STEP 3
         rq.add(secReq); //STEP 4
@@ -625,17 +780,11 @@ public class MainActivity extends AppCompatActivity {
      *
      * AIM: Create the secureRequests instance with the appropriate security headers
      *
-     * PROCESS: Call the "generateHeaders" method of the target host to put it into the headers of the
-     * request. Return the request
+     * PROCESS: The secureRequests instance reserves a packet number (or BATCH_SIZE consecutive ones) of
+     * the target host and generates the headers when Volley sends it. Return the request
      */
     private secureRequests craftRequest(int mMethod, Host targetHost) {
-        secureRequests mSecureRequest = new secureRequests(mMethod, targetHost, mResponseListener, mErrorListener) {
-            @Override
-            public Map<String, String> getHeaders() throws AuthFailureError {
-                return targetHost.generateHeaders();
-            }
-        };
-        return mSecureRequest;
+        return new secureRequests(mMethod, targetHost, BATCH_SIZE, mVerdictRecorder, mResponseListener, mErrorListener);
     }
     //endregion
 }
\ No newline at end of file
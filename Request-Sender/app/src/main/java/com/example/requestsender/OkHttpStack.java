@@ -0,0 +1,175 @@
+package com.example.requestsender;
+
+import com.android.volley.AuthFailureError;
+import com.android.volley.Header;
+import com.android.volley.Request;
+import com.android.volley.toolbox.BaseHttpStack;
+import com.android.volley.toolbox.HttpResponse;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.HostnameVerifier;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.Headers;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/* CLASS: OkHttpStack extends BaseHttpStack implements Closeable
+ * ATTRIBUTES:
+ *      - OkHttpClient client: the HTTP client shared by every request of the RequestQueue
+ *
+ * AIM: Transport of the Volley RequestQueue that keeps the connections to each host open, instead of
+ *      paying a TCP and TLS handshake for every request (BaseHttpStack is the transport extension point
+ *      of Volley, so secureRequests and its hash headers do not change at all).
+ *
+ * PROCESS:
+ *      1. The connections are kept in a pool for KEEP_ALIVE_MINUTES minutes after their last request
+ *      2. HTTP/2 is negotiated (ALPN) when the server supports it: every request to the host is then
+ *         multiplexed on one connection, so that concurrent (e.g. pipelined) requests do not wait for
+ *         each other. Otherwise HTTP/1.1 connections are reused one request at a time.
+ *      3. The TLS sessions are resumed from the client session cache of the default SSL context when a
+ *         new connection to a known host is needed, which saves a full handshake
+ *      4. Each request is sent with the headers of the request (including X-Time-Sent and X-CheckSum,
+ *         generated once by secureRequests) and its timeout, and the response is streamed to Volley.
+ *         The header values are written in UTF-8 as they are: OkHttp rejects the non-ASCII values by
+ *         default, and the X-Time-Sent of the hosts created with a localized date (accented months, the narrow
+ *         space before "PM"...) could not be sent at all
+ */
+public class OkHttpStack extends BaseHttpStack implements Closeable {
+    private static final int KEEP_ALIVE_MINUTES = 5;
+    private static final int MAX_IDLE_CONNECTIONS = 5;
+    private static final int MAX_REQUESTS_PER_HOST = 16;
+
+    private final OkHttpClient client;
+
+    /* CONSTRUCTOR
+     * Create the shared client with its connection pool (steps 1 to 3 above)
+     *      - HostnameVerifier hostnameVerifier: verifier of the server certificates (null: the default one)
+     */
+    public OkHttpStack(HostnameVerifier hostnameVerifier) {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequestsPerHost(MAX_REQUESTS_PER_HOST);
+        OkHttpClient.Builder builder = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                .dispatcher(dispatcher)
+                .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .retryOnConnectionFailure(false); //Volley decides if a request is sent again
+        if (hostnameVerifier != null) {
+            builder.hostnameVerifier(hostnameVerifier);
+        }
+        this.client = builder.build();
+    }
+
+    /* FUNCTION: executeRequest(Request<?> request, Map<String, String> additionalHeaders)
+     * RETURNS: HttpResponse
+     * PARAMETERS:
+     *      - Request<?> request: the Volley request to send
+     *      - Map<String, String> additionalHeaders: headers added by Volley (e.g. cache validation)
+     *
+     * AIM: Send the request on a pooled connection and return its response (step 4 above)
+     */
+    @Override
+    public HttpResponse executeRequest(Request<?> request, Map<String, String> additionalHeaders)
+            throws IOException, AuthFailureError {
+        int timeoutMs = request.getTimeoutMs();
+        OkHttpClient timedClient = client.newBuilder() //Shares the pool and the dispatcher of the client
+                .connectTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+                .readTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+                .writeTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+                .build();
+
+        Map<String, String> headers = new HashMap<>(additionalHeaders);
+        headers.putAll(request.getHeaders()); //The security headers of the request win
+        okhttp3.Request.Builder builder = new okhttp3.Request.Builder().url(request.getUrl())
+                .headers(buildHeaders(headers));
+        setMethod(builder, request);
+
+        Response response = timedClient.newCall(builder.build()).execute();
+        List<Header> responseHeaders = convertHeaders(response.headers());
+        ResponseBody body = response.body();
+        if (body == null || !hasResponseBody(request.getMethod(), response.code())) {
+            response.close();
+            return new HttpResponse(response.code(), responseHeaders);
+        }
+        //Volley reads and closes the stream, which gives the connection back to the pool
+        return new HttpResponse(response.code(), responseHeaders, (int) body.contentLength(), body.byteStream());
+    }
+
+    /* FUNCTION: close()
+     * RETURNS: void
+     *
+     * AIM: Close the idle connections and stop the threads of the client
+     */
+    @Override
+    public void close() {
+        client.dispatcher().executorService().shutdown();
+        client.connectionPool().evictAll();
+    }
+
+    //region Utilities
+    //Headers of a request, non-ASCII values included (step 4 above)
+    static Headers buildHeaders(Map<String, String> headers) {
+        Headers.Builder builder = new Headers.Builder();
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            builder.addUnsafeNonAscii(header.getKey(), header.getValue());
+        }
+        return builder.build();
+    }
+
+    private static void setMethod(okhttp3.Request.Builder builder, Request<?> request) throws AuthFailureError {
+        switch (request.getMethod()) {
+            case Request.Method.DEPRECATED_GET_OR_POST:
+                byte[] postBody = request.getBody();
+                if (postBody != null) {
+                    builder.post(RequestBody.create(postBody, MediaType.parse(request.getBodyContentType())));
+                }
+                break;
+            case Request.Method.GET: builder.get(); break;
+            case Request.Method.DELETE: builder.delete(); break;
+            case Request.Method.POST: builder.post(createBody(request)); break;
+            case Request.Method.PUT: builder.put(createBody(request)); break;
+            case Request.Method.HEAD: builder.head(); break;
+            case Request.Method.OPTIONS: builder.method("OPTIONS", null); break;
+            case Request.Method.TRACE: builder.method("TRACE", null); break;
+            case Request.Method.PATCH: builder.patch(createBody(request)); break;
+            default:
+                throw new IllegalStateException("Unknown method type.");
+        }
+    }
+
+    //OkHttp needs a body (possibly empty) for POST, PUT and PATCH requests
+    private static RequestBody createBody(Request<?> request) throws AuthFailureError {
+        byte[] body = request.getBody();
+        return RequestBody.create(body == null ? new byte[0] : body, MediaType.parse(request.getBodyContentType()));
+    }
+
+    private static List<Header> convertHeaders(Headers headers) {
+        List<Header> converted = new ArrayList<>(headers.size());
+        for (int i = 0; i < headers.size(); i++) {
+            converted.add(new Header(headers.name(i), headers.value(i)));
+        }
+        return converted;
+    }
+
+    //Same rule as Volley's HurlStack: HEAD requests, 1xx, 204 and 304 responses have no body
+    private static boolean hasResponseBody(int requestMethod, int responseCode) {
+        return requestMethod != Request.Method.HEAD
+                && !(100 <= responseCode && responseCode < 200)
+                && responseCode != 204
+                && responseCode != 304;
+    }
+    //endregion
+}
@@ -1,101 +1,388 @@
 package com.example.requestsender;
 
+import com.android.volley.AuthFailureError;
+import com.android.volley.Header;
 import com.android.volley.NetworkResponse;
 import com.android.volley.Request;
 import com.android.volley.Response;
+import com.android.volley.VolleyError;
 import com.android.volley.toolbox.HttpHeaderParser;
+import com.example.requestsender.core.ChecksumWindow;
+import com.example.requestsender.core.ConnectionOutcome;
+import com.example.requestsender.core.Host;
 
-import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 
-/* CLASS: secureRequests extends Request<secureRequests.secureResponse>
+/* CLASS: secureRequests extends Request<secureRequests.Verdict>
  * ATTRIBUTES:
- *      - Response.Listener<secureRequests.secureResponse> customListener: basic Listener handling responses and errors
+ *      - Response.Listener<secureRequests.Verdict> customListener: basic Listener handling the verdicts on the UI thread
+ *      - VerdictRecorder recorder: persists the verdicts on a worker thread (may be null)
  *      - Host host: the host the request will be sent to
+ *      - long packet: the packet number reserved for this request (-1 until the headers are generated)
+ *      - int batchSize: number of protected operations packed in this request (1 for a regular request)
+ *      - Map<String, String> securityHeaders: the security headers, generated once per request
+ *      - long headersNanos, headersSentAt: duration and end (System.nanoTime()) of the generation of the headers
  *
  * AIM: The main goal of this class is to be able to parse the network response to separate the headers from the rest of
- *      the request, as well as retrieve the host the request was sent to.
+ *      the request, as well as retrieve the host the request was sent to and the packet number its response
+ *      has to be verified with.
+ *
+ * THREADS: Volley parses the responses on its network threads and delivers them on the UI thread. The
+ *      security assessment (SHA-256 of the expected checksums) is done while parsing, the verdict is handed
+ *      to the recorder (which persists it) from there, and only the small Verdict object is delivered to
+ *      the UI thread.
  */
-public class secureRequests extends Request<secureRequests.secureResponse> {
-    private Response.Listener<secureRequests.secureResponse> customListener;
+public class secureRequests extends Request<secureRequests.Verdict> {
+    private static final String CHECKSUM_HEADER = "X-CheckSum";
+
+    private Response.Listener<secureRequests.Verdict> customListener;
+    private final VerdictRecorder recorder;
     private Host host;
+    private long packet = -1;
+    private final int batchSize;
+    private Map<String, String> securityHeaders;
+    private long headersNanos;
+    private long headersSentAt;
 
     /* CONSTRUCTOR
      * This constructor allows to build a regular request while saving the Host instance used to create
      * the request
      */
-    public secureRequests(int method, Host host, Response.Listener<secureRequests.secureResponse> secureResponseListener, Response.ErrorListener secureErrorListener) {
+    public secureRequests(int method, Host host, Response.Listener<secureRequests.Verdict> verdictListener, Response.ErrorListener secureErrorListener) {
+        this(method, host, 1, null, verdictListener, secureErrorListener);
+    }
+
+    /* CONSTRUCTOR (batch)
+     * Same as the constructor above, for a request carrying "batchSize" operations: it consumes
+     * "batchSize" consecutive exchanges of the host and carries all their checksums. The verdict of the
+     * response is given to the recorder (if any) on the network thread that parsed it.
+     */
+    public secureRequests(int method, Host host, int batchSize, VerdictRecorder recorder, Response.Listener<secureRequests.Verdict> verdictListener, Response.ErrorListener secureErrorListener) {
         super(method, host.getRemoteAddress(), secureErrorListener); //Build a classic request
-        this.customListener = secureResponseListener;
+        this.customListener = verdictListener;
+        this.recorder = recorder;
         this.host = host;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /* FUNCTION: getHeaders()
+     * RETURNS: Map<String, String>
+     * PARAMETERS: none
+     *
+     * AIM: Generate the security headers of the request. This is called by Volley on a network thread.
+     *
+     * PROCESS:
+     *      1. The first time, reserve a packet number for the request (and its response) and generate
+     *         the headers for this number:
+     *          A. In pipelined mode, take the next exchange of the host's window, whose checksum was
+     *             precomputed
+     *          B. For a batch, reserve "batchSize" consecutive exchanges with Host.beginExchanges()
+     *          C. Otherwise, reserve it with Host.beginExchange()
+     *      2. Return the same headers if Volley asks again (e.g. when retrying), so that a request
+     *         never consumes more than one exchange of the host
+     */
+    @Override
+    public synchronized Map<String, String> getHeaders() throws AuthFailureError {
+        if (securityHeaders == null) { //STEP 1
+            long start = System.nanoTime();
+            ChecksumWindow window = host.getWindow();
+            if (batchSize > 1) { //STEP 1.B
+                packet = host.beginExchanges(batchSize);
+                securityHeaders = host.generateBatchHeaders(packet, batchSize);
+            }
+            else if (window != null) { //STEP 1.A
+                ChecksumWindow.Slot slot = window.reserve();
+                packet = slot.getPacket();
+                securityHeaders = host.generateHeaders(packet, slot.getRequestChecksum());
+            }
+            else { //STEP 1.C
+                packet = host.beginExchange();
+                securityHeaders = host.generateHeaders(packet);
+            }
+            headersSentAt = System.nanoTime();
+            headersNanos = headersSentAt - start;
+        }
+        return securityHeaders; //STEP 2
+    }
+
+    /* INTERFACE: VerdictRecorder
+     * AIM: Called on the network thread with the verdict of each response, before it is delivered to the
+     * UI thread (e.g. to persist the host and log the event), and with the host of each request that got
+     * no response, with the time from the generation of its headers to the error (-1 if they were never
+     * generated)
+     */
+    public interface VerdictRecorder {
+        void record(Verdict verdict);
+        void recordError(Host host, long failedAfterNanos);
     }
 
-    /* FUNCTION: deliverResponse(secureResponse response)
+    /* FUNCTION: deliverResponse(Verdict verdict)
      * RETURNS: void
      * PARAMETERS:
-     *      - secureResponse response: the custom response to handle
+     *      - Verdict verdict: the result of the security assessment of the response
      *
-     * AIM: Handle the response given by the webserver
+     * AIM: Hand the verdict to the listener (on the UI thread)
      */
     @Override
-    protected void deliverResponse(secureResponse response){
-        this.customListener.onResponse(response);
+    protected void deliverResponse(Verdict verdict){
+        this.customListener.onResponse(verdict);
     }
 
     /* FUNCTION: parseNetworkResponse(NetworkResponse response)
-     * RETURNS: Response<secureResponse>
+     * RETURNS: Response<Verdict>
      * PARAMETERS:
      *      - NetworkResponse response: raw response from the webserver
      *
-     * AIM: Transform the regular response from the webserver into a secureResponse, which consists
-     * in a enriched response allowing an easy access to the headers, as well as a reference to the
-     * host the request was sent to (thus the host which sent the response)
+     * AIM: Transform the regular response from the webserver into a secureResponse, which only keeps
+     * what the security assessment needs (the X-CheckSum header and a view of the body), as well as a
+     * reference to the host the request was sent to (thus the host which sent the response), then assess
+     * it on this (network) thread
      *
      * PROCESS:
-     *      1. Try to get the headers if there is any
-     *      2. Create a secureResponse instance containing the headers, the parsed version of the response
-     *         as well as a reference to the original host
-     *      3. Return the response
+     *      1. Get the value of the X-CheckSum header, and of the X-Resync header the server adds to the
+     *         denials (the only headers used by the assessment)
+     *      2. Get the charset of the body, without decoding the body: it is wrapped as is in the
+     *         secureResponse, which only decodes it if the text is actually needed
+     *      3. Create the secureResponse instance
+     *      4. Assess it (see evaluate()), attach the durations of the stages of the request to the verdict
+     *         (generation of the headers, network round trip until the parsing, verification), and give
+     *         the verdict to the recorder
+     *      5. Return the verdict, which Volley delivers on the UI thread
      */
     @Override
-    protected Response<secureResponse> parseNetworkResponse(NetworkResponse response){
-        String parsedSecureResponse;
+    protected Response<Verdict> parseNetworkResponse(NetworkResponse response){
+        long parsedAt = System.nanoTime();
+        String checksum = findHeader(response, CHECKSUM_HEADER); //STEP 1
+        String resyncProof = findHeader(response, Host.RESYNC_HEADER);
+        Charset charset; //STEP 2
         try{
-            parsedSecureResponse = new String(response.data, HttpHeaderParser.parseCharset(response.headers)); //STEP 1
-        } catch (UnsupportedEncodingException e){
-            parsedSecureResponse = new String(response.data);
+            charset = Charset.forName(HttpHeaderParser.parseCharset(response.headers));
+        } catch (IllegalArgumentException e){
+            charset = StandardCharsets.ISO_8859_1; //Default charset of HTTP, as used by HttpHeaderParser
         }
+        byte[] data = response.data == null ? new byte[0] : response.data;
 
-        secureResponse secResp = new secureResponse(response.headers, parsedSecureResponse, host); //STEP 2
+        secureResponse secResp = new secureResponse(checksum, resyncProof, data, charset, host, getPacket(), batchSize); //STEP 3
+        Verdict verdict = evaluate(secResp); //STEP 4
+        synchronized (this) {
+            verdict.setDurations(headersNanos, parsedAt - headersSentAt, System.nanoTime() - parsedAt);
+        }
+        if (recorder != null) {
+            recorder.record(verdict);
+        }
+        return Response.success(verdict, HttpHeaderParser.parseCacheHeaders(response)); //STEP 5
+    }
 
-        return Response.success(secResp, HttpHeaderParser.parseCacheHeaders(response)); //STEP 3
+    /* FUNCTION: parseNetworkError(VolleyError error)
+     * RETURNS: VolleyError (the error, unchanged)
+     * PARAMETERS:
+     *      - VolleyError error: the error of the request, once Volley gave up retrying
+     *
+     * AIM: Give the failed request to the recorder, on the network thread, before the error is delivered
+     * to the error listener on the UI thread
+     */
+    @Override
+    protected VolleyError parseNetworkError(VolleyError error) {
+        long failedAfter;
+        synchronized (this) {
+            failedAfter = securityHeaders == null ? -1 : System.nanoTime() - headersSentAt;
+        }
+        if (recorder != null) {
+            recorder.recordError(host, failedAfter);
+        }
+        return error;
     }
 
+    /* FUNCTION: evaluate(secureResponse response)
+     * RETURNS: Verdict
+     * PARAMETERS:
+     *      - secureResponse response: the parsed response
+     *
+     * AIM: Compare the checksum received from the server with the one that should be generated by
+     * the host for the response to this request (hence the call to verifyResponse(), which compares
+     * bytes instead of building the expected String), then examine the status of the body if it is
+     * legitimate. A batch is only legitimate if the response carries the checksums of all its
+     * operations. A missing checksum is never legitimate.
+     * If the response is not legitimate but proves that the chain of the server is ahead (X-Resync
+     * header), the host catches up with the server (see Host.resynchronize()), so that the next request
+     * is accepted instead of every following one being denied until the hosts are purged.
+     */
+    private static Verdict evaluate(secureResponse response) {
+        Host origin = response.getOriginHost();
+        long packets = response.getRequestPacket() + 2L * response.getBatchSize(); //Packets exchanged once this response is handled
+        boolean legitimate = response.getBatchSize() > 1
+                ? origin.verifyBatchResponse(response.getRequestPacket(), response.getBatchSize(), response.getChecksum())
+                : origin.verifyResponse(response.getRequestPacket(), response.getChecksum());
+        if (!legitimate) {
+            long resyncPacket = origin.resynchronize(response.getResyncProof(), Host.DEFAULT_RESYNC_WINDOW);
+            return new Verdict(origin, ConnectionOutcome.WRONG_CHECKSUM, resyncPacket < 0 ? packets : resyncPacket,
+                    null, resyncPacket >= 0);
+        }
+        ConnectionOutcome outcome = response.bodyPrefixContains("GRANTED") ? ConnectionOutcome.VALIDATED : ConnectionOutcome.REJECTED;
+        return new Verdict(origin, outcome, packets, response.getResponseBody());
+    }
+
+    //Value of a header (the names of the headers are not case-sensitive), null if it is missing
+    private static String findHeader(NetworkResponse response, String name) {
+        if (response.allHeaders != null) {
+            for (Header header : response.allHeaders) {
+                if (name.equalsIgnoreCase(header.getName())) {
+                    return header.getValue();
+                }
+            }
+            return null;
+        }
+        return response.headers == null ? null : response.headers.get(name);
+    }
+
+    private synchronized long getPacket() { return this.packet; } //Packet number of the request
+
     /* CLASS: secureResponse
      * ATTRIBUTES:
-     *      - Map<String, String> headers: Headers of the response
-     *      - String response: Body of the response
+     *      - String checksum: X-CheckSum header of the response (null if it is missing)
+     *      - String resyncProof: X-Resync header of the response (null if it is missing)
+     *      - byte[] data: Body of the response, as received (never copied)
+     *      - Charset charset: Charset of the body
+     *      - String response: Body of the response decoded as text, only once it is asked for
      *      - Host originHost: Host the original request was sent to, which created the response
+     *      - long requestPacket: packet number of the original request (the response uses requestPacket + 1)
+     *      - int batchSize: number of operations of the original request (the first one uses requestPacket)
      *
      * AIM: Allow the application to handle the responses of the webserver and access key information
-     * easily
+     * easily, without decoding (or copying) a body that may be large when only its status is needed
+     *
+     * PROCESS:
+     *      - getBody() gives a read-only ByteBuffer view of the received bytes
+     *      - bodyPrefixContains(token) looks for the token in the first STATUS_PREFIX_BYTES bytes only, by
+     *        comparing bytes (the status, e.g. "GRANTED", is at the beginning of the body)
+     *      - getResponseBody() decodes the body the first time it is called and keeps the text
      */
     public static class secureResponse{
-        private Map<String, String> headers;
+        public static final int STATUS_PREFIX_BYTES = 256;
+
+        private final String checksum;
+        private final String resyncProof;
+        private final byte[] data;
+        private final Charset charset;
         private String response;
         private Host originHost;
+        private long requestPacket;
+        private int batchSize;
 
         /* CONSTRUCTOR
          * Basic constructor that initializes the instance's attributes
          */
-        public secureResponse(Map<String, String> remote_headers, String body, Host originHost){
-            this.headers = remote_headers;
-            this.response = body;
+        public secureResponse(String checksum, String resyncProof, byte[] data, Charset charset, Host originHost,
+                              long requestPacket, int batchSize){
+            this.checksum = checksum;
+            this.resyncProof = resyncProof;
+            this.data = data;
+            this.charset = charset;
             this.originHost = originHost;
+            this.requestPacket = requestPacket;
+            this.batchSize = batchSize;
         }
 
-        public Map<String, String> getHeaders() {return this.headers;} //Headers property
-        public String getResponseBody() {return this.response; } //Response body property
+        public String getChecksum() {return this.checksum;} //X-CheckSum header property
+        public String getResyncProof() {return this.resyncProof;} //X-Resync header property
+        public ByteBuffer getBody() {return ByteBuffer.wrap(this.data).asReadOnlyBuffer();} //Body bytes, not decoded
         public Host getOriginHost() { return this.originHost; } //Original host property
+        public long getRequestPacket() { return this.requestPacket; } //Packet number of the original request
+        public int getBatchSize() { return this.batchSize; } //Number of operations of the original request
+
+        //Body of the response as text, decoded the first time it is needed
+        public synchronized String getResponseBody() {
+            if (this.response == null) {
+                this.response = new String(this.data, this.charset);
+            }
+            return this.response;
+        }
+
+        /* FUNCTION: bodyPrefixContains(String token)
+         * RETURNS: boolean
+         * PARAMETERS:
+         *      - String token: text to look for, e.g. "GRANTED"
+         *
+         * AIM: Tell if the token is in the first STATUS_PREFIX_BYTES bytes of the body without decoding it
+         *
+         * PROCESS:
+         *      1. Encode the token with the charset of the body
+         *      2. If the charset does not encode it as one byte per character (e.g. UTF-16, whose
+         *         encoding adds a byte order mark), look for it in the decoded body instead
+         *      3. Otherwise compare the bytes of the token with the bytes of the body prefix
+         */
+        public boolean bodyPrefixContains(String token) {
+            byte[] pattern = token.getBytes(this.charset); //STEP 1
+            if (pattern.length != token.length()) { //STEP 2
+                String body = getResponseBody();
+                return body.substring(0, Math.min(body.length(), STATUS_PREFIX_BYTES)).contains(token);
+            }
+            int limit = Math.min(this.data.length, STATUS_PREFIX_BYTES) - pattern.length; //STEP 3
+            for (int i = 0; i <= limit; i++) {
+                int j = 0;
+                while (j < pattern.length && this.data[i + j] == pattern[j]) {
+                    j++;
+                }
+                if (j == pattern.length) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /* CLASS: Verdict
+     * ATTRIBUTES:
+     *      - Host host: the host that sent the response
+     *      - ConnectionOutcome outcome: result of the security assessment
+     *      - long packets: number of packets exchanged once the response is handled
+     *      - boolean resynchronized: true if the response made the host catch up with the server chain
+     *      - String message: the body of the response to be shown to the user (null if its checksum was wrong)
+     *      - long headersNanos, networkNanos, verificationNanos: durations of the stages of the request
+     *
+     * AIM: Result of the security assessment of a response, computed on a network thread so that the UI
+     * thread only has to display it
+     */
+    public static final class Verdict {
+        private final Host host;
+        private final ConnectionOutcome outcome;
+        private final long packets;
+        private final String message;
+        private final boolean resynchronized;
+        private long headersNanos;
+        private long networkNanos;
+        private long verificationNanos;
+
+        Verdict(Host host, ConnectionOutcome outcome, long packets, String message, boolean resynchronized) {
+            this.host = host;
+            this.outcome = outcome;
+            this.packets = packets;
+            this.message = message;
+            this.resynchronized = resynchronized;
+        }
+
+        Verdict(Host host, ConnectionOutcome outcome, long packets, String message) {
+            this(host, outcome, packets, message, false);
+        }
+
+        public Host getHost() { return this.host; } //Host property
+        public ConnectionOutcome getOutcome() { return this.outcome; } //Outcome property
+        public long getPackets() { return this.packets; } //Packets property
+        public String getMessage() { return this.message; } //Message property
+        public boolean isLegitimate() { return this.outcome != ConnectionOutcome.WRONG_CHECKSUM; } //Correct checksum
+        public boolean isResynchronized() { return this.resynchronized; } //The host caught up with the server
+        public long getHeadersNanos() { return this.headersNanos; } //Generation of the headers
+        public long getNetworkNanos() { return this.networkNanos; } //From the headers to the parsing of the response
+        public long getVerificationNanos() { return this.verificationNanos; } //Assessment of the response
+
+        //Set once by the request, before the verdict is handed to the other threads
+        void setDurations(long headersNanos, long networkNanos, long verificationNanos) {
+            this.headersNanos = headersNanos;
+            this.networkNanos = networkNanos;
+            this.verificationNanos = verificationNanos;
+        }
     }
 }
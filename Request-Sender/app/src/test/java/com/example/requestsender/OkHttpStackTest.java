@@ -0,0 +1,24 @@
+package com.example.requestsender;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import okhttp3.Headers;
+
+import static org.junit.Assert.*;
+
+public class OkHttpStackTest {
+    @Test
+    public void nonAsciiTimes_canBeSent() {
+        Map<String, String> sent = new HashMap<>();
+        sent.put("X-Time-Sent", "23 f\u00e9vr. 2023 02:03:32");
+        sent.put("X-CheckSum", "70b4660615d71e9c99e7a284bdb663c08d74e157e934b85d94e7e60e71fbbbef");
+        sent.put("X-Other-Time", "Feb 23, 2023, 2:03:32\u202fAM");
+        Headers headers = OkHttpStack.buildHeaders(sent);
+        assertEquals("23 f\u00e9vr. 2023 02:03:32", headers.get("X-Time-Sent"));
+        assertEquals("Feb 23, 2023, 2:03:32\u202fAM", headers.get("X-Other-Time"));
+        assertEquals(3, headers.size());
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.requestsender.benchmarks;
+
+import com.example.requestsender.core.Host;
+import com.example.requestsender.core.HostJournal;
+import com.example.requestsender.core.HostStore;
+import com.example.requestsender.core.MappedHostTable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/* CLASS: BenchmarkData
+ * AIM: Create the hosts used by the benchmarks, shaped like the ones of the experimentation
+ *      (full URL as address, French date format as time)
+ */
+final class BenchmarkData {
+    private BenchmarkData() {}
+
+    static Host[] hosts(int count) {
+        Host[] hosts = new Host[count];
+        for (int i = 0; i < count; i++) {
+            String address = "https://10." + ((i >> 16) & 0xff) + "." + ((i >> 8) & 0xff) + "." + (i & 0xff) + ":5000/host" + i;
+            String time = (1 + i % 28) + " mars 2023 " + String.format("%02d:%02d:%02d", i % 24, i % 60, (i / 60) % 60);
+            hosts[i] = new Host(address, time, 2 * (i % 1000));
+        }
+        return hosts;
+    }
+
+    //Content of the legacy "hosts.txt" file holding the hosts
+    static String hostsFile(Host[] hosts) {
+        StringBuilder content = new StringBuilder(hosts.length * 64);
+        for (Host host : hosts) {
+            content.append(host.toStringForLog());
+        }
+        return content.toString();
+    }
+
+    static void write(File file, String content) throws IOException {
+        try (Writer out = new OutputStreamWriter(Files.newOutputStream(file.toPath()), StandardCharsets.UTF_8)) {
+            out.write(content);
+        }
+    }
+
+    //Store of the application: "table" (MappedHostTable) or "journal" (HostJournal), with the bounds of MainActivity
+    static HostStore store(String kind, File directory) {
+        return "journal".equals(kind)
+                ? new HostJournal(directory, HostJournal.DEFAULT_COMPACT_EVERY, 50)
+                : new MappedHostTable(directory, 32, 50);
+    }
+
+    static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.requestsender.benchmarks;
+
+import com.example.requestsender.core.ChecksumEncoding;
+import com.example.requestsender.core.ChecksumMode;
+import com.example.requestsender.core.Host;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/* CLASS: HostBenchmark
+ * AIM: Measure the per-packet work done for a host: generating the checksum, building the headers of
+ *      a request and evaluating the checksum of a response (MainActivity.Evaluate).
+ *
+ * PROCESS: "hostCount" hosts are created once per trial, and each invocation works on the next host
+ *      of the list, so that the cost of a large working set (cache misses) is part of the result.
+ *      "mode" and "encoding" are the checksum mode and encoding of the hosts (values of the
+ *      X-Checksum-Mode and X-Checksum-Encoding headers).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HostBenchmark {
+    @Param({"10", "10000", "1000000"})
+    public int hostCount;
+
+    @Param({"legacy", "hmac-sha256"})
+    public String mode;
+
+    @Param({"hex", "base64url-128"})
+    public String encoding;
+
+    private Host[] hosts;
+    private String[] responseChecksums;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void createHosts() {
+        hosts = BenchmarkData.hosts(hostCount);
+        responseChecksums = new String[hostCount];
+        for (int i = 0; i < hostCount; i++) {
+            hosts[i].setChecksumMode(ChecksumMode.fromHeader(mode));
+            hosts[i].setChecksumEncoding(ChecksumEncoding.fromHeader(encoding));
+            responseChecksums[i] = hosts[i].generateHash();
+        }
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = (index + 1 == hostCount) ? 0 : index + 1;
+        return index;
+    }
+
+    //The packet number of a host does not change between two calls: the checksum comes from its memo
+    @Benchmark
+    public String generateHash() {
+        return hosts[nextIndex()].generateHash();
+    }
+
+    //A new packet number for each call: the checksum is computed from the cached SHA-256 state of the time
+    //(legacy) or from the cached pad states of the key (hmac-sha256)
+    @Benchmark
+    public String generateNextHash() {
+        Host host = hosts[nextIndex()];
+        return host.generateHash(host.beginExchange());
+    }
+
+    //Same calls as secureRequests.getHeaders()
+    @Benchmark
+    public Map<String, String> generateHeaders() {
+        Host host = hosts[nextIndex()];
+        return host.generateHeaders(host.beginExchange());
+    }
+
+    //Same call as MainActivity.Evaluate(checksum, host)
+    @Benchmark
+    public boolean evaluate() {
+        int index = nextIndex();
+        return hosts[index].checksumMatches(responseChecksums[index]);
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.requestsender.benchmarks;
+
+import com.example.requestsender.core.HostLoader;
+import com.example.requestsender.core.HostRegistry;
+import com.example.requestsender.core.HostStore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/* CLASS: HostLoaderBenchmark
+ * AIM: Measure the startup path of the application (HostLoader.load(), see MainActivity.loadHosts()):
+ *      - importLegacy: first start, the legacy "hosts.txt" file is imported in an empty store
+ *      - load: every other start, the hosts are read from the store and registered
+ *
+ * PROCESS: "store" is the HostStore of the application: "table" (MappedHostTable) or "journal"
+ *      (HostJournal). A store of "hostCount" hosts is written once per trial for "load", and a new
+ *      empty store with its legacy file is prepared before each invocation of "importLegacy". The
+ *      stores are closed after each invocation, outside of the measure.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class HostLoaderBenchmark {
+    @Param({"10", "10000", "1000000"})
+    public int hostCount;
+
+    @Param({"table", "journal"})
+    public String store;
+
+    private File root;
+    private String hostsFile;
+    private File storedDirectory;
+    private File importDirectory;
+    private File legacyFile;
+    private HostStore opened;
+
+    @Setup(Level.Trial)
+    public void createStore() throws IOException {
+        root = Files.createTempDirectory("host-loader").toFile();
+        hostsFile = BenchmarkData.hostsFile(BenchmarkData.hosts(hostCount));
+        storedDirectory = new File(root, "stored");
+        storedDirectory.mkdir();
+        File legacy = new File(storedDirectory, "hosts.txt");
+        BenchmarkData.write(legacy, hostsFile);
+        try (HostStore hosts = BenchmarkData.store(store, storedDirectory)) {
+            HostLoader.load(hosts, legacy, new HostRegistry());
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void createLegacyFile() throws IOException {
+        importDirectory = new File(root, "import");
+        BenchmarkData.delete(importDirectory);
+        importDirectory.mkdir();
+        legacyFile = new File(importDirectory, "hosts.txt");
+        BenchmarkData.write(legacyFile, hostsFile);
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeStore() throws IOException {
+        if (opened != null) {
+            opened.close();
+            opened = null;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteStores() {
+        BenchmarkData.delete(root);
+    }
+
+    @Benchmark
+    public HostRegistry importLegacy() throws IOException {
+        HostRegistry registry = new HostRegistry();
+        opened = BenchmarkData.store(store, importDirectory);
+        HostLoader.load(opened, legacyFile, registry);
+        return registry;
+    }
+
+    @Benchmark
+    public HostRegistry load() throws IOException {
+        HostRegistry registry = new HostRegistry();
+        opened = BenchmarkData.store(store, storedDirectory);
+        HostLoader.load(opened, null, registry);
+        return registry;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.requestsender.benchmarks;
+
+import com.example.requestsender.core.Host;
+import com.example.requestsender.core.HostLoader;
+import com.example.requestsender.core.HostRegistry;
+import com.example.requestsender.core.HostStore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/* CLASS: HostStoreBenchmark
+ * AIM: Measure HostStore.update(), the persistence of the counter of a host done after every verified
+ *      response (MainActivity.updateHostDatabaseEntry)
+ *
+ * PROCESS: "store" is the HostStore of the application: "table" (MappedHostTable) or "journal"
+ *      (HostJournal), with its group commit. A store of "hostCount" hosts is written and loaded once per
+ *      trial, then each invocation exchanges one packet with the next host and stores its new counter,
+ *      so that the journal compactions and the cache misses of a large table are part of the result.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HostStoreBenchmark {
+    @Param({"10", "10000", "1000000"})
+    public int hostCount;
+
+    @Param({"table", "journal"})
+    public String store;
+
+    private File directory;
+    private HostStore hosts;
+    private Host[] stored;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void createStore() throws IOException {
+        directory = Files.createTempDirectory("host-store").toFile();
+        File legacy = new File(directory, "hosts.txt");
+        BenchmarkData.write(legacy, BenchmarkData.hostsFile(BenchmarkData.hosts(hostCount)));
+        HostRegistry registry = new HostRegistry();
+        hosts = BenchmarkData.store(store, directory);
+        HostLoader.load(hosts, legacy, registry);
+        stored = new Host[registry.size()];
+        int i = 0;
+        for (Host host : registry) {
+            stored[i++] = host;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteStore() throws IOException {
+        hosts.close();
+        BenchmarkData.delete(directory);
+    }
+
+    @Benchmark
+    public Host update() throws IOException {
+        Host host = stored[next];
+        next = (next + 1 == stored.length) ? 0 : next + 1;
+        long packet = host.beginExchange();
+        host.verifyResponse(packet, host.generateHash(packet + 1));
+        hosts.update(host);
+        return host;
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.requestsender.benchmarks;
+
+import com.example.requestsender.core.Host;
+import com.example.requestsender.core.HostsFileCodec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/* CLASS: HostsFileBenchmark
+ * AIM: Measure the parsing of the legacy "hosts.txt" file by HostsFileCodec.scan(), the only reader of
+ *      the format, used by LegacyHostsMigrator when HostLoader imports the file
+ *
+ * PROCESS: The file content is built in memory once per trial so that only the parsing is measured,
+ *      not the storage device (see HostLoaderBenchmark for the whole import).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class HostsFileBenchmark {
+    @Param({"10", "10000", "1000000"})
+    public int hostCount;
+
+    private String hostsFile;
+
+    @Setup(Level.Trial)
+    public void createFile() {
+        Host[] hosts = BenchmarkData.hosts(hostCount);
+        hostsFile = BenchmarkData.hostsFile(hosts);
+    }
+
+    @Benchmark
+    public int scan(Blackhole blackhole) throws IOException {
+        return HostsFileCodec.scan(new StringReader(hostsFile), (address, time, nbPacket) -> {
+            blackhole.consume(address);
+            blackhole.consume(time);
+            blackhole.consume(nbPacket);
+        });
+    }
+}
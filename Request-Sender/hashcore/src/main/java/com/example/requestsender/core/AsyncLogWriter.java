@@ -0,0 +1,305 @@
+package com.example.requestsender.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/* CLASS: AsyncLogWriter implements Closeable
+ * ATTRIBUTES:
+ *      - File file: the log file (the rotated files are named file.1, file.2...)
+ *      - ArrayBlockingQueue<String> queue: bounded ring buffer of the lines waiting to be written
+ *      - OverflowPolicy overflowPolicy: what happens when the ring buffer is full
+ *      - int batchBytes: the lines are written as soon as this many bytes are waiting
+ *      - long flushIntervalMillis: maximum time a line waits before being written
+ *      - long maxFileBytes: size after which the file is rotated (0: never)
+ *      - int maxBackups: number of rotated files kept
+ *      - AtomicLong dropped: number of lines dropped because the ring buffer was full
+ *
+ * AIM: Take the writing of the log files off the threads that produce the events: log() only puts the
+ *      line in a ring buffer, and a single background thread writes the lines in batches.
+ *
+ * PROCESS:
+ *      1. log() puts the line in the ring buffer. If it is full, the line is dropped and counted
+ *         (OverflowPolicy.DROP), or the caller waits for some room (OverflowPolicy.BLOCK).
+ *      2. The writer thread takes every waiting line, encodes it in a reusable buffer, and writes the
+ *         buffer with one FileChannel write when it holds "batchBytes" bytes, when the oldest line has
+ *         waited "flushIntervalMillis" milliseconds, when flush() is called, or when closing.
+ *      3. Before a write that would make the file bigger than "maxFileBytes", the file is rotated:
+ *         file.(n-1) becomes file.n, ..., file becomes file.1, and a new file is started.
+ *      4. If the buffer contained dropped lines, a line with their number is written.
+ *      5. If a write fails (storage full or removed), the writer is closed: the lines that were not
+ *         written and the lines logged afterwards are counted as dropped, and no caller of log() or
+ *         flush() is left waiting for a thread that does not write anymore.
+ */
+public class AsyncLogWriter implements Closeable {
+    public enum OverflowPolicy { DROP, BLOCK }
+
+    //Markers compared by reference, never written
+    private static final String FLUSH = new String("[FLUSH]");
+    private static final String WAKE_UP = new String("[WAKE UP]");
+
+    private final File file;
+    private final ArrayBlockingQueue<String> queue;
+    private final OverflowPolicy overflowPolicy;
+    private final int batchBytes;
+    private final long flushIntervalMillis;
+    private final long maxFileBytes;
+    private final int maxBackups;
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread writer;
+    private final ConcurrentLinkedQueue<CountDownLatch> flushWaiters = new ConcurrentLinkedQueue<>();
+    private volatile boolean closed = false;
+    private FileChannel channel;
+    private ByteBuffer buffer;
+    private int bufferedLines = 0; //Lines in "buffer", dropped if it cannot be written
+    private long reportedDrops = 0;
+
+    /* CONSTRUCTOR
+     * Open the log file in append mode and start the writer thread.
+     */
+    public AsyncLogWriter(File file, int capacity, OverflowPolicy overflowPolicy, int batchBytes,
+                          long flushIntervalMillis, long maxFileBytes, int maxBackups) throws IOException {
+        this.file = file;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.overflowPolicy = overflowPolicy;
+        this.batchBytes = batchBytes;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.maxFileBytes = maxFileBytes;
+        this.maxBackups = maxBackups;
+        this.buffer = ByteBuffer.allocate(Math.max(batchBytes, 1024) * 2);
+        this.channel = new FileOutputStream(file, true).getChannel();
+        this.writer = new Thread(this::writeLoop, "log-" + file.getName());
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    //Default settings: 1024 lines, 8 KB batches, written at least every 500 ms, rotated at 1 MB, 3 backups
+    public AsyncLogWriter(File file, OverflowPolicy overflowPolicy) throws IOException {
+        this(file, 1024, overflowPolicy, 8192, 500, 1024 * 1024, 3);
+    }
+
+    public long getDroppedCount() { return this.dropped.get(); } //Lines lost because the buffer was full
+
+    /* FUNCTION: log(String line)
+     * RETURNS: boolean (false if the line was dropped)
+     * PARAMETERS:
+     *      - String line: text to append to the file, as is (the caller adds the line separators)
+     *
+     * AIM: Hand the line to the writer thread (step 1 above)
+     */
+    public boolean log(String line) {
+        if (closed) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        if (overflowPolicy == OverflowPolicy.BLOCK) {
+            try {
+                if (offerUntilClosed(line)) {
+                    //A line queued after the writer thread failed and emptied the buffer is never written
+                    if (!closed || !queue.remove(line)) {
+                        return true;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        } else if (queue.offer(line)) {
+            return true;
+        }
+        dropped.incrementAndGet();
+        return false;
+    }
+
+    /* FUNCTION: flush()
+     * RETURNS: void
+     *
+     * AIM: Wait until every line logged before the call is written in the file (or until the writer
+     *      is closed, the lines it could not write being counted as dropped)
+     */
+    public void flush() throws InterruptedException {
+        if (closed) {
+            return;
+        }
+        CountDownLatch written = new CountDownLatch(1);
+        flushWaiters.add(written);
+        //The writer thread releases the waiters when it stops, but may have stopped before the add
+        if (!offerUntilClosed(FLUSH) || closed) {
+            return;
+        }
+        written.await();
+    }
+
+    //Waits for some room in the ring buffer, returns false if the writer is closed in the meantime
+    private boolean offerUntilClosed(String line) throws InterruptedException {
+        while (!queue.offer(line, flushIntervalMillis, TimeUnit.MILLISECONDS)) {
+            if (closed) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /* FUNCTION: close()
+     * RETURNS: void
+     *
+     * AIM: Write every waiting line, then stop the writer thread and close the file
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        queue.offer(WAKE_UP); //If the buffer is full, the writer thread is already busy
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //region Writer thread
+    /* FUNCTION: writeLoop()
+     * RETURNS: void
+     *
+     * AIM: Body of the writer thread (steps 2 to 4 above)
+     */
+    private void writeLoop() {
+        List<String> lines = new ArrayList<>();
+        int next = 0; //Index of the first line of "lines" not in the buffer yet
+        long firstPending = 0;
+        try {
+            while (!closed || !queue.isEmpty()) {
+                String line;
+                try {
+                    long wait = buffer.position() == 0 ? flushIntervalMillis
+                            : Math.max(1, firstPending + flushIntervalMillis - System.currentTimeMillis());
+                    line = queue.poll(wait, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    break;
+                }
+                int flushRequests = 0;
+                if (line != null) {
+                    lines.add(line);
+                    queue.drainTo(lines);
+                    while (next < lines.size()) {
+                        String pending = lines.get(next);
+                        if (pending == FLUSH) {
+                            flushRequests++;
+                        } else if (pending != WAKE_UP) {
+                            if (buffer.position() == 0) {
+                                firstPending = System.currentTimeMillis();
+                            }
+                            append(pending);
+                        }
+                        next++;
+                        if (buffer.position() >= batchBytes) {
+                            writeBuffer();
+                        }
+                    }
+                    lines.clear();
+                    next = 0;
+                }
+                if (buffer.position() > 0 && (flushRequests > 0 || closed || buffer.position() >= batchBytes
+                        || System.currentTimeMillis() - firstPending >= flushIntervalMillis)) {
+                    writeBuffer();
+                }
+                //Flush markers are processed in the order flush() registered its waiters
+                for (int i = 0; i < flushRequests; i++) {
+                    CountDownLatch waiter = flushWaiters.poll();
+                    if (waiter != null) {
+                        waiter.countDown();
+                    }
+                }
+            }
+            writeBuffer();
+        } catch (IOException e) {
+            //The file cannot be written anymore: the writer is closed and the remaining lines are dropped
+            closed = true;
+            List<String> remaining = new ArrayList<>();
+            queue.drainTo(remaining);
+            dropped.addAndGet(bufferedLines + countLines(lines.subList(next, lines.size())) + countLines(remaining));
+        } finally {
+            CountDownLatch waiter;
+            while ((waiter = flushWaiters.poll()) != null) {
+                waiter.countDown();
+            }
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                //Nothing else can be done with the file
+            }
+        }
+    }
+
+    private void append(String line) throws IOException {
+        long drops = dropped.get();
+        if (drops != reportedDrops) {
+            encode("\n[W] - " + (drops - reportedDrops) + " log lines dropped (log buffer full)");
+            reportedDrops = drops;
+        }
+        encode(line);
+        bufferedLines++;
+    }
+
+    private static int countLines(Collection<String> pending) {
+        int count = 0;
+        for (String line : pending) {
+            if (line != FLUSH && line != WAKE_UP) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void encode(String line) throws IOException {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > buffer.remaining()) {
+            writeBuffer();
+            if (bytes.length > buffer.capacity()) {
+                buffer = ByteBuffer.allocate(bytes.length * 2);
+            }
+        }
+        buffer.put(bytes);
+    }
+
+    private void writeBuffer() throws IOException {
+        if (buffer.position() == 0) {
+            return;
+        }
+        if (maxFileBytes > 0 && channel.size() > 0 && channel.size() + buffer.position() > maxFileBytes) {
+            rotate();
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+        bufferedLines = 0;
+    }
+
+    private void rotate() throws IOException {
+        channel.close();
+        for (int i = maxBackups; i > 0; i--) {
+            File source = i == 1 ? file : new File(file.getPath() + "." + (i - 1));
+            File target = new File(file.getPath() + "." + i);
+            if (source.exists() && (!target.exists() || target.delete())) {
+                source.renameTo(target);
+            }
+        }
+        if (maxBackups == 0 && !file.delete()) {
+            throw new IOException("Cannot rotate " + file);
+        }
+        channel = new FileOutputStream(file, true).getChannel();
+    }
+    //endregion
+}
@@ -0,0 +1,103 @@
+package com.example.requestsender.core;
+
+import java.util.Arrays;
+import java.util.Base64;
+
+/* ENUM: ChecksumEncoding
+ * AIM: Text encoding of the checksums in the X-CheckSum header, negotiated with the X-Checksum-Encoding
+ *      header of the requests (no header: HEX, which is the only encoding the Python servers know).
+ *          - HEX: the 32 bytes of the digest in lowercase hexadecimal (64 characters)
+ *          - BASE64URL: the 32 bytes in unpadded base64url (43 characters)
+ *          - BASE64URL_128: the first 16 bytes (a 128-bit truncated tag) in unpadded base64url
+ *            (22 characters)
+ *      The received checksums are decoded into a byte array of the size of the tag and compared with
+ *      the expected bytes in constant time (see HashChain.matches()), whatever the encoding. The name of
+ *      each value is sent in the header: existing names must never change.
+ */
+public enum ChecksumEncoding {
+    HEX("hex", 32),
+    BASE64URL("base64url", 32),
+    BASE64URL_128("base64url-128", 16);
+
+    public static final String HEADER = "X-Checksum-Encoding";
+
+    private static final Base64.Encoder BASE64 = Base64.getUrlEncoder().withoutPadding();
+    private static final byte[] HEX_VALUES = new byte[128];
+
+    static {
+        Arrays.fill(HEX_VALUES, (byte) -1);
+        for (int i = 0; i < 16; i++) {
+            HEX_VALUES["0123456789abcdef".charAt(i)] = (byte) i;
+        }
+    }
+
+    private final String name;
+    private final int tagBytes;
+
+    ChecksumEncoding(String name, int tagBytes) {
+        this.name = name;
+        this.tagBytes = tagBytes;
+    }
+
+    public String getName() { return this.name; } //Value of the X-Checksum-Encoding header
+    public int getTagBytes() { return this.tagBytes; } //Bytes of the digest kept in the checksum
+
+    //Number of characters of an encoded checksum
+    public int getLength() {
+        return this == HEX ? 2 * tagBytes : (tagBytes * 8 + 5) / 6;
+    }
+
+    //Bytes of the digest that make the checksum (the digest itself if nothing is truncated)
+    byte[] tag(byte[] digest) {
+        return digest.length == tagBytes ? digest : Arrays.copyOf(digest, tagBytes);
+    }
+
+    //Text of a tag returned by tag()
+    String encode(byte[] tag) {
+        return this == HEX ? ChecksumEngine.toHex(tag) : BASE64.encodeToString(tag);
+    }
+
+    /* FUNCTION: decode(String checksum)
+     * RETURNS: byte[] (null if the value cannot be a checksum of this encoding)
+     *
+     * AIM: Decode a received checksum into a tag of getTagBytes() bytes
+     */
+    byte[] decode(String checksum) {
+        if (checksum == null || checksum.length() != getLength()) {
+            return null;
+        }
+        if (this != HEX) {
+            try {
+                return Base64.getUrlDecoder().decode(checksum);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+        byte[] tag = new byte[tagBytes];
+        int invalid = 0;
+        for (int i = 0; i < tagBytes; i++) {
+            int high = hexValue(checksum.charAt(2 * i));
+            int low = hexValue(checksum.charAt(2 * i + 1));
+            invalid |= high | low; //Negative if one of the characters is not a lowercase hex digit
+            tag[i] = (byte) ((high << 4) | low);
+        }
+        return invalid < 0 ? null : tag;
+    }
+
+    //Encoding of a request from its X-Checksum-Encoding header (null: HEX), null if the encoding is unknown
+    public static ChecksumEncoding fromHeader(String header) {
+        if (header == null) {
+            return HEX;
+        }
+        for (ChecksumEncoding encoding : values()) {
+            if (encoding.name.equalsIgnoreCase(header.trim())) {
+                return encoding;
+            }
+        }
+        return null;
+    }
+
+    private static int hexValue(char c) {
+        return c < 128 ? HEX_VALUES[c] : -1;
+    }
+}
@@ -0,0 +1,334 @@
+package com.example.requestsender.core;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/* CLASS: ChecksumEngine
+ * ATTRIBUTES:
+ *      - byte[] HEX_DIGITS: lookup table used to hex-encode a digest without any String work
+ *      - ThreadLocal<Scratch> SCRATCH: per-thread SHA-256 instance and reusable buffers
+ *
+ * AIM: Compute the security hash used by the protocol,
+ *          SHA256( SHA256([Time of the first request]) + [string value of the number of requests exchanged] )
+ *      as cheaply as possible, so that a gateway can generate and verify thousands of them per second.
+ *
+ * PROCESS:
+ *      1. The inner digest SHA256(time) never changes for a given host: it is computed once with
+ *         timeDigest() and kept by the Host as 64 lowercase hexadecimal ASCII bytes.
+ *      2. For each packet, the hex bytes and the decimal value of the counter are written in a
+ *         reusable buffer owned by the current thread, and hashed with the thread's own MessageDigest
+ *         (MessageDigest is not thread-safe, so each thread gets its own instance).
+ *      3. The outer digest is hex-encoded through a lookup table into another reusable buffer, which
+ *         is either turned into a String (when sending) or compared byte per byte with the received
+ *         checksum (when verifying), without creating any intermediate String.
+ *
+ * NB: The output is bit-for-bit identical to the former Host.shaIt(shaIt(time) + nbPacket).
+ *
+ * HMAC MODE (ChecksumMode.HMAC_SHA256): the checksum of a packet is HMAC-SHA256(key, [decimal packet
+ *      number]) in hexadecimal, with key = HMAC-SHA256(HMAC_KEY_LABEL, [hex SHA256(time)]) derived once
+ *      per host. HMAC-SHA256(K, m) = SHA256( (K ^ opad) + SHA256( (K ^ ipad) + m ) ): the states reached
+ *      after hashing the two padded keys (one block each) are computed once (hmacPads()) and copied for
+ *      every packet, so that a checksum costs one compression over the counter and one over the inner
+ *      hash.
+ *
+ * ENCODINGS: checksumBytes() and hmacBytes() return the raw digest, which HashChain encodes with the
+ *      ChecksumEncoding of the host (hexadecimal, base64url, truncated tag...).
+ */
+public final class ChecksumEngine {
+    public static final int HEX_LENGTH = 64; //Length of a hex-encoded SHA-256 digest
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final int MAX_COUNTER_DIGITS = 20; //Enough for any long value, sign included
+    private static final int BLOCK_SIZE = 64; //SHA-256 block, the size of the HMAC pads
+    private static final byte[] HMAC_KEY_LABEL = "RequestSender HMAC-SHA256 v1".getBytes(StandardCharsets.US_ASCII);
+
+    private static final ThreadLocal<Scratch> SCRATCH = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch();
+        }
+    };
+
+    private ChecksumEngine() {}
+
+    /* FUNCTION: timeDigest(String time)
+     * RETURNS: byte[]
+     * PARAMETERS:
+     *      - String time: date and time of the first request sent to a host
+     *
+     * AIM: Return the inner digest SHA256(time) as 64 lowercase hexadecimal ASCII bytes. This is the
+     * value a Host caches so that it never has to be computed again.
+     */
+    public static byte[] timeDigest(String time) {
+        Scratch scratch = SCRATCH.get();
+        byte[] digest = scratch.sha256.digest(time.getBytes(StandardCharsets.UTF_8));
+        byte[] hex = new byte[HEX_LENGTH];
+        encodeHex(digest, hex);
+        return hex;
+    }
+
+    /* FUNCTION: checksum(byte[] timeDigest, long nbPacket)
+     * RETURNS: String
+     * PARAMETERS:
+     *      - byte[] timeDigest: cached hex value of SHA256(time), as returned by timeDigest()
+     *      - long nbPacket: number of requests exchanged, used as the second part of the hashed value
+     *
+     * AIM: Generate the hex checksum to be put in the "X-CheckSum" header
+     */
+    public static String checksum(byte[] timeDigest, long nbPacket) {
+        Scratch scratch = SCRATCH.get();
+        digest(scratch, timeDigest, nbPacket);
+        return new String(scratch.hex, 0, HEX_LENGTH, StandardCharsets.US_ASCII);
+    }
+
+    /* FUNCTION: matches(byte[] timeDigest, long nbPacket, String candidate)
+     * RETURNS: boolean
+     * PARAMETERS:
+     *      - byte[] timeDigest: cached hex value of SHA256(time), as returned by timeDigest()
+     *      - long nbPacket: number of requests exchanged
+     *      - String candidate: checksum received from the other party (may be null)
+     *
+     * AIM: Check that the received checksum is the expected one without building the expected String.
+     *
+     * PROCESS:
+     *      1. Reject null values or values that do not have the length of a hex SHA-256 digest
+     *      2. Compute the expected hex bytes in the thread's buffer
+     *      3. Compare every character, accumulating the differences so that the comparison time does
+     *         not depend on the position of the first wrong character
+     */
+    public static boolean matches(byte[] timeDigest, long nbPacket, String candidate) {
+        if (candidate == null || candidate.length() != HEX_LENGTH) { //STEP 1
+            return false;
+        }
+        Scratch scratch = SCRATCH.get();
+        digest(scratch, timeDigest, nbPacket); //STEP 2
+        return sameHex(scratch.hex, candidate); //STEP 3
+    }
+
+    /* FUNCTION: prefixDigest(byte[] timeDigest)
+     * RETURNS: MessageDigest (null if the SHA-256 implementation cannot be cloned)
+     *
+     * AIM: Return a SHA-256 state that already hashed timeDigest (one 64-byte block), to be cloned by
+     * checksum(prefix, timeDigest, nbPacket) instead of hashing timeDigest again for every packet
+     */
+    static MessageDigest prefixDigest(byte[] timeDigest) {
+        try {
+            MessageDigest prefix = MessageDigest.getInstance("SHA-256");
+            prefix.update(timeDigest);
+            prefix.clone(); //Fails now, rather than for every checksum, if the state cannot be copied
+            return prefix;
+        } catch (NoSuchAlgorithmException | CloneNotSupportedException e) {
+            return null;
+        }
+    }
+
+    /* FUNCTION: checksum(MessageDigest prefix, byte[] timeDigest, long nbPacket)
+     * RETURNS: String
+     *
+     * AIM: Same as checksum(timeDigest, nbPacket), starting from a copy of the state returned by
+     * prefixDigest(timeDigest), so that only the decimal value of the counter is hashed
+     */
+    static String checksum(MessageDigest prefix, byte[] timeDigest, long nbPacket) {
+        return toHex(checksumBytes(prefix, timeDigest, nbPacket));
+    }
+
+    //Same as checksum(prefix, timeDigest, nbPacket), returning the 32 bytes of the digest (to be encoded by a ChecksumEncoding)
+    static byte[] checksumBytes(MessageDigest prefix, byte[] timeDigest, long nbPacket) {
+        Scratch scratch = SCRATCH.get();
+        MessageDigest sha256 = null;
+        try {
+            sha256 = prefix == null ? null : (MessageDigest) prefix.clone();
+        } catch (CloneNotSupportedException e) {
+            //Hash the whole value below
+        }
+        if (sha256 == null) {
+            return digest(scratch, timeDigest, nbPacket);
+        }
+        sha256.update(scratch.input, 0, writeDecimal(nbPacket, scratch.input, 0));
+        return sha256.digest();
+    }
+
+    /* FUNCTION: hmacKey(byte[] timeDigest)
+     * RETURNS: byte[] (32 bytes)
+     *
+     * AIM: Derive the HMAC key of a host from its cached hex SHA256(time), once per host
+     */
+    static byte[] hmacKey(byte[] timeDigest) {
+        MessageDigest[] pads = hmacPads(HMAC_KEY_LABEL);
+        return hmac(pads[0], pads[1], timeDigest, 0, timeDigest.length);
+    }
+
+    /* FUNCTION: hmacPads(byte[] key)
+     * RETURNS: MessageDigest[] ({inner, outer})
+     *
+     * AIM: Return the SHA-256 states after hashing K ^ ipad and K ^ opad, to be cloned for every message
+     */
+    static MessageDigest[] hmacPads(byte[] key) {
+        try {
+            MessageDigest inner = MessageDigest.getInstance("SHA-256");
+            MessageDigest outer = MessageDigest.getInstance("SHA-256");
+            byte[] block = new byte[BLOCK_SIZE];
+            byte[] shortKey = key.length > BLOCK_SIZE ? inner.digest(key) : key; //Longer keys are hashed first
+            System.arraycopy(shortKey, 0, block, 0, shortKey.length);
+            byte[] padded = new byte[BLOCK_SIZE];
+            for (int i = 0; i < BLOCK_SIZE; i++) {
+                padded[i] = (byte) (block[i] ^ 0x36);
+            }
+            inner.update(padded);
+            for (int i = 0; i < BLOCK_SIZE; i++) {
+                padded[i] = (byte) (block[i] ^ 0x5c);
+            }
+            outer.update(padded);
+            inner.clone(); //Fails now, rather than for every checksum, if the state cannot be copied
+            return new MessageDigest[]{inner, outer};
+        } catch (NoSuchAlgorithmException | CloneNotSupportedException e) {
+            //Every Java platform has to provide a cloneable SHA-256, this can only happen on a broken runtime
+            throw new IllegalStateException("SHA-256 states cannot be copied", e);
+        }
+    }
+
+    /* FUNCTION: hmacChecksum(MessageDigest inner, MessageDigest outer, long nbPacket)
+     * RETURNS: String
+     *
+     * AIM: Hex HMAC-SHA256 of the decimal packet number, from the states returned by hmacPads()
+     */
+    static String hmacChecksum(MessageDigest inner, MessageDigest outer, long nbPacket) {
+        return toHex(hmacBytes(inner, outer, nbPacket));
+    }
+
+    //Same as hmacChecksum(inner, outer, nbPacket), returning the 32 bytes of the HMAC
+    static byte[] hmacBytes(MessageDigest inner, MessageDigest outer, long nbPacket) {
+        Scratch scratch = SCRATCH.get();
+        return hmac(inner, outer, scratch.input, 0, writeDecimal(nbPacket, scratch.input, 0));
+    }
+
+    /* FUNCTION: sameHex(byte[] hex, String candidate)
+     * RETURNS: boolean
+     *
+     * AIM: Compare hex bytes with a received checksum, accumulating the differences so that the
+     * comparison time does not depend on the position of the first wrong character
+     */
+    static boolean sameHex(byte[] hex, String candidate) {
+        if (candidate == null || candidate.length() != hex.length) {
+            return false;
+        }
+        int diff = 0;
+        for (int i = 0; i < hex.length; i++) {
+            diff |= hex[i] ^ candidate.charAt(i);
+        }
+        return diff == 0;
+    }
+
+    //Same as sameHex(hex, candidate), for an expected checksum kept as a String (in any ChecksumEncoding)
+    static boolean sameText(String expected, String candidate) {
+        if (candidate == null || candidate.length() != expected.length()) {
+            return false;
+        }
+        int diff = 0;
+        for (int i = 0; i < expected.length(); i++) {
+            diff |= expected.charAt(i) ^ candidate.charAt(i);
+        }
+        return diff == 0;
+    }
+
+    /* FUNCTION: sameBytes(byte[] expected, byte[] candidate)
+     * RETURNS: boolean
+     *
+     * AIM: Compare two tags of the same size, accumulating the differences so that the comparison time
+     * does not depend on the position of the first wrong byte
+     */
+    static boolean sameBytes(byte[] expected, byte[] candidate) {
+        if (candidate == null || candidate.length != expected.length) {
+            return false;
+        }
+        int diff = 0;
+        for (int i = 0; i < expected.length; i++) {
+            diff |= expected[i] ^ candidate[i];
+        }
+        return diff == 0;
+    }
+
+    //Lowercase hexadecimal text of a digest
+    static String toHex(byte[] digest) {
+        byte[] hex = new byte[2 * digest.length];
+        encodeHex(digest, hex);
+        return new String(hex, StandardCharsets.US_ASCII);
+    }
+
+    //region Utilities
+    /* FUNCTION: digest(Scratch scratch, byte[] timeDigest, long nbPacket)
+     * RETURNS: byte[]
+     *
+     * AIM: Hash [timeDigest][decimal nbPacket], leave the hex result in scratch.hex and return the digest
+     */
+    private static byte[] digest(Scratch scratch, byte[] timeDigest, long nbPacket) {
+        byte[] input = scratch.input;
+        System.arraycopy(timeDigest, 0, input, 0, HEX_LENGTH);
+        int length = HEX_LENGTH + writeDecimal(nbPacket, input, HEX_LENGTH);
+        scratch.sha256.update(input, 0, length);
+        byte[] digest = scratch.sha256.digest();
+        encodeHex(digest, scratch.hex);
+        return digest;
+    }
+
+    /* FUNCTION: writeDecimal(long value, byte[] buffer, int offset)
+     * RETURNS: int (number of bytes written)
+     *
+     * AIM: Write the same characters as Long.toString(value) in the buffer, without allocating
+     */
+    private static int writeDecimal(long value, byte[] buffer, int offset) {
+        if (value < 0) {
+            byte[] text = Long.toString(value).getBytes(StandardCharsets.US_ASCII);
+            System.arraycopy(text, 0, buffer, offset, text.length);
+            return text.length;
+        }
+        int digits = 1;
+        for (long rest = value / 10; rest != 0; rest /= 10) {
+            digits++;
+        }
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            buffer[i] = (byte) ('0' + (value % 10));
+            value /= 10;
+        }
+        return digits;
+    }
+
+    //HMAC of a message, starting from copies of the pad states (never modified)
+    private static byte[] hmac(MessageDigest inner, MessageDigest outer, byte[] message, int offset, int length) {
+        try {
+            MessageDigest innerHash = (MessageDigest) inner.clone();
+            innerHash.update(message, offset, length);
+            MessageDigest outerHash = (MessageDigest) outer.clone();
+            outerHash.update(innerHash.digest());
+            return outerHash.digest();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException("SHA-256 states cannot be copied", e); //Checked by hmacPads()
+        }
+    }
+
+    private static void encodeHex(byte[] digest, byte[] hex) {
+        for (int i = 0; i < digest.length; i++) {
+            hex[2 * i] = HEX_DIGITS[(digest[i] >> 4) & 0x0f];
+            hex[2 * i + 1] = HEX_DIGITS[digest[i] & 0x0f];
+        }
+    }
+
+    /* CLASS: Scratch
+     * AIM: Objects that are reused by every checksum computed on the same thread
+     */
+    private static final class Scratch {
+        private final MessageDigest sha256;
+        private final byte[] input = new byte[HEX_LENGTH + MAX_COUNTER_DIGITS];
+        private final byte[] hex = new byte[HEX_LENGTH];
+
+        private Scratch() {
+            try {
+                sha256 = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                //Every Java platform has to provide SHA-256, this can only happen on a broken runtime
+                throw new IllegalStateException("SHA-256 is not available", e);
+            }
+        }
+    }
+    //endregion
+}
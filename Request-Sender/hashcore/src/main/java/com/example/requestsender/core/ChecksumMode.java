@@ -0,0 +1,37 @@
+package com.example.requestsender.core;
+
+/* ENUM: ChecksumMode
+ * AIM: Algorithm of the checksums exchanged with a host, negotiated with the X-Checksum-Mode header of
+ *      the requests (no header: LEGACY, which is the only mode the Python servers know).
+ *          - LEGACY: SHA256( SHA256(time) + [decimal packet number] )
+ *          - HMAC_SHA256: HMAC-SHA256( key, [decimal packet number] ), where the key of the host is
+ *            derived once from SHA256(time) (see ChecksumEngine.hmacKey())
+ *      The name of each value is sent in the header: existing names must never change.
+ */
+public enum ChecksumMode {
+    LEGACY("legacy"),
+    HMAC_SHA256("hmac-sha256");
+
+    public static final String HEADER = "X-Checksum-Mode";
+
+    private final String name;
+
+    ChecksumMode(String name) {
+        this.name = name;
+    }
+
+    public String getName() { return this.name; } //Value of the X-Checksum-Mode header
+
+    //Mode of a request from its X-Checksum-Mode header (null: LEGACY), null if the mode is unknown
+    public static ChecksumMode fromHeader(String header) {
+        if (header == null) {
+            return LEGACY;
+        }
+        for (ChecksumMode mode : values()) {
+            if (mode.name.equalsIgnoreCase(header.trim())) {
+                return mode;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.requestsender.core;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/* CLASS: ChecksumWindow
+ * ATTRIBUTES:
+ *      - Host host: the host whose packet numbers are reserved
+ *      - int size: number of exchanges (request + response) reserved at once
+ *      - ConcurrentLinkedQueue<Slot> ready: reserved exchanges whose request was not sent yet
+ *      - ChecksumEncoding encoding: encoding of the checksums of the host when the window was created
+ *      - ConcurrentHashMap<Long, byte[]> expected: packet number of the request of every awaited response
+ *        -> tag (decoded checksum) expected in that response
+ *
+ * AIM: Allow several requests to the same host to be in flight at the same time (pipelined mode),
+ *      instead of waiting for each response before sending the next request.
+ *
+ * PROCESS:
+ *      1. When no reserved exchange is left, the window reserves "size" exchanges of the host at once
+ *         (packets N, N + 2, ..., N + 2 * (size - 1)) and precomputes both the checksum of each request
+ *         and the checksum expected in its response, out of the sending path.
+ *      2. reserve() hands out the exchanges in increasing order, so that the server receives the
+ *         packet numbers in the order it expects them.
+ *      3. matchResponse() accepts responses in any order: the received checksum is decoded once, like
+ *         outside the pipelined mode (ChecksumEncoding.decode()), and its tag is compared in constant
+ *         time with the tag of each awaited response. The matching response is removed from the awaited
+ *         ones, so that each response can only be accepted once.
+ *      4. When a new window is reserved, the expected values of the windows before the previous one
+ *         are forgotten (their requests failed or their responses were lost).
+ *
+ * NB: Reserved exchanges that are never sent are simply skipped. They are not persisted, so after a
+ *      restart the host continues from the last verified exchange.
+ */
+public class ChecksumWindow {
+    private final Host host;
+    private final int size;
+    private final ConcurrentLinkedQueue<Slot> ready = new ConcurrentLinkedQueue<>();
+    private final ChecksumEncoding encoding;
+    private final ConcurrentHashMap<Long, byte[]> expected = new ConcurrentHashMap<>();
+
+    /* CLASS: Slot
+     * AIM: One reserved exchange: the packet number of the request and its precomputed checksum
+     */
+    public static final class Slot {
+        private final long packet;
+        private final String requestChecksum;
+
+        Slot(long packet, String requestChecksum) {
+            this.packet = packet;
+            this.requestChecksum = requestChecksum;
+        }
+
+        public long getPacket() { return this.packet; } //Packet number of the request
+        public String getRequestChecksum() { return this.requestChecksum; } //Checksum of the request
+    }
+
+    /* CONSTRUCTOR
+     * Create a window of "size" exchanges for the host. Nothing is reserved before the first request.
+     */
+    public ChecksumWindow(Host host, int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("The window must contain at least one exchange");
+        }
+        this.host = host;
+        this.size = size;
+        this.encoding = host.getChecksumEncoding(); //Host.setChecksumEncoding() creates a new window
+    }
+
+    public int getSize() { return this.size; } //Number of exchanges reserved at once
+    public int getPendingResponses() { return this.expected.size(); } //Responses that are still awaited
+
+    /* FUNCTION: reserve()
+     * RETURNS: Slot
+     * PARAMETERS: none
+     *
+     * AIM: Return the next exchange to be used by a request, reserving a new window if needed
+     */
+    public Slot reserve() {
+        Slot slot = ready.poll();
+        while (slot == null) {
+            refill();
+            slot = ready.poll();
+        }
+        return slot;
+    }
+
+    /* FUNCTION: matchResponse(String checksum)
+     * RETURNS: long (packet number of the request answered by the response, -1 if it was not expected)
+     * PARAMETERS:
+     *      - String checksum: the checksum of the response (may be null)
+     *
+     * AIM: Accept a response whatever its position in the window
+     */
+    public long matchResponse(String checksum) {
+        byte[] received = encoding.decode(checksum);
+        if (received == null) {
+            return -1;
+        }
+        for (Map.Entry<Long, byte[]> awaited : expected.entrySet()) {
+            if (ChecksumEngine.sameBytes(awaited.getValue(), received)
+                    && expected.remove(awaited.getKey(), awaited.getValue())) {
+                return awaited.getKey();
+            }
+        }
+        return -1;
+    }
+
+    /* FUNCTION: discardReserved()
+     * RETURNS: void
+     *
+     * AIM: Forget the exchanges that were reserved but not sent yet, after the host was moved to a later
+     * position of its chain (see Host.resynchronize()): the next request reserves a new window from there
+     */
+    void discardReserved() {
+        ready.clear();
+    }
+
+    /* FUNCTION: refill()
+     * RETURNS: void
+     *
+     * AIM: Reserve the next window of exchanges and precompute its checksums (steps 1 and 4 above)
+     */
+    private synchronized void refill() {
+        if (!ready.isEmpty()) { //Another thread refilled the window while this one was waiting
+            return;
+        }
+        long first = host.beginExchanges(size);
+        long oldest = first - 2L * size; //Start of the previous window
+        expected.keySet().removeIf(packet -> packet < oldest);
+        for (int i = 0; i < size; i++) {
+            long packet = first + 2L * i;
+            expected.put(packet, encoding.decode(host.generateHash(packet + 1)));
+            ready.add(new Slot(packet, host.generateHash(packet)));
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.example.requestsender.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/* CLASS: CompactHostFormat
+ * ATTRIBUTES:
+ *      - int MAGIC: first 4 bytes of every file ("HCMP")
+ *      - int VERSION: version of the format written by this class
+ *
+ * AIM: Versioned, compact binary format of a list of hosts (used for the snapshot of the HostJournal and
+ *      by the LegacyHostsMigrator), where any corruption is detected instead of being read as wrong
+ *      numbers.
+ *
+ * PROCESS:
+ *      The file starts with a header [magic: 4 bytes][version: 2 bytes], followed by records:
+ *          [type: 1 byte][length of the payload: varint][payload][CRC32 of the type, length and payload: 4 bytes]
+ *      The payloads only use varints (7 bits per byte, the high bit set when another byte follows) and
+ *      length-prefixed UTF-8 strings ([length: varint][bytes]):
+ *          - ORIGIN [origin]                                       the next entry of the address table
+ *          - HOST   [id][origin index][path][time][packets]       one host, packets is zigzag-encoded
+ *          - END    [number of HOST records]                      last record of the file
+ *      1. The address of a host is split into its origin ("https://192.168.0.17:5000") and its path
+ *         ("/hostA"). Each origin is written once, in an ORIGIN record placed before the first host that
+ *         uses it, so that the hosts of the same server share it and the file can be written in one pass
+ *      2. The reader checks the header and the CRC of every record, and that the END record is there
+ *         with the right number of hosts: a damaged or truncated file throws an IOException
+ *      3. Readers skip the records of an unknown type with a correct CRC, so that a later version of the
+ *         format can add records that this version ignores
+ */
+public final class CompactHostFormat {
+    public static final int MAGIC = 0x48434D50; //"HCMP"
+    public static final int VERSION = 1;
+
+    private static final byte TYPE_ORIGIN = 1;
+    private static final byte TYPE_HOST = 2;
+    private static final byte TYPE_END = 3;
+    private static final int MAX_PAYLOAD = 1 << 20; //A longer length can only come from a damaged file
+
+    private CompactHostFormat() {}
+
+    /* INTERFACE: Visitor
+     * AIM: Receives each host read from a file, in the order they were written
+     */
+    public interface Visitor {
+        void visit(int id, String address, String time, long packets) throws IOException;
+    }
+
+    /* CLASS: Writer implements Closeable
+     * AIM: Write a file host after host (nothing is kept in memory but the address table)
+     */
+    public static final class Writer implements Closeable {
+        private final DataOutputStream out;
+        private final Map<String, Integer> origins = new HashMap<>();
+        private final ByteArrayOutputStream payload = new ByteArrayOutputStream(128);
+        private final ByteArrayOutputStream record = new ByteArrayOutputStream(160);
+        private final CRC32 crc = new CRC32();
+        private int hosts = 0;
+        private boolean finished = false;
+
+        //Write the header. The stream is closed with the writer.
+        public Writer(OutputStream stream) throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(stream));
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+        }
+
+        public int getHostCount() { return this.hosts; } //HOST records written
+
+        /* FUNCTION: write(int id, String address, String time, long packets)
+         * RETURNS: void
+         *
+         * AIM: Write the HOST record of a host, preceded by the ORIGIN record of its origin if it is a new one
+         */
+        public void write(int id, String address, String time, long packets) throws IOException {
+            int split = originLength(address);
+            String origin = address.substring(0, split);
+            Integer index = origins.get(origin);
+            if (index == null) {
+                index = origins.size();
+                origins.put(origin, index);
+                payload.reset();
+                writeString(payload, origin);
+                writeRecord(TYPE_ORIGIN);
+            }
+            payload.reset();
+            writeVarint(payload, id);
+            writeVarint(payload, index);
+            writeString(payload, address.substring(split));
+            writeString(payload, time);
+            writeVarint(payload, (packets << 1) ^ (packets >> 63));
+            writeRecord(TYPE_HOST);
+            hosts++;
+        }
+
+        public void write(Host host) throws IOException {
+            write(host.getId(), host.getRemoteAddress(), host.getTime(), host.getNbVerified());
+        }
+
+        /* FUNCTION: finish()
+         * RETURNS: void
+         *
+         * AIM: Write the END record and flush the file (the stream is left open, e.g. to be synced)
+         */
+        public void finish() throws IOException {
+            if (finished) {
+                return;
+            }
+            payload.reset();
+            writeVarint(payload, hosts);
+            writeRecord(TYPE_END);
+            out.flush();
+            finished = true;
+        }
+
+        //Finish the file, then close the stream
+        @Override
+        public void close() throws IOException {
+            try {
+                finish();
+            } finally {
+                out.close();
+            }
+        }
+
+        private void writeRecord(byte type) throws IOException {
+            record.reset();
+            record.write(type);
+            writeVarint(record, payload.size());
+            payload.writeTo(record);
+            crc.reset();
+            crc.update(record.toByteArray(), 0, record.size());
+            record.writeTo(out);
+            out.writeInt((int) crc.getValue());
+        }
+    }
+
+    /* FUNCTION: read(InputStream stream, Visitor visitor)
+     * RETURNS: int (number of hosts read)
+     * PARAMETERS:
+     *      - InputStream stream: content of the file (read until the END record, not closed)
+     *      - Visitor visitor: receives every host
+     *
+     * AIM: Read a file written by a Writer, checking every record (step 2 above)
+     */
+    public static int read(InputStream stream, Visitor visitor) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a compact host file");
+            }
+            int version = in.readUnsignedShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported compact host file version: " + version);
+            }
+            List<String> origins = new ArrayList<>();
+            CRC32 crc = new CRC32();
+            int hosts = 0;
+            while (true) {
+                ByteArrayOutputStream header = new ByteArrayOutputStream(6);
+                int type = in.readUnsignedByte();
+                header.write(type);
+                long length = readVarint(in, header);
+                if (length > MAX_PAYLOAD) {
+                    throw new IOException("Corrupted compact host file: record of " + length + " bytes");
+                }
+                byte[] payload = new byte[(int) length];
+                in.readFully(payload);
+                crc.reset();
+                crc.update(header.toByteArray(), 0, header.size());
+                crc.update(payload, 0, payload.length);
+                if (in.readInt() != (int) crc.getValue()) {
+                    throw new IOException("Corrupted compact host file: wrong CRC after " + hosts + " hosts");
+                }
+                Payload fields = new Payload(payload);
+                if (type == TYPE_ORIGIN) {
+                    origins.add(fields.readString());
+                } else if (type == TYPE_HOST) {
+                    int id = (int) fields.readVarint();
+                    int origin = (int) fields.readVarint();
+                    if (origin < 0 || origin >= origins.size()) {
+                        throw new IOException("Corrupted compact host file: unknown origin " + origin);
+                    }
+                    String address = origins.get(origin) + fields.readString();
+                    String time = fields.readString();
+                    long zigzag = fields.readVarint();
+                    visitor.visit(id, address, time, (zigzag >>> 1) ^ -(zigzag & 1));
+                    hosts++;
+                } else if (type == TYPE_END) {
+                    if (fields.readVarint() != hosts) {
+                        throw new IOException("Corrupted compact host file: wrong number of hosts");
+                    }
+                    return hosts;
+                }
+                //Other types: records of a later version, skipped (step 3 above)
+            }
+        } catch (EOFException e) {
+            throw new IOException("Truncated compact host file", e);
+        }
+    }
+
+    //region Utilities
+    //Length of the origin of an address: up to the first "/" after "scheme://", the whole address otherwise
+    static int originLength(String address) {
+        int scheme = address.indexOf("://");
+        if (scheme < 0) {
+            return address.length();
+        }
+        int path = address.indexOf('/', scheme + 3);
+        return path < 0 ? address.length() : path;
+    }
+
+    static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    //Read a varint from the stream, copying its bytes in "copy" (for the CRC)
+    private static long readVarint(DataInputStream in, ByteArrayOutputStream copy) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            copy.write(b);
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupted compact host file: varint too long");
+    }
+
+    /* CLASS: Payload
+     * AIM: Reads the fields of a record payload whose CRC was checked
+     */
+    private static final class Payload {
+        private final byte[] bytes;
+        private int position = 0;
+
+        private Payload(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        private long readVarint() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (position >= bytes.length) {
+                    throw new IOException("Corrupted compact host file: record too short");
+                }
+                int b = bytes[position++] & 0xFF;
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Corrupted compact host file: varint too long");
+        }
+
+        private String readString() throws IOException {
+            long length = readVarint();
+            if (length < 0 || length > bytes.length - position) {
+                throw new IOException("Corrupted compact host file: string too long");
+            }
+            String value = new String(bytes, position, (int) length, StandardCharsets.UTF_8);
+            position += (int) length;
+            return value;
+        }
+    }
+    //endregion
+}
@@ -0,0 +1,38 @@
+package com.example.requestsender.core;
+
+/* CLASS: ConnectionEvent
+ * ATTRIBUTES:
+ *      - long epochMillis: time of the event (milliseconds since 1970-01-01T00:00:00Z)
+ *      - long addressHash: hash of the address of the host (HostRegistry.addressHash). The ids of a HostStore
+ *        are given to other hosts after a purge, while the connection log is kept: the hash designates
+ *        the same address in every record, whatever the purges in between
+ *      - ConnectionOutcome outcome: result of the security assessment
+ *      - long packets: number of packets exchanged once the response is handled
+ *
+ * AIM: One record of the binary connection log (see ConnectionEventLog for the format)
+ */
+public final class ConnectionEvent {
+    public static final int SIZE = 8 + 8 + 1 + 8; //Size of a record in the file
+
+    private final long epochMillis;
+    private final long addressHash;
+    private final ConnectionOutcome outcome;
+    private final long packets;
+
+    public ConnectionEvent(long epochMillis, long addressHash, ConnectionOutcome outcome, long packets) {
+        this.epochMillis = epochMillis;
+        this.addressHash = addressHash;
+        this.outcome = outcome;
+        this.packets = packets;
+    }
+
+    public long getEpochMillis() { return this.epochMillis; } //Time property
+    public long getAddressHash() { return this.addressHash; } //Address hash property
+    public ConnectionOutcome getOutcome() { return this.outcome; } //Outcome property
+    public long getPackets() { return this.packets; } //Packets property
+
+    @Override
+    public String toString() {
+        return java.time.Instant.ofEpochMilli(epochMillis) +  " host=" + Long.toHexString(addressHash) + " " + outcome + " packets=" + packets;
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.requestsender.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/* CLASS: ConnectionEventLog implements Closeable
+ * ATTRIBUTES:
+ *      - FileChannel channel: the binary connection log, opened once
+ *      - ByteBuffer pending: events waiting to be written
+ *      - GroupCommit flushes: writes the buffer once its oldest event waited "flushIntervalMillis" milliseconds
+ *        (null if "flushIntervalMillis" is 0: every event is written at once)
+ *
+ * AIM: Record the connection events as compact fixed-schema binary records instead of locale-formatted
+ *      text, so that they can be filtered quickly (see ConnectionEventReader) over very large logs.
+ *
+ * PROCESS:
+ *      The file starts with a header [magic "HCEV"][version] followed by records of ConnectionEvent.SIZE
+ *      (25) bytes, big-endian:
+ *          [epoch millis: long][address hash: long][outcome code: byte][packets: long]
+ *      1. When the file is opened, an incomplete last record (the application was killed while writing)
+ *         is cut, so that every record of the file starts at HEADER_SIZE + n * SIZE. A log of the first
+ *         version, whose records held the reusable id of the host in its store, is renamed to
+ *         file.v1 and a new log is started.
+ *      2. append() encodes the event in a buffer of "batchEvents" events, which is written with one
+ *         FileChannel write when it is full, on flush() and on close(), and by the thread of a
+ *         GroupCommit once its oldest event waited "flushIntervalMillis" milliseconds, even if no other
+ *         event is appended.
+ */
+public class ConnectionEventLog implements Closeable {
+    public static final int MAGIC = 0x48434556; //"HCEV"
+    public static final int VERSION = 2;
+    public static final int HEADER_SIZE = 8;
+
+    private static final int FIRST_VERSION = 1; //Records holding the id of the host in its store
+
+    private final FileChannel channel;
+    private final ByteBuffer pending;
+    private final GroupCommit flushes;
+
+    /* CONSTRUCTOR
+     * Open (or create) the log file and position it after its last complete record (step 1 above)
+     */
+    public ConnectionEventLog(File file, int batchEvents, long flushIntervalMillis) throws IOException {
+        this.channel = open(file);
+        this.pending = ByteBuffer.allocate(Math.max(batchEvents, 1) * ConnectionEvent.SIZE);
+        this.flushes = flushIntervalMillis > 0 ? new GroupCommit("connlog-flush", 0, flushIntervalMillis, this::flush) : null;
+    }
+
+    //Default settings: batches of 64 events, written at least every second
+    public ConnectionEventLog(File file) throws IOException {
+        this(file, 64, 1000);
+    }
+
+    /* FUNCTION: append(ConnectionEvent event)
+     * RETURNS: void
+     * PARAMETERS:
+     *      - ConnectionEvent event: the event to record
+     *
+     * AIM: Encode the event in the pending buffer and write the buffer if needed (step 2 above)
+     */
+    public synchronized void append(ConnectionEvent event) throws IOException {
+        boolean first = pending.position() == 0;
+        pending.putLong(event.getEpochMillis())
+                .putLong(event.getAddressHash())
+                .put(event.getOutcome().getCode())
+                .putLong(event.getPackets());
+        if (!pending.hasRemaining() || flushes == null) {
+            flush();
+        } else if (first) {
+            flushes.submit(); //Starts the wait of the oldest event of the buffer
+        }
+    }
+
+    /* FUNCTION: flush()
+     * RETURNS: void
+     *
+     * AIM: Write the pending events in the file
+     */
+    public synchronized void flush() throws IOException {
+        pending.flip();
+        while (pending.hasRemaining()) {
+            channel.write(pending);
+        }
+        pending.clear();
+    }
+
+    /* FUNCTION: close()
+     * RETURNS: void
+     *
+     * AIM: Stop the flush thread (without holding the lock it may be waiting for), write the pending
+     *      events and close the file. A failed timed flush is rethrown.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (flushes != null) {
+                flushes.close();
+            }
+        } finally {
+            synchronized (this) {
+                try {
+                    flush();
+                } finally {
+                    channel.close();
+                }
+            }
+        }
+    }
+
+    //region Utilities
+    private static FileChannel open(File file) throws IOException {
+        FileChannel channel = new RandomAccessFile(file, "rw").getChannel();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        if (channel.size() < HEADER_SIZE) {
+            header.putInt(MAGIC).putInt(VERSION).flip();
+            channel.truncate(0);
+            channel.write(header, 0);
+        } else {
+            channel.read(header, 0);
+            if (header.getInt(0) == MAGIC && header.getInt(4) == FIRST_VERSION) {
+                channel.close();
+                File firstVersion = new File(file.getPath() + ".v1");
+                if ((firstVersion.exists() && !firstVersion.delete()) || !file.renameTo(firstVersion)) {
+                    throw new IOException("Cannot rename " + file + " to " + firstVersion);
+                }
+                return open(file);
+            }
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                channel.close();
+                throw new IOException("Unknown connection log format: " + file);
+            }
+            long records = (channel.size() - HEADER_SIZE) / ConnectionEvent.SIZE;
+            channel.truncate(HEADER_SIZE + records * ConnectionEvent.SIZE);
+        }
+        channel.position(channel.size());
+        return channel;
+    }
+    //endregion
+}
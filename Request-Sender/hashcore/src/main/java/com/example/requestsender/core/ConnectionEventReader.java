@@ -0,0 +1,116 @@
+package com.example.requestsender.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.EnumSet;
+import java.util.Set;
+
+/* CLASS: ConnectionEventReader implements Closeable
+ * ATTRIBUTES:
+ *      - FileChannel channel: the binary connection log (see ConnectionEventLog for the format)
+ *      - ByteBuffer chunk: reusable buffer holding a whole number of records
+ *
+ * AIM: Stream the events of a connection log, whatever its size, without loading it in memory.
+ *
+ * PROCESS:
+ *      1. Check the header of the file
+ *      2. Read the file in chunks of whole records (64 KB by default)
+ *      3. Decode the fields of each record in place and check them against the filter, so that only the
+ *         events that match are turned into ConnectionEvent instances and given to the visitor
+ */
+public class ConnectionEventReader implements Closeable {
+    private static final int CHUNK_RECORDS = 65536 / ConnectionEvent.SIZE;
+
+    private final File file;
+    private final FileChannel channel;
+    private final ByteBuffer chunk = ByteBuffer.allocateDirect(CHUNK_RECORDS * ConnectionEvent.SIZE);
+
+    /* INTERFACE: Visitor
+     * AIM: Receives the events that match the filter. Returning false stops the scan.
+     */
+    public interface Visitor {
+        boolean visit(ConnectionEvent event);
+    }
+
+    /* CLASS: Filter
+     * AIM: Criteria of a query. Every criterion is optional: an empty filter matches every event.
+     */
+    public static final class Filter {
+        private boolean anyHost = true;
+        private long addressHash = 0;
+        private Set<ConnectionOutcome> outcomes = EnumSet.allOf(ConnectionOutcome.class);
+        private long fromMillis = Long.MIN_VALUE;
+        private long toMillis = Long.MAX_VALUE;
+
+        public Filter host(String address) { this.anyHost = false; this.addressHash = HostRegistry.addressHash(address); return this; } //Only the events of this host
+        public Filter outcomes(Set<ConnectionOutcome> values) { this.outcomes = EnumSet.copyOf(values); return this; } //Only these outcomes
+        public Filter from(long epochMillis) { this.fromMillis = epochMillis; return this; } //Events at or after this time
+        public Filter to(long epochMillis) { this.toMillis = epochMillis; return this; } //Events strictly before this time
+
+        boolean matches(long epochMillis, long hash, ConnectionOutcome outcome) {
+            return (anyHost || addressHash == hash) && epochMillis >= fromMillis && epochMillis < toMillis
+                    && outcomes.contains(outcome);
+        }
+    }
+
+    public ConnectionEventReader(File file) throws IOException {
+        this.file = file;
+        this.channel = new RandomAccessFile(file, "r").getChannel();
+    }
+
+    /* FUNCTION: scan(Filter filter, Visitor visitor)
+     * RETURNS: long (number of events given to the visitor)
+     * PARAMETERS:
+     *      - Filter filter: criteria of the events to return
+     *      - Visitor visitor: receives the matching events, in the order of the file
+     *
+     * AIM: Read the whole log once and return the events that match the filter (steps 1 to 3 above)
+     */
+    public long scan(Filter filter, Visitor visitor) throws IOException {
+        //STEP 1
+        ByteBuffer header = ByteBuffer.allocate(ConnectionEventLog.HEADER_SIZE);
+        channel.read(header, 0);
+        if (header.position() < ConnectionEventLog.HEADER_SIZE
+                || header.getInt(0) != ConnectionEventLog.MAGIC || header.getInt(4) != ConnectionEventLog.VERSION) {
+            throw new IOException("Unknown connection log format: " + file);
+        }
+        //END OF STEP 1
+        long matched = 0;
+        long position = ConnectionEventLog.HEADER_SIZE;
+        while (true) {
+            //STEP 2
+            chunk.clear();
+            int read = channel.read(chunk, position);
+            if (read <= 0) {
+                return matched;
+            }
+            int records = chunk.position() / ConnectionEvent.SIZE;
+            position += (long) records * ConnectionEvent.SIZE;
+            if (records == 0) {
+                return matched; //Incomplete last record, still being written
+            }
+            //END OF STEP 2
+            for (int i = 0; i < records; i++) { //STEP 3
+                int base = i * ConnectionEvent.SIZE;
+                long epochMillis = chunk.getLong(base);
+                long addressHash = chunk.getLong(base + 8);
+                ConnectionOutcome outcome = ConnectionOutcome.fromCode(chunk.get(base + 16));
+                if (filter.matches(epochMillis, addressHash, outcome)) {
+                    matched++;
+                    if (!visitor.visit(new ConnectionEvent(epochMillis, addressHash, outcome, chunk.getLong(base + 17)))) {
+                        return matched;
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.requestsender.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/* CLASS: ConnectionLogQuery
+ * AIM: Command line tool filtering a binary connection log (e.g. a "connlog.bin" pulled from a device).
+ *
+ * USAGE: ConnectionLogQuery <connlog.bin> [--host ADDRESS] [--outcome NAME[,NAME...]]
+ *                           [--from ISO-INSTANT] [--to ISO-INSTANT] [--table DIRECTORY] [--count]
+ *      - --host: only the events of this host address (e.g. https://192.168.0.17:5000/hostA)
+ *      - --outcome: only these outcomes (VALIDATED, REJECTED, WRONG_CHECKSUM, NETWORK_ERROR)
+ *      - --from / --to: time range, e.g. 2023-03-23T00:00:00Z (the end is excluded)
+ *      - --table: directory of the "hosts.table" used to print the address of the hosts instead of their
+ *        address hashes (the hosts purged since the events are printed with their hash)
+ *      - --count: only print the number of matching events
+ */
+public final class ConnectionLogQuery {
+    private ConnectionLogQuery() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: ConnectionLogQuery <connlog.bin> [--host ADDRESS] [--outcome NAME[,NAME...]]"
+                    + " [--from ISO-INSTANT] [--to ISO-INSTANT] [--table DIRECTORY] [--count]");
+            System.exit(2);
+        }
+        ConnectionEventReader.Filter filter = new ConnectionEventReader.Filter();
+        File table = null;
+        boolean countOnly = false;
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--host":
+                    filter.host(args[++i]);
+                    break;
+                case "--outcome":
+                    Set<ConnectionOutcome> outcomes = EnumSet.noneOf(ConnectionOutcome.class);
+                    for (String name : args[++i].split(",")) {
+                        outcomes.add(ConnectionOutcome.valueOf(name.trim().toUpperCase(Locale.ROOT)));
+                    }
+                    filter.outcomes(outcomes);
+                    break;
+                case "--from":
+                    filter.from(Instant.parse(args[++i]).toEpochMilli());
+                    break;
+                case "--to":
+                    filter.to(Instant.parse(args[++i]).toEpochMilli());
+                    break;
+                case "--table":
+                    table = new File(args[++i]);
+                    break;
+                case "--count":
+                    countOnly = true;
+                    break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+            }
+        }
+
+        Map<Long, String> addresses = new HashMap<>();
+        if (table != null) {
+            try (MappedHostTable hosts = new MappedHostTable(table)) {
+                for (Host host : hosts.load()) {
+                    addresses.put(HostRegistry.addressHash(host.getRemoteAddress()), host.getRemoteAddress());
+                }
+            }
+        }
+        long matched = query(new File(args[0]), filter, countOnly ? null : System.out, addresses);
+        if (countOnly) {
+            System.out.println(matched);
+        }
+    }
+
+    /* FUNCTION: query(File log, Filter filter, PrintStream out, Map<Long, String> addresses)
+     * RETURNS: long (number of matching events)
+     * PARAMETERS:
+     *      - File log: the binary connection log
+     *      - Filter filter: criteria of the events
+     *      - PrintStream out: where the matching events are printed (null: only count them)
+     *      - Map<Long, String> addresses: address of each address hash, when it is known
+     *
+     * AIM: Print one line per matching event, in the order of the log
+     */
+    static long query(File log, ConnectionEventReader.Filter filter, PrintStream out,
+                      Map<Long, String> addresses) throws IOException {
+        try (ConnectionEventReader reader = new ConnectionEventReader(log)) {
+            return reader.scan(filter, event -> {
+                if (out != null) {
+                    String address = addresses.get(event.getAddressHash());
+                    out.println(Instant.ofEpochMilli(event.getEpochMillis()) + " - "
+                            + (address == null ? "host " + Long.toHexString(event.getAddressHash()) : address) + " - "
+                            + event.getOutcome() + " - " + event.getPackets() + " packets");
+                }
+                return true;
+            });
+        }
+    }
+}
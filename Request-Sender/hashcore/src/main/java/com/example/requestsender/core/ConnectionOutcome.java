@@ -0,0 +1,33 @@
+package com.example.requestsender.core;
+
+/* ENUM: ConnectionOutcome
+ * AIM: Result of the security assessment of a response, as stored in the binary connection log.
+ *      The code of each value is written in the files: existing codes must never change.
+ *          - VALIDATED: correct checksum, the server granted the access ("VALIDATED US")
+ *          - REJECTED: correct checksum, but the server denied the access ("REJECTED US")
+ *          - WRONG_CHECKSUM: the server did not give the correct checksum ("ISSUED A WRONG CHECKSUM")
+ *          - NETWORK_ERROR: no response could be assessed
+ */
+public enum ConnectionOutcome {
+    VALIDATED(1),
+    REJECTED(2),
+    WRONG_CHECKSUM(3),
+    NETWORK_ERROR(4);
+
+    private final byte code;
+
+    ConnectionOutcome(int code) {
+        this.code = (byte) code;
+    }
+
+    public byte getCode() { return this.code; } //Value stored in the files
+
+    public static ConnectionOutcome fromCode(byte code) {
+        for (ConnectionOutcome outcome : values()) {
+            if (outcome.code == code) {
+                return outcome;
+            }
+        }
+        throw new IllegalArgumentException("Unknown connection outcome: " + code);
+    }
+}
@@ -0,0 +1,241 @@
+package com.example.requestsender.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/* CLASS: GroupCommit implements Closeable
+ * ATTRIBUTES:
+ *      - SyncAction action: makes every write done before its call durable (e.g. FileChannel.force())
+ *      - int maxPending: number of waiting writes that triggers a sync at once (0: no limit)
+ *      - long budgetMillis: maximum time a write waits before being synced (0: no limit)
+ *
+ * AIM: Make the writes of a store durable without paying one disk sync per write: the writes done by
+ *      any number of threads while a sync is waiting or running are covered by the next single sync.
+ *
+ * PROCESS:
+ *      1. The store writes its record (in the page cache), then calls submit(), which returns the ticket
+ *         of the write. The first write that no sync covers yet starts the latency budget.
+ *      2. A background thread waits until the budget of that first write is spent, or until
+ *         "maxPending" writes are waiting, then calls the SyncAction once for all of them.
+ *      3. A sync covers every ticket submitted before it started. Threads that need to know that their
+ *         write is on the disk call await(ticket) (or awaitAll()), and wait for that sync.
+ *      4. close() stops the thread and syncs the writes still waiting.
+ *      A failed sync is rethrown by the await() of the tickets it covered, and by close(), until a later
+ *      sync succeeds: that sync covers the same writes, which become durable like the new ones.
+ */
+public class GroupCommit implements Closeable {
+    /* INTERFACE: SyncAction
+     * AIM: Make every write done before the call durable
+     */
+    public interface SyncAction {
+        void sync() throws IOException;
+    }
+
+    private final SyncAction action;
+    private final int maxPending;
+    private final long budgetNanos;
+    private final Object lock = new Object();
+    private final Thread syncer;
+    private long submitted = 0; //Last ticket given
+    private long claimed = 0; //Last ticket covered by a started sync
+    private long durable = 0; //Last ticket covered by a finished sync
+    private long pendingSince = 0; //Time of the first write not covered by a started sync
+    private long syncCount = 0;
+    private int waiters = 0; //Threads in await()
+    private long failedUpTo = 0; //Last ticket covered by a failed sync
+    private IOException failure = null; //Error of that sync
+    private boolean closed = false;
+
+    /* CONSTRUCTOR
+     * Start the sync thread. At least one of "maxPending" and "budgetMillis" must be positive.
+     */
+    public GroupCommit(String name, int maxPending, long budgetMillis, SyncAction action) {
+        if (maxPending <= 0 && budgetMillis <= 0) {
+            throw new IllegalArgumentException("The writes would never be synced");
+        }
+        this.action = action;
+        this.maxPending = maxPending;
+        this.budgetNanos = TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+        this.syncer = new Thread(this::syncLoop, name);
+        this.syncer.setDaemon(true);
+        this.syncer.start();
+    }
+
+    //Number of syncs done (each one covering any number of writes)
+    public long getSyncCount() {
+        synchronized (lock) {
+            return syncCount;
+        }
+    }
+
+    //Number of writes not on the disk yet
+    public long getPendingCount() {
+        synchronized (lock) {
+            return submitted - durable;
+        }
+    }
+
+    /* FUNCTION: submit()
+     * RETURNS: long (ticket of the write, see await())
+     *
+     * AIM: Register a write that was just done (step 1 above)
+     */
+    public long submit() {
+        synchronized (lock) {
+            if (submitted == claimed) {
+                pendingSince = System.nanoTime();
+            }
+            submitted++;
+            if (submitted == claimed + 1 || (maxPending > 0 && submitted - claimed >= maxPending)) {
+                lock.notifyAll();
+            }
+            return submitted;
+        }
+    }
+
+    /* FUNCTION: await(long ticket)
+     * RETURNS: void
+     * PARAMETERS:
+     *      - long ticket: returned by submit()
+     *
+     * AIM: Wait until the write of the ticket is on the disk (step 3 above)
+     */
+    public void await(long ticket) throws IOException {
+        synchronized (lock) {
+            waiters++;
+            lock.notifyAll(); //Someone is waiting: the writes are synced without spending the whole budget
+            try {
+                while (durable < ticket) {
+                    if (ticket <= failedUpTo) {
+                        throw failure;
+                    }
+                    if (closed && claimed < ticket) {
+                        throw new IOException("The group commit is closed");
+                    }
+                    lock.wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a sync");
+            } finally {
+                waiters--;
+            }
+        }
+    }
+
+    //Wait until every write submitted before the call is on the disk
+    public void awaitAll() throws IOException {
+        long ticket;
+        synchronized (lock) {
+            ticket = submitted;
+        }
+        await(ticket);
+    }
+
+    /* FUNCTION: syncNow()
+     * RETURNS: void
+     *
+     * AIM: Sync every write submitted before the call on the calling thread, without waiting for the budget
+     */
+    public void syncNow() throws IOException {
+        long target;
+        synchronized (lock) {
+            target = submitted;
+            claimed = Math.max(claimed, target);
+        }
+        IOException error = sync(target);
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /* FUNCTION: close()
+     * RETURNS: void
+     *
+     * AIM: Stop the sync thread, then sync the waiting writes (step 4 above)
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            syncer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (getPendingCount() > 0) {
+            syncNow();
+        }
+        synchronized (lock) {
+            if (durable < failedUpTo) {
+                throw failure;
+            }
+        }
+    }
+
+    //region Sync thread
+    //Body of the sync thread (step 2 above)
+    private void syncLoop() {
+        try {
+            while (true) {
+                long target;
+                synchronized (lock) {
+                    while (!closed && submitted == claimed) {
+                        lock.wait();
+                    }
+                    if (closed) {
+                        return;
+                    }
+                    while (!closed && !due()) {
+                        if (budgetNanos > 0) {
+                            TimeUnit.NANOSECONDS.timedWait(lock, pendingSince + budgetNanos - System.nanoTime());
+                        } else {
+                            lock.wait();
+                        }
+                    }
+                    if (closed) {
+                        return;
+                    }
+                    target = submitted;
+                    claimed = target;
+                }
+                sync(target);
+            }
+        } catch (InterruptedException e) {
+            //Stopped: close() syncs the remaining writes
+        }
+    }
+
+    //Called with the lock held: true if the waiting writes must be synced now
+    private boolean due() {
+        return (maxPending > 0 && submitted - claimed >= maxPending)
+                || (budgetNanos > 0 && System.nanoTime() - pendingSince >= budgetNanos)
+                || waiters > 0;
+    }
+
+    //Sync the writes up to the target ticket, and return the error of the sync (null if it succeeded)
+    private IOException sync(long target) {
+        IOException error = null;
+        try {
+            action.sync();
+        } catch (IOException e) {
+            error = e;
+        }
+        synchronized (lock) {
+            if (error != null) {
+                failedUpTo = Math.max(failedUpTo, target);
+                failure = error;
+            } else {
+                durable = Math.max(durable, target);
+                syncCount++;
+            }
+            lock.notifyAll();
+        }
+        return error;
+    }
+    //endregion
+}
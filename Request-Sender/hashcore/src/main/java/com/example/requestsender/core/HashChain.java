@@ -0,0 +1,140 @@
+package com.example.requestsender.core;
+
+import java.security.MessageDigest;
+
+/* CLASS: HashChain
+ * ATTRIBUTES:
+ *      - byte[] timeDigest: SHA256(time) in hexadecimal, the first part of every hashed value
+ *      - ChecksumMode mode: algorithm of the checksums
+ *      - MessageDigest prefix: LEGACY mode, SHA-256 state after hashing timeDigest (null if the platform
+ *        cannot copy a digest state)
+ *      - MessageDigest inner, outer: HMAC_SHA256 mode, SHA-256 states after hashing the inner and outer
+ *        pads of the key of the host
+ *      - ChecksumEncoding encoding: text encoding of the checksums (and size of their tag)
+ *      - Entry[] memo: the last checksums computed for the host, indexed by packet number
+ *
+ * AIM: Per-host cache of the hash chain, so that computing the checksum of a packet only costs the
+ *      part that depends on the packet number, and computing it again costs nothing.
+ *
+ * PROCESS:
+ *      1. timeDigest is 64 bytes long, exactly one SHA-256 block: the state reached after hashing it
+ *         is the same for every packet. It is computed once (prefix) and copied for each checksum, so
+ *         only the block holding the decimal packet number is hashed (one compression instead of two)
+ *      2. The decimal packet number is written in the reusable buffer of the ChecksumEngine thread
+ *      3. The checksum is kept in the slot "packet % MEMO_SLOTS" of the memo, so that the few latest
+ *         packet numbers (the request, its response, the resynchronization proof...) are computed once,
+ *         however many times they are generated or compared, both as the tag (the bytes of the digest
+ *         kept by the encoding) and as its text
+ *      4. A received checksum is decoded into a tag (ChecksumEncoding.decode()) and compared with the
+ *         expected tag in constant time, whatever the encoding
+ *      The checksums are bit-for-bit the ones of ChecksumEngine.checksum(timeDigest, packet).
+ *      In HMAC_SHA256 mode, the key is derived once when the chain is created, and the two pad states
+ *      play the part of the prefix: only the packet number and the inner hash are hashed per packet.
+ *
+ * CONCURRENCY: The prefix state is only read (copied). The memo entries are immutable and published
+ *      through final fields, so a thread that reads a slot while another one replaces it gets either
+ *      entry, both valid, and at worst computes the checksum again.
+ *
+ * NB: A chain holds about 0.5 KB (the digest state and the memo), only created for the hosts that
+ *      actually compute checksums.
+ */
+final class HashChain {
+    static final int MEMO_SLOTS = 4;
+
+    private final byte[] timeDigest;
+    private final ChecksumMode mode;
+    private final ChecksumEncoding encoding;
+    private final MessageDigest prefix;
+    private final MessageDigest inner;
+    private final MessageDigest outer;
+    private final Entry[] memo = new Entry[MEMO_SLOTS];
+
+    /* CLASS: Entry
+     * AIM: A memoized checksum, as a tag and as text, and its packet number (never modified once built)
+     */
+    private static final class Entry {
+        private final long packet;
+        private final byte[] tag;
+        private final String checksum;
+
+        private Entry(long packet, byte[] tag, String checksum) {
+            this.packet = packet;
+            this.tag = tag;
+            this.checksum = checksum;
+        }
+    }
+
+    HashChain(byte[] timeDigest, ChecksumMode mode, ChecksumEncoding encoding) {
+        this.timeDigest = timeDigest;
+        this.mode = mode;
+        this.encoding = encoding;
+        if (mode == ChecksumMode.HMAC_SHA256) {
+            MessageDigest[] pads = ChecksumEngine.hmacPads(ChecksumEngine.hmacKey(timeDigest));
+            this.prefix = null;
+            this.inner = pads[0];
+            this.outer = pads[1];
+        } else {
+            this.prefix = ChecksumEngine.prefixDigest(timeDigest); //STEP 1
+            this.inner = null;
+            this.outer = null;
+        }
+    }
+
+    HashChain(byte[] timeDigest, ChecksumMode mode) {
+        this(timeDigest, mode, ChecksumEncoding.HEX);
+    }
+
+    HashChain(byte[] timeDigest) {
+        this(timeDigest, ChecksumMode.LEGACY);
+    }
+
+    ChecksumMode getMode() { return this.mode; } //Algorithm of the checksums
+    ChecksumEncoding getEncoding() { return this.encoding; } //Text encoding of the checksums
+
+    /* FUNCTION: checksum(long packet)
+     * RETURNS: String
+     *
+     * AIM: Return the checksum of the packet from the memo, computing it (steps 1 and 2 above) and
+     * keeping it (step 3 above) if it is not there
+     */
+    String checksum(long packet) {
+        return entry(packet).checksum;
+    }
+
+    //Compute the checksum of a packet without keeping it (e.g. the look-ahead window of a resynchronization)
+    String compute(long packet) {
+        return encoding.encode(tag(packet));
+    }
+
+    /* FUNCTION: matches(long packet, String candidate)
+     * RETURNS: boolean
+     *
+     * AIM: Compare a received checksum with the checksum of the packet, in constant time (step 4 above)
+     */
+    boolean matches(long packet, String candidate) {
+        byte[] received = encoding.decode(candidate);
+        if (received == null) {
+            return false; //Nothing to compute for values that cannot be checksums
+        }
+        return ChecksumEngine.sameBytes(entry(packet).tag, received);
+    }
+
+    private Entry entry(long packet) {
+        int slot = (int) (packet & (MEMO_SLOTS - 1));
+        Entry entry = memo[slot];
+        if (entry != null && entry.packet == packet) {
+            return entry;
+        }
+        byte[] tag = tag(packet);
+        entry = new Entry(packet, tag, encoding.encode(tag));
+        memo[slot] = entry;
+        return entry;
+    }
+
+    private byte[] tag(long packet) {
+        byte[] digest = mode == ChecksumMode.HMAC_SHA256
+                ? ChecksumEngine.hmacBytes(inner, outer, packet)
+                : ChecksumEngine.checksumBytes(prefix, timeDigest, packet);
+        return encoding.tag(digest);
+    }
+}
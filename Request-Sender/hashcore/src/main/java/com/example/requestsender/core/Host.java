@@ -0,0 +1,587 @@
+package com.example.requestsender.core;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/* CLASS: Host
+ * ATTRIBUTES:
+ *      - String address: The complete URL of the host. In a real life situation, the address would
+ *        only be the IP address or domain name, the use of the full URL is limited to the specific
+ *        experimental context of this implementation
+ *      - String time: Date and time of the first request to be sent to this host, in a string format
+ *      - AtomicLong nbPacket: Number of requests that were exchanged (or reserved to be exchanged)
+ *        between the client application and the server.
+ *      - AtomicLong nbVerified: Number of packets exchanged up to the last response that was verified
+ *      - int id: Identifier given by the HostStore the host is saved in (-1 while it is not stored)
+ *      - ChecksumWindow window: exchanges reserved in advance when the host is in pipelined mode (null
+ *        when the requests are sent one at a time)
+ *      - byte[] timeDigest: SHA256(time) in hexadecimal, computed once since "time" never changes, and
+ *        only when the host is first used: creating a Host (e.g. for each stored host at startup) does
+ *        not hash anything
+ *      - ChecksumMode mode: algorithm of the checksums exchanged with the host (LEGACY by default)
+ *      - ChecksumEncoding encoding: text encoding of the checksums in the headers (HEX by default)
+ *      - HashChain chain: cache of the hash chain of the host (see HashChain), created with the first
+ *        checksum computed
+ *      - LookAhead lookAhead: checksums of the packets following the current position, precomputed for
+ *        the chain resynchronization (null until a resynchronization is attempted)
+ *
+ * AIM: Each instance represents a different host with which the application is able to communicate
+ *      with and assess the legitimacy by comparing the received security hash with another one that
+ *      is generated each time locally.
+ *
+ * PROCESS:
+ *      The main goal of this class is to generate a "Host" object that will be used to represent
+ *      a distant server with which the client application is communicating.
+ *      The requests are counted as follows in the "nbPacket" value:
+ *      nbPacket is always equal to the number of requests that were declared legitimate PREVIOUSLY:
+ *          1. The first client request is calculated using nbPacket = 0
+ *          2. The server calculates the hash with nbPacket = 0 and the time put in the header
+ *          3. The server replies with a new security hash generated using nbPacket = 1 (one request was acknowledged as legitimate)
+ *          4. The client application calculates a security hash using nbPacket = 1 (only one request was acknowledged as legitimate)
+ *          5. The client application calculates a security hash using nbPacket = 2 (two requests were declared legitimate)
+ *          6. The server receives a request and calculates a security hash using nbPacket = 2
+ *          ...
+ *
+ * CONCURRENCY:
+ *      Requests are built on Volley's network threads while responses are handled on the main thread,
+ *      so the counters are atomic and only change through compare-and-set transitions:
+ *          - "sent request N": beginExchange() moves nbPacket from N to N + 2 and returns N. The request
+ *            uses N, its response must use N + 1, and the next request will use N + 2, so several
+ *            requests can be in flight for the same host without sharing a number.
+ *          - "verified response N + 1": verifyResponse(N, checksum) raises nbVerified to N + 2 if the
+ *            checksum is correct (it never goes backwards if responses are handled out of order).
+ *
+ * RESYNCHRONIZATION:
+ *      When a request or a response is lost, the client and the server stop agreeing on N and, without
+ *      resynchronization, every following request is denied until the hosts are purged. Both sides
+ *      can instead find their common position in a bounded window of W exchanges, without any extra
+ *      round trip, and the counters still never go backwards (so nothing can be replayed):
+ *          - client ahead (its requests were lost before reaching the server): the server accepts a
+ *            request using one of the W request numbers following N, see acceptRequests(checksums, W)
+ *          - server ahead (the response was lost, or the client restarted from its last saved state):
+ *            the server denies the request and gives the checksum of its last response, N - 1, in the
+ *            X-Resync header (resyncProof()). This checksum was already sent in clear and cannot be
+ *            used as a request checksum. The client looks for it in the W responses following its own
+ *            position and, if it is there, moves to N (see resynchronize())
+ *      The checksums of the window are computed once per position and kept, so that repeated wrong
+ *      requests (e.g. a flood of forged checksums) do not cost W hashes each.
+ */
+public class Host {
+    public static final String BATCH_SEPARATOR = ","; //Separates the checksums of a batch in X-CheckSum
+    public static final String RESYNC_HEADER = "X-Resync"; //Checksum of the last response of the server, on denials
+    public static final int DEFAULT_RESYNC_WINDOW = 16; //Exchanges searched to resynchronize the chains
+
+    private volatile String address;
+    private final String time;
+    private final AtomicLong nbPacket;
+    private final AtomicLong nbVerified;
+    private volatile byte[] timeDigest;
+    private volatile int id = -1;
+    private volatile ChecksumWindow window;
+    private volatile LookAhead lookAhead;
+    private volatile ChecksumMode mode = ChecksumMode.LEGACY;
+    private volatile ChecksumEncoding encoding = ChecksumEncoding.HEX;
+    private volatile HashChain chain;
+
+    /* CONSTRUCTOR 1
+     * This constructor only takes an address (in string format) and is used when the application
+     * sends a request to a new host: the class instance will be initialized with the current time
+     * as "time" and 0 as "nbPacket".
+     */
+    public Host(String remote_addr){
+        this.address = remote_addr;
+        this.time = java.text.DateFormat.getDateTimeInstance().format(new Date());
+        this.nbPacket = new AtomicLong(0);
+        this.nbVerified = new AtomicLong(0);
+    }
+
+    /* CONSTRUCTOR 2
+     * This constructor takes the 3 attributes of a Host class instance as parameters and is used
+     * when getting the persistent values stored in the "hosts.txt" file. This allows to create a
+     * fully functional Host instance from the information stored in the database.
+     */
+    public Host(String remote_addr, String time, long nbPacket){
+        this(remote_addr, time, nbPacket, null);
+    }
+
+    /* CONSTRUCTOR 3
+     * Same as the constructor 2, for the stores that already saved SHA256(time) (in hexadecimal), so
+     * that it does not have to be computed again (null: computed when the host is first used).
+     */
+    Host(String remote_addr, String time, long nbPacket, byte[] timeDigest){
+        this.address = remote_addr;
+        this.time = time;
+        this.nbPacket = new AtomicLong(nbPacket);
+        this.nbVerified = new AtomicLong(nbPacket);
+        this.timeDigest = timeDigest;
+    }
+
+    public String getRemoteAddress() { return this.address; } //Address property
+    public String getTime() {return this.time;} //Time property
+    public long getNbPacket() {return this.nbPacket.get();} //NbPacket property
+    public long getNbVerified() {return this.nbVerified.get();} //NbVerified property
+    public void setRemoteAddress(String address) {this.address = address;} //Used to modify the address after creation
+    //Hexadecimal SHA256(time), must not be modified. Two threads may both compute it the first time, which
+    //is harmless: they get the same value
+    byte[] getTimeDigest() {
+        byte[] digest = this.timeDigest;
+        if (digest == null) {
+            digest = ChecksumEngine.timeDigest(this.time);
+            this.timeDigest = digest;
+        }
+        return digest;
+    }
+    public int getId() {return this.id;} //Id property (set by the HostStore)
+    void setId(int id) {this.id = id;} //Only the stores of this package give ids
+    public ChecksumWindow getWindow() {return this.window;} //Pipelined mode window, null if disabled
+    public ChecksumMode getChecksumMode() {return this.mode;} //Checksum algorithm property
+    public ChecksumEncoding getChecksumEncoding() {return this.encoding;} //Checksum encoding property
+
+    /* FUNCTION: setChecksumMode(ChecksumMode mode)
+     * RETURNS: void
+     * PARAMETERS:
+     *      - ChecksumMode mode: algorithm of the checksums, agreed with the host (LEGACY for the servers
+     *        that do not know the X-Checksum-Mode header)
+     *
+     * AIM: Choose the algorithm of the checksums when the host is registered, before its first exchange:
+     * the cached checksums of the previous algorithm are dropped, and the pipelined mode window (if any)
+     * is created again
+     */
+    public void setChecksumMode(ChecksumMode mode) {
+        this.mode = mode;
+        resetChain();
+    }
+
+    //Same as setChecksumMode(), for the encoding of the checksums (HEX for the servers that do not know
+    //the X-Checksum-Encoding header)
+    public void setChecksumEncoding(ChecksumEncoding encoding) {
+        this.encoding = encoding;
+        resetChain();
+    }
+
+    /* FUNCTION: enablePipelining(int windowSize)
+     * RETURNS: void
+     * PARAMETERS:
+     *      - int windowSize: number of exchanges reserved (and their checksums precomputed) at once,
+     *        0 to go back to one request at a time
+     *
+     * AIM: Allow several requests to this host to be in flight at the same time (see ChecksumWindow)
+     */
+    public void enablePipelining(int windowSize) {
+        this.window = windowSize > 0 ? new ChecksumWindow(this, windowSize) : null;
+    }
+
+    /* FUNCTION: generateHash()
+     * RETURNS: String
+     * PARAMETERS: none
+     *
+     * AIM: Generate the security hash for a specific request to or from an instance of the Host class
+     *
+     * PROCESS: Ask the hash chain of the host - which starts from the cached SHA-256 of the time and
+     * keeps the latest checksums - for the unique hash corresponding to this value:
+     *         SHA256( SHA256([Time of the first request]) + [string value of the number of requests exchanged] )
+     */
+    public String generateHash() {
+        return generateHash(nbPacket.get());
+    }
+
+    //Same as generateHash(), for a specific packet number (e.g. the one reserved by beginExchange())
+    public String generateHash(long packet) {
+        return chain().checksum(packet);
+    }
+
+    /* FUNCTION: checksumMatches(String checksum)
+     * RETURNS: boolean
+     * PARAMETERS:
+     *      - String checksum: the checksum received from the host (may be null if the header is missing)
+     *
+     * AIM: Compare a received checksum with the one generateHash() would return, in constant time (the
+     * expected checksum is kept by the hash chain, so that the response to it can reuse it)
+     */
+    public boolean checksumMatches(String checksum) {
+        return checksumMatches(nbPacket.get(), checksum);
+    }
+
+    public boolean checksumMatches(long packet, String checksum) {
+        return chain().matches(packet, checksum);
+    }
+
+    /* FUNCTION: beginExchange()
+     * RETURNS: long (the packet number to be used by the request)
+     * PARAMETERS: none
+     *
+     * AIM: Atomically reserve the packet number of a request (N) and of its response (N + 1).
+     */
+    public long beginExchange() {
+        return beginExchanges(1);
+    }
+
+    /* FUNCTION: beginExchanges(int count)
+     * RETURNS: long (the packet number of the first request)
+     * PARAMETERS:
+     *      - int count: number of consecutive exchanges to reserve
+     *
+     * AIM: Atomically reserve the packet numbers of "count" requests and of their responses.
+     *
+     * PROCESS: Compare-and-set nbPacket from N to N + 2 * count, retrying if another thread reserved an
+     * exchange in the meantime, so that two concurrent requests never get the same number.
+     */
+    public long beginExchanges(int count) {
+        while (true) {
+            long packet = nbPacket.get();
+            if (nbPacket.compareAndSet(packet, packet + 2L * count)) {
+                return packet;
+            }
+        }
+    }
+
+    /* FUNCTION: verifyResponse(long requestPacket, String checksum)
+     * RETURNS: boolean
+     * PARAMETERS:
+     *      - long requestPacket: packet number returned by beginExchange() for the request
+     *      - String checksum: the checksum of the response (may be null)
+     *
+     * AIM: Check the checksum of the response to a request (it must be generated with
+     * requestPacket + 1) and, if it is correct, record that the exchange was verified.
+     *
+     * PROCESS:
+     *      1. In pipelined mode, look the checksum up in the responses awaited by the window, which
+     *         accepts the responses in any order
+     *      2. Otherwise, compare the checksum with the expected one
+     *      3. If it matches, record the verified exchange
+     */
+    public boolean verifyResponse(long requestPacket, String checksum) {
+        ChecksumWindow pipeline = this.window;
+        long verifiedRequest = requestPacket;
+        if (pipeline != null) { //STEP 1
+            verifiedRequest = pipeline.matchResponse(checksum);
+            if (verifiedRequest < 0) {
+                return false;
+            }
+        }
+        else if (!checksumMatches(requestPacket + 1, checksum)) { //STEP 2
+            return false;
+        }
+        markVerified(verifiedRequest); //STEP 3
+        return true;
+    }
+
+    /* FUNCTION: acceptRequest(String checksum)
+     * RETURNS: long (packet number the response must use, -1 if the request is not legitimate)
+     * PARAMETERS:
+     *      - String checksum: the checksum of the request received by the server (may be null)
+     *
+     * AIM: Server side of the exchange: check that a request uses the packet number the server expects
+     * (N) and, if it does, consume the request and its response in one transition.
+     *
+     * PROCESS:
+     *      1. Compare the checksum with the one of the expected packet number N
+     *      2. Compare-and-set nbPacket from N to N + 2, so that a request received twice at the same
+     *         time (e.g. a replay) is only accepted once. If another request moved the counter in the
+     *         meantime, check the checksum again against the new expected number.
+     *      3. Record the verified exchange and return N + 1, the packet number of the response
+     */
+    public long acceptRequest(String checksum) {
+        return acceptRequests(new String[]{checksum});
+    }
+
+    /* FUNCTION: acceptRequests(String[] checksums)
+     * RETURNS: long (packet number of the response to the first request, -1 if the batch is not legitimate)
+     * PARAMETERS:
+     *      - String[] checksums: the checksums of a batch of consecutive requests (N, N + 2, N + 4...)
+     *
+     * AIM: Same as acceptRequest() for a batch: the whole batch is accepted, or none of it, so that the
+     * counter always moves by a whole number of exchanges (N to N + 2 * count in one compare-and-set).
+     * The responses use N + 1, N + 3...
+     */
+    public long acceptRequests(String[] checksums) {
+        return acceptRequests(checksums, 0);
+    }
+
+    /* FUNCTION: acceptRequests(String[] checksums, int resyncWindow)
+     * RETURNS: long (packet number of the response to the first request, -1 if the batch is not legitimate)
+     * PARAMETERS:
+     *      - String[] checksums: the checksums of a batch of consecutive requests
+     *      - int resyncWindow: number of exchanges after the expected one that the batch may start at (0
+     *        to only accept the expected packet number)
+     *
+     * AIM: Same as acceptRequests(checksums), resynchronizing with a client whose chain is ahead because
+     * some of its requests never reached the server (see RESYNCHRONIZATION above)
+     *
+     * PROCESS:
+     *      1. Compare the first checksum with the one of the expected packet number N
+     *      2. If it does not match, look for it in the precomputed checksums of N + 2, ..., N + 2 * W: the
+     *         batch starts at the packet number found
+     *      3. Compare the other checksums with the following packet numbers
+     *      4. Compare-and-set nbPacket from N to the end of the batch (the skipped numbers can never be
+     *         used again), retrying from step 1 if another request moved it in the meantime
+     *      5. Record the verified exchanges and return the packet number of the first response
+     */
+    public long acceptRequests(String[] checksums, int resyncWindow) {
+        if (checksums.length == 0) {
+            return -1;
+        }
+        while (true) {
+            long expected = nbPacket.get();
+            long first = expected;
+            if (!checksumMatches(expected, checksums[0])) { //STEP 1
+                int skipped = resyncWindow <= 0 ? -1 : lookAhead(expected + 2, resyncWindow).indexOf(checksums[0]); //STEP 2
+                if (skipped < 0) {
+                    return -1;
+                }
+                first = expected + 2L * (skipped + 1);
+            }
+            for (int i = 1; i < checksums.length; i++) { //STEP 3
+                if (!checksumMatches(first + 2L * i, checksums[i])) {
+                    return -1;
+                }
+            }
+            if (nbPacket.compareAndSet(expected, first + 2L * checksums.length)) { //STEP 4
+                markVerified(first + 2L * (checksums.length - 1)); //STEP 5
+                return first + 1;
+            }
+        }
+    }
+
+    /* FUNCTION: resyncProof()
+     * RETURNS: String (null if no exchange was accepted yet)
+     *
+     * AIM: Server side: the value of the X-Resync header of a denial, the checksum of the last response
+     * (N - 1, where N is the packet number expected for the next request)
+     */
+    public String resyncProof() {
+        long expected = nbPacket.get();
+        return expected < 2 ? null : generateHash(expected - 1);
+    }
+
+    /* FUNCTION: resynchronize(String proof, int resyncWindow)
+     * RETURNS: long (the new packet number of the next request, -1 if the chains could not be resynchronized)
+     * PARAMETERS:
+     *      - String proof: the X-Resync header of a denial (may be null)
+     *      - int resyncWindow: number of exchanges after the current position that are searched
+     *
+     * AIM: Client side: move to the position of a server whose chain is ahead (see RESYNCHRONIZATION above)
+     *
+     * PROCESS:
+     *      1. Look for the proof in the precomputed checksums of the responses P + 1, ..., P + 2 * W - 1,
+     *         where P is the packet number of the next request. Finding it at N - 1 means the server
+     *         expects N.
+     *      2. Compare-and-set nbPacket from P to N, retrying if another request moved it in the meantime
+     *      3. Record that the exchanges up to N are verified (so that N is the position saved by the
+     *         stores) and forget the exchanges reserved by the pipelined mode before N
+     */
+    public long resynchronize(String proof, int resyncWindow) {
+        if (proof == null || resyncWindow <= 0) {
+            return -1;
+        }
+        while (true) {
+            long current = nbPacket.get();
+            int index = lookAhead(current + 1, resyncWindow).indexOf(proof); //STEP 1
+            if (index < 0) {
+                return -1;
+            }
+            long target = current + 2L * (index + 1);
+            if (nbPacket.compareAndSet(current, target)) { //STEP 2
+                markVerified(target - 2); //STEP 3
+                ChecksumWindow pipeline = this.window;
+                if (pipeline != null) {
+                    pipeline.discardReserved();
+                }
+                return target;
+            }
+        }
+    }
+
+    /* FUNCTION: verifyBatchResponse(long firstPacket, int count, String checksums)
+     * RETURNS: boolean
+     * PARAMETERS:
+     *      - long firstPacket: packet number returned by beginExchanges(count) for the batch
+     *      - int count: number of requests in the batch
+     *      - String checksums: the X-CheckSum header of the response, "count" checksums separated by
+     *        BATCH_SEPARATOR (may be null)
+     *
+     * AIM: Client side of a batch: check that the response carries the checksums of the responses to
+     * every request of the batch (firstPacket + 1, firstPacket + 3...) and, if it does, record that the
+     * whole batch was verified.
+     */
+    public boolean verifyBatchResponse(long firstPacket, int count, String checksums) {
+        if (checksums == null || count < 1) {
+            return false;
+        }
+        String[] received = checksums.split(BATCH_SEPARATOR, -1);
+        if (received.length != count) {
+            return false;
+        }
+        for (int i = 0; i < count; i++) {
+            if (!checksumMatches(firstPacket + 2L * i + 1, received[i])) {
+                return false;
+            }
+        }
+        markVerified(firstPacket + 2L * (count - 1));
+        return true;
+    }
+
+    /* FUNCTION: markVerified(long requestPacket)
+     * RETURNS: void
+     *
+     * AIM: Compare-and-set nbVerified to requestPacket + 2 unless a later response was already verified
+     */
+    private void markVerified(long requestPacket) {
+        long verified = requestPacket + 2;
+        while (true) {
+            long current = nbVerified.get();
+            if (current >= verified || nbVerified.compareAndSet(current, verified)) {
+                return;
+            }
+        }
+    }
+
+    /* FUNCTION: generateHeaders(long packet)
+     * RETURNS: Map<String, String>
+     * PARAMETERS:
+     *      - long packet: packet number of the request, as returned by beginExchange()
+     *
+     * AIM: Generate the HashMap that will be used to create the HTTP HEADERS of each request.
+     *
+     * PROCESS:
+     *      1. Check if more than 2 requests were exchanged between the application and the host,
+     *         which could indicate that at least one request has been sent back by the host.
+     *      2. If it is not the case, it is useful and necessary to specify at what time the first
+     *         request was sent. Thus, the correct value is put in the header "X-Time-Sent"
+     *      3. If it is the case, the host is considered as "knowing" the time of the first request
+     *         so a generic value (i.e., "[YOU HAVE TO KNOW]") is put in the header to avoid giving
+     *         away any information that could help an attacker to guess the correct value of the
+     *         next hash
+     *      4. Add the checksum of the packet. The number of sent requests was already incremented
+     *         by beginExchange(), so that the response can be verified with packet + 1.
+     *      5. Outside of the LEGACY mode, give the algorithm of the checksum in "X-Checksum-Mode", and
+     *         outside of the HEX encoding, its encoding in "X-Checksum-Encoding"
+     */
+    public Map<String, String> generateHeaders(long packet){
+        return generateHeaders(packet, generateHash(packet));
+    }
+
+    //Same as generateHeaders(packet), with a checksum that was precomputed (e.g. by a ChecksumWindow)
+    public Map<String, String> generateHeaders(long packet, String checksum){
+        Map<String, String> params = new HashMap<>();
+        if(packet < 2){
+            params.put("X-Time-Sent",time);
+        }
+        else{
+            params.put("X-Time-Sent", "[YOU HAVE TO KNOW]");
+        }
+        params.put("X-CheckSum", checksum);
+        if(mode != ChecksumMode.LEGACY){
+            params.put(ChecksumMode.HEADER, mode.getName());
+        }
+        if(encoding != ChecksumEncoding.HEX){
+            params.put(ChecksumEncoding.HEADER, encoding.getName());
+        }
+        return params;
+    }
+
+    /* FUNCTION: generateBatchHeaders(long firstPacket, int count)
+     * RETURNS: Map<String, String>
+     * PARAMETERS:
+     *      - long firstPacket: packet number returned by beginExchanges(count)
+     *      - int count: number of requests packed in the batch
+     *
+     * AIM: Generate the headers of a batch of "count" requests sent in one HTTP request: the same
+     * X-Time-Sent as generateHeaders(firstPacket), X-Batch-Size, and the checksums of the packets
+     * firstPacket, firstPacket + 2... separated by BATCH_SEPARATOR in X-CheckSum.
+     */
+    public Map<String, String> generateBatchHeaders(long firstPacket, int count){
+        StringBuilder checksums = new StringBuilder(count * (encoding.getLength() + 1));
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                checksums.append(BATCH_SEPARATOR);
+            }
+            checksums.append(generateHash(firstPacket + 2L * i));
+        }
+        Map<String, String> params = generateHeaders(firstPacket, checksums.toString());
+        params.put("X-Batch-Size", String.valueOf(count));
+        return params;
+    }
+
+    //region Utilities
+    /* FUNCTION: lookAhead(long first, int count)
+     * RETURNS: LookAhead
+     *
+     * AIM: Return the checksums of the packets first, first + 2, ..., computing them only if the ones
+     * kept for the previous resynchronization attempt do not start at the same packet number
+     */
+    private LookAhead lookAhead(long first, int count) {
+        LookAhead cached = this.lookAhead;
+        if (cached != null && cached.first == first && cached.checksums.length == count) {
+            return cached;
+        }
+        HashChain hashes = chain();
+        String[] checksums = new String[count];
+        for (int i = 0; i < count; i++) {
+            checksums[i] = hashes.compute(first + 2L * i);
+        }
+        cached = new LookAhead(first, checksums);
+        this.lookAhead = cached;
+        return cached;
+    }
+
+    /* CLASS: LookAhead
+     * AIM: Precomputed checksums of the packets first, first + 2... (never modified once built)
+     */
+    private static final class LookAhead {
+        private final long first;
+        private final String[] checksums;
+
+        private LookAhead(long first, String[] checksums) {
+            this.first = first;
+            this.checksums = checksums;
+        }
+
+        //Index of the checksum in the window, -1 if it is not there
+        private int indexOf(String checksum) {
+            for (int i = 0; i < checksums.length; i++) {
+                if (ChecksumEngine.sameText(checksums[i], checksum)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    //Hash chain of the host, created the first time a checksum is needed (two threads may both create
+    //one, which is harmless: they compute the same values)
+    private HashChain chain() {
+        HashChain hashes = this.chain;
+        if (hashes == null || hashes.getMode() != mode || hashes.getEncoding() != encoding) {
+            hashes = new HashChain(getTimeDigest(), mode, encoding);
+            this.chain = hashes;
+        }
+        return hashes;
+    }
+
+    //Drop the checksums computed with the previous mode or encoding, and create the pipelined mode window again
+    private void resetChain() {
+        this.chain = null;
+        this.lookAhead = null;
+        ChecksumWindow pipeline = this.window;
+        if (pipeline != null) {
+            enablePipelining(pipeline.getSize());
+        }
+    }
+
+    /* FUNCTION: toStringForLog()
+     * RETURNS: String
+     * PARAMETERS: none
+     *
+     * AIM: Return the line that should be inserted in the "hosts.txt" for persistence.
+     *
+     * NB: 2 is added to nbPacket to represent the request about to be sent and its response, see
+     * HostsFileCodec for the description of the format
+     */
+    public String toStringForLog(){
+        return HostsFileCodec.encode(this);
+    }
+    //endregion
+}
@@ -0,0 +1,479 @@
+package com.example.requestsender.core;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+/* CLASS: HostJournal implements HostStore
+ * ATTRIBUTES:
+ *      - File journalFile: append-only file receiving one record per change ("hosts.journal")
+ *      - File snapshotFile: complete list of the hosts at the time of the last compaction ("hosts.snapshot",
+ *        in the CompactHostFormat)
+ *      - int compactEvery: number of journal records after which the journal is compacted
+ *      - long syncBudgetMillis: maximum time a record waits before being forced to the disk (see GroupCommit)
+ *      - ConcurrentHashMap<Integer, Host> hosts: the stored hosts, by id (needed for the compaction)
+ *
+ * AIM: Persist the hosts without rewriting the whole database after every validated response: storing
+ *      the new counter of a host is a single append of a small fixed-size record.
+ *
+ * PROCESS:
+ *      The journal starts with a header (magic number, version) followed by records of two types:
+ *          - HOST   [type][id][packets][address][time][CRC32]    written once, when a host is added
+ *          - PACKET [type][id][packets][CRC32]                   17 bytes, written after each verified response
+ *          - PURGE  [type][-1][0][CRC32]                         written by purge(), forgets every previous host
+ *      where "packets" is the number of packets exchanged up to the last verified response.
+ *      1. At startup, the snapshot is read, then the journal is replayed on top of it (the last record
+ *         of a host wins). A truncated or corrupted record (e.g. the application was killed while
+ *         writing) ends the replay and is cut from the journal.
+ *      2. Every "compactEvery" records, and when the store is closed, the current hosts are written in
+ *         a temporary snapshot which atomically replaces the previous one, then the journal is emptied.
+ *         If the application stops between the two, replaying the old journal on the new snapshot gives
+ *         the same hosts, since the records hold absolute values.
+ *      3. The records are written in the page cache, and a GroupCommit forces the journal to the disk
+ *         at most "syncBudgetMillis" milliseconds later: the records written meanwhile (by any number
+ *         of threads) share one force. awaitDurable() waits for the records already written.
+ */
+public class HostJournal implements HostStore {
+    public static final String JOURNAL_FILE = "hosts.journal";
+    public static final String SNAPSHOT_FILE = "hosts.snapshot";
+    public static final int DEFAULT_COMPACT_EVERY = 4096;
+    public static final long DEFAULT_SYNC_BUDGET_MILLIS = 50;
+
+    private static final int JOURNAL_MAGIC = 0x484A4E4C; //"HJNL"
+    private static final int SNAPSHOT_MAGIC = 0x48534E50; //"HSNP"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final byte TYPE_HOST = 1;
+    private static final byte TYPE_PACKET = 2;
+    private static final byte TYPE_PURGE = 3;
+    private static final int PACKET_RECORD_SIZE = 1 + 4 + 8 + 4;
+
+    private final File journalFile;
+    private final File snapshotFile;
+    private final int compactEvery;
+    private final long syncBudgetMillis;
+    private final ConcurrentHashMap<Integer, Host> hosts = new ConcurrentHashMap<>();
+    private final ByteBuffer packetRecord = ByteBuffer.allocate(PACKET_RECORD_SIZE);
+    private final CRC32 crc = new CRC32();
+    private volatile FileChannel journal; //Also read by the sync thread
+    private volatile GroupCommit commits;
+    private int nextId = 0;
+    private int recordsSinceCompaction = 0;
+
+    /* CONSTRUCTOR
+     * Use the journal and snapshot files of the given directory. Nothing is read before load().
+     */
+    public HostJournal(File directory, int compactEvery, long syncBudgetMillis) {
+        this.journalFile = new File(directory, JOURNAL_FILE);
+        this.snapshotFile = new File(directory, SNAPSHOT_FILE);
+        this.compactEvery = compactEvery;
+        this.syncBudgetMillis = syncBudgetMillis;
+    }
+
+    public HostJournal(File directory, int compactEvery) {
+        this(directory, compactEvery, DEFAULT_SYNC_BUDGET_MILLIS);
+    }
+
+    public HostJournal(File directory) {
+        this(directory, DEFAULT_COMPACT_EVERY);
+    }
+
+    public File getSnapshotFile() { return this.snapshotFile; } //Snapshot read by load()
+
+    /* FUNCTION: isEmptyOnDisk()
+     * RETURNS: boolean (true if there is no snapshot and the journal holds no record: load() would give no host)
+     *
+     * AIM: Tell, before load(), whether a snapshot can be written in place of the files (see LegacyHostsMigrator)
+     */
+    public synchronized boolean isEmptyOnDisk() {
+        return journal == null && !snapshotFile.exists() && journalFile.length() <= HEADER_SIZE;
+    }
+
+    /* FUNCTION: load()
+     * RETURNS: List<Host>
+     * PARAMETERS: none
+     *
+     * AIM: Open the journal and rebuild the hosts from the snapshot and the journal (step 1 above)
+     *
+     * PROCESS:
+     *      1. Read every host of the snapshot, if there is one
+     *      2. Open the journal, writing its header if it is a new file
+     *      3. Apply every complete record of the journal, and cut the journal after the last one
+     *      4. Create the Host instances and give them their ids
+     *      5. Start the group commit of the journal
+     */
+    @Override
+    public synchronized List<Host> load() throws IOException {
+        Map<Integer, Entry> entries = new LinkedHashMap<>();
+        readSnapshot(entries); //STEP 1
+
+        journal = new RandomAccessFile(journalFile, "rw").getChannel(); //STEP 2
+        if (journal.size() < HEADER_SIZE) {
+            resetJournal();
+        }
+        long end = replayJournal(entries); //STEP 3
+        if (end < journal.size()) {
+            journal.truncate(end);
+        }
+        journal.position(end);
+
+        //STEP 4
+        List<Host> loaded = new ArrayList<>();
+        hosts.clear();
+        nextId = 0;
+        for (Map.Entry<Integer, Entry> stored : entries.entrySet()) {
+            Entry entry = stored.getValue();
+            Host host = new Host(entry.address, entry.time, entry.packets);
+            host.setId(stored.getKey());
+            hosts.put(stored.getKey(), host);
+            loaded.add(host);
+            nextId = Math.max(nextId, stored.getKey() + 1);
+        }
+        if (commits == null) { //STEP 5
+            commits = syncBudgetMillis > 0
+                    ? new GroupCommit("journal-sync", 0, syncBudgetMillis, this::forceJournal)
+                    : new GroupCommit("journal-sync", 1, 0, this::forceJournal);
+        }
+        return loaded;
+    }
+
+    /* FUNCTION: add(Host host)
+     * RETURNS: void
+     * PARAMETERS:
+     *      - Host host: new host to be stored
+     *
+     * AIM: Give an id to the host and append its HOST record
+     */
+    @Override
+    public synchronized void add(Host host) throws IOException {
+        host.setId(nextId++);
+        hosts.put(host.getId(), host);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream record = new DataOutputStream(bytes);
+        record.writeByte(TYPE_HOST);
+        record.writeInt(host.getId());
+        record.writeLong(host.getNbVerified());
+        record.writeUTF(host.getRemoteAddress());
+        record.writeUTF(host.getTime());
+        crc.reset();
+        crc.update(bytes.toByteArray(), 0, bytes.size());
+        record.writeInt((int) crc.getValue());
+        append(ByteBuffer.wrap(bytes.toByteArray()));
+    }
+
+    /* FUNCTION: update(Host host)
+     * RETURNS: void
+     * PARAMETERS:
+     *      - Host host: host whose counter changed
+     *
+     * AIM: Append the PACKET record of the host. A host that is not stored (e.g. forgotten by a purge) is
+     *      ignored, instead of being written back in the journal.
+     */
+    @Override
+    public synchronized void update(Host host) throws IOException {
+        if (host.getId() < 0 || hosts.get(host.getId()) != host) {
+            return;
+        }
+        packetRecord.clear();
+        packetRecord.put(TYPE_PACKET).putInt(host.getId()).putLong(host.getNbVerified());
+        crc.reset();
+        crc.update(packetRecord.array(), 0, packetRecord.position());
+        packetRecord.putInt((int) crc.getValue());
+        packetRecord.flip();
+        append(packetRecord);
+    }
+
+    /* FUNCTION: purge()
+     * RETURNS: void
+     *
+     * AIM: Forget every host: delete the snapshot and empty the journal
+     *
+     * PROCESS:
+     *      1. Append a PURGE record and force it: from now on, replaying the files gives no host, whatever
+     *         happens to the two files afterwards
+     *      2. Delete the snapshot, and make the deletion durable
+     *      3. Empty the journal
+     *      Without the PURGE record, stopping the application between 2 and 3 would bring back the hosts
+     *      of the journal, and between 3 and 2 the hosts of the snapshot.
+     */
+    @Override
+    public synchronized void purge() throws IOException {
+        if (journal == null) {
+            throw new IOException("The host journal is not loaded");
+        }
+        hosts.clear();
+        nextId = 0;
+
+        //STEP 1
+        packetRecord.clear();
+        packetRecord.put(TYPE_PURGE).putInt(-1).putLong(0);
+        crc.reset();
+        crc.update(packetRecord.array(), 0, packetRecord.position());
+        packetRecord.putInt((int) crc.getValue());
+        packetRecord.flip();
+        while (packetRecord.hasRemaining()) {
+            journal.write(packetRecord);
+        }
+        journal.force(false);
+        //END OF STEP 1
+
+        //STEP 2
+        if (snapshotFile.exists() && !snapshotFile.delete()) {
+            throw new IOException("Cannot delete " + snapshotFile);
+        }
+        syncDirectory();
+        //END OF STEP 2
+        resetJournal(); //STEP 3
+    }
+
+    /* FUNCTION: compact()
+     * RETURNS: void
+     *
+     * AIM: Write the current hosts in a new snapshot and empty the journal (step 2 above)
+     *
+     * PROCESS:
+     *      1. Write the snapshot in a temporary file, in the CompactHostFormat (CRC32 of every record)
+     *      2. Make sure it is on the disk, then rename it over the previous snapshot (atomic) and make the
+     *         rename durable: the journal must not be emptied while the old snapshot can still come back
+     *      3. Empty the journal
+     */
+    public synchronized void compact() throws IOException {
+        File temporary = new File(snapshotFile.getPath() + ".tmp");
+        FileOutputStream fileStream = new FileOutputStream(temporary);
+        try (CompactHostFormat.Writer snapshot = new CompactHostFormat.Writer(fileStream)) {
+            //STEP 1
+            for (Host host : new ArrayList<>(hosts.values())) {
+                snapshot.write(host);
+            }
+            snapshot.finish();
+            //END OF STEP 1
+            fileStream.getFD().sync(); //STEP 2
+        }
+        Files.move(temporary.toPath(), snapshotFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory();
+        resetJournal(); //STEP 3
+    }
+
+    /* FUNCTION: awaitDurable()
+     * RETURNS: void
+     *
+     * AIM: Wait until every record written before the call is on the disk (the writers are not blocked)
+     */
+    @Override
+    public void awaitDurable() throws IOException {
+        GroupCommit current = commits;
+        if (current != null) {
+            current.awaitAll();
+        }
+    }
+
+    /* FUNCTION: close()
+     * RETURNS: void
+     *
+     * AIM: Force the waiting records, compact the journal if it received records, then close it
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (journal == null) {
+            return;
+        }
+        try {
+            commits.close();
+            commits = null;
+            if (recordsSinceCompaction > 0) {
+                compact();
+            }
+        } finally {
+            journal.close();
+            journal = null;
+        }
+    }
+
+    //region Utilities
+    private void append(ByteBuffer record) throws IOException {
+        if (journal == null) {
+            throw new IOException("The host journal is not loaded");
+        }
+        while (record.hasRemaining()) {
+            journal.write(record);
+        }
+        commits.submit();
+        if (++recordsSinceCompaction >= compactEvery) {
+            compact();
+        }
+    }
+
+    //Sync action of the group commit: runs on the sync thread, without the lock of the journal
+    private void forceJournal() throws IOException {
+        FileChannel channel = journal;
+        if (channel != null && channel.isOpen()) {
+            channel.force(false);
+        }
+    }
+
+    //Force the entries of the directory (renamed or deleted snapshot) to the disk
+    private void syncDirectory() throws IOException {
+        File directory = snapshotFile.getAbsoluteFile().getParentFile();
+        try (FileChannel entries = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+            entries.force(true);
+        } catch (IOException | UnsupportedOperationException e) {
+            //Some platforms cannot open or force a directory: their renames are durable on their own
+        }
+    }
+
+    private void resetJournal() throws IOException {
+        journal.truncate(0);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(JOURNAL_MAGIC).putInt(VERSION).flip();
+        journal.write(header, 0);
+        journal.position(HEADER_SIZE);
+        journal.force(false);
+        recordsSinceCompaction = 0;
+    }
+
+    /* FUNCTION: readSnapshot(Map<Integer, Entry> entries)
+     * RETURNS: void
+     *
+     * AIM: Fill the entries with the content of the snapshot. As the snapshot is replaced atomically, a
+     * wrong magic number or CRC means that the file was damaged: an IOException is thrown.
+     * Snapshots written before the CompactHostFormat (SNAPSHOT_MAGIC) are still read, and are replaced
+     * by the next compaction.
+     */
+    private void readSnapshot(Map<Integer, Entry> entries) throws IOException {
+        if (!snapshotFile.exists()) {
+            return;
+        }
+        DataInputStream snapshot = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshotFile)));
+        try {
+            snapshot.mark(4);
+            int magic = snapshot.readInt();
+            snapshot.reset();
+            if (magic == CompactHostFormat.MAGIC) {
+                CompactHostFormat.read(snapshot, (id, address, time, packets) -> entries.put(id, new Entry(address, time, packets)));
+            } else if (magic == SNAPSHOT_MAGIC) {
+                readFixedSnapshot(snapshot, entries);
+            } else {
+                throw new IOException("Unknown snapshot format: " + snapshotFile);
+            }
+        } catch (IOException e) {
+            throw new IOException("Corrupted snapshot: " + snapshotFile, e);
+        } finally {
+            snapshot.close();
+        }
+    }
+
+    //Snapshot of the first version: [magic][version][count] then [id][packets][address][time] per host, and the CRC32 of all that
+    private void readFixedSnapshot(InputStream stream, Map<Integer, Entry> entries) throws IOException {
+        CheckedInputStream checked = new CheckedInputStream(stream, new CRC32());
+        DataInputStream snapshot = new DataInputStream(checked);
+        if (snapshot.readInt() != SNAPSHOT_MAGIC || snapshot.readInt() != VERSION) {
+            throw new IOException("Unknown snapshot version");
+        }
+        int count = snapshot.readInt();
+        for (int i = 0; i < count; i++) {
+            int id = snapshot.readInt();
+            long packets = snapshot.readLong();
+            entries.put(id, new Entry(snapshot.readUTF(), snapshot.readUTF(), packets));
+        }
+        int expected = (int) checked.getChecksum().getValue();
+        if (snapshot.readInt() != expected) {
+            throw new IOException("Wrong CRC");
+        }
+    }
+
+    /* FUNCTION: replayJournal(Map<Integer, Entry> entries)
+     * RETURNS: long (position of the end of the last complete record)
+     *
+     * AIM: Apply the records of the journal to the entries, stopping at the first incomplete record
+     */
+    private long replayJournal(Map<Integer, Entry> entries) throws IOException {
+        journal.position(0);
+        DataInputStream input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(journal)));
+        if (input.readInt() != JOURNAL_MAGIC || input.readInt() != VERSION) {
+            throw new IOException("Unknown journal format: " + journalFile);
+        }
+        long end = HEADER_SIZE;
+        CRC32 recordCrc = new CRC32();
+        try {
+            while (true) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(PACKET_RECORD_SIZE);
+                DataOutputStream copy = new DataOutputStream(bytes);
+                int type = input.read();
+                if (type == -1) {
+                    break;
+                }
+                int id = input.readInt();
+                long packets = input.readLong();
+                copy.writeByte(type);
+                copy.writeInt(id);
+                copy.writeLong(packets);
+                String address = null;
+                String time = null;
+                if (type == TYPE_HOST) {
+                    address = input.readUTF();
+                    time = input.readUTF();
+                    copy.writeUTF(address);
+                    copy.writeUTF(time);
+                } else if (type != TYPE_PACKET && type != TYPE_PURGE) {
+                    break;
+                }
+                recordCrc.reset();
+                recordCrc.update(bytes.toByteArray(), 0, bytes.size());
+                if (input.readInt() != (int) recordCrc.getValue()) {
+                    break;
+                }
+                if (type == TYPE_PURGE) {
+                    entries.clear();
+                } else if (type == TYPE_HOST) {
+                    if (!entries.containsKey(id)) {
+                        entries.put(id, new Entry(address, time, packets));
+                    }
+                } else if (entries.containsKey(id)) {
+                    entries.get(id).packets = packets;
+                }
+                end += bytes.size() + 4;
+            }
+        } catch (EOFException truncated) {
+            //The last record was not completely written: it is ignored
+        }
+        return end;
+    }
+
+    /* CLASS: Entry
+     * AIM: State of a host while the snapshot and the journal are being read
+     */
+    private static final class Entry {
+        private final String address;
+        private final String time;
+        private long packets;
+
+        private Entry(String address, String time, long packets) {
+            this.address = address;
+            this.time = time;
+            this.packets = packets;
+        }
+    }
+    //endregion
+}
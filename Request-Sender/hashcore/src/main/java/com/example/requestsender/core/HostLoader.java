@@ -0,0 +1,85 @@
+package com.example.requestsender.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+
+/* CLASS: HostLoader
+ * AIM: Startup path of the application: fill the registry with the stored hosts, importing the legacy
+ *      "hosts.txt" file the first time, and measure how long it took. It is meant to run on a
+ *      background thread, so that the user interface is shown whatever the number of hosts.
+ *
+ * PROCESS:
+ *      1. If the store is a HostJournal holding nothing yet and the legacy file exists, convert the file
+ *         into the snapshot of the journal (LegacyHostsMigrator), which load() then reads like any snapshot
+ *      2. Load the hosts of the store and register them. Creating a Host does not hash anything: the
+ *         SHA-256 of its time and its hash chain are only computed when a request is sent to it, so
+ *         the cost of the startup only depends on the reading of the store
+ *      3. If another store is empty and the legacy file exists, stream its records to the store and the
+ *         registry (LegacyHostsMigrator too)
+ *      4. Rename the imported legacy file so that it is only imported once, and return the number of
+ *         hosts and the duration of the load
+ */
+public final class HostLoader {
+    public static final String IMPORTED_SUFFIX = ".imported";
+
+    private HostLoader() {}
+
+    /* CLASS: Result
+     * AIM: What the load did: hosts loaded from the store, hosts imported from the legacy file, whether
+     * the legacy file could be renamed, and the duration of the load
+     */
+    public static final class Result {
+        private final int loaded;
+        private final int imported;
+        private final boolean legacyRenamed;
+        private final long elapsedNanos;
+
+        Result(int loaded, int imported, boolean legacyRenamed, long elapsedNanos) {
+            this.loaded = loaded;
+            this.imported = imported;
+            this.legacyRenamed = legacyRenamed;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public int getLoaded() { return this.loaded; } //Hosts read from the store
+        public int getImported() { return this.imported; } //Hosts imported from the legacy file
+        public boolean isLegacyRenamed() { return this.legacyRenamed; } //False if an imported file could not be renamed
+        public long getElapsedNanos() { return this.elapsedNanos; } //Duration of the load
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d hosts loaded%s in %.1f ms", loaded + imported,
+                    imported > 0 ? " (" + imported + " imported from the legacy file)" : "", elapsedNanos / 1e6);
+        }
+    }
+
+    /* FUNCTION: load(HostStore store, File legacyFile, HostRegistry registry)
+     * RETURNS: Result
+     * PARAMETERS:
+     *      - HostStore store: the store of the hosts, not loaded yet
+     *      - File legacyFile: the "hosts.txt" file of the previous versions (may not exist, or be null)
+     *      - HostRegistry registry: receives every host
+     */
+    public static Result load(HostStore store, File legacyFile, HostRegistry registry) throws IOException {
+        long start = System.nanoTime();
+        boolean legacy = legacyFile != null && legacyFile.exists();
+        boolean converted = legacy && store instanceof HostJournal && ((HostJournal) store).isEmptyOnDisk();
+        int imported = 0;
+        if (converted) { //STEP 1
+            imported = LegacyHostsMigrator.migrate(legacyFile, ((HostJournal) store).getSnapshotFile());
+        }
+        List<Host> stored = store.load(); //STEP 2
+        registry.addAll(stored);
+        boolean streamed = legacy && !converted && stored.isEmpty();
+        if (streamed) { //STEP 3
+            imported = LegacyHostsMigrator.migrate(legacyFile, store, registry);
+        }
+        boolean renamed = true;
+        if (converted || streamed) { //STEP 4
+            renamed = legacyFile.renameTo(new File(legacyFile.getPath() + IMPORTED_SUFFIX));
+        }
+        return new Result(stored.size() - (converted ? imported : 0), imported, renamed, System.nanoTime() - start);
+    }
+}
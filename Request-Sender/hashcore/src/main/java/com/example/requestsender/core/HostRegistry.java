@@ -0,0 +1,152 @@
+package com.example.requestsender.core;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/* CLASS: HostRegistry implements Iterable<Host>
+ * ATTRIBUTES:
+ *      - ConcurrentHashMap<String, Host> hosts: the known hosts, indexed by their normalized address
+ *
+ * AIM: Find the Host instance of an address in constant time, from any thread, instead of walking a
+ *      list and comparing every address.
+ *
+ * PROCESS:
+ *      1. Every address is normalized (see normalize()) so that two spellings of the same URL give the
+ *         same host.
+ *      2. getOrCreate() inserts a new host atomically: when two threads ask for the same unknown
+ *         address at the same time, only one Host is created and both threads get it. The creation
+ *         listener is only called by the thread whose host was inserted, so the host is persisted once.
+ *      3. The iteration is weakly consistent: it never throws a ConcurrentModificationException and
+ *         can be used to purge or export the hosts while requests are being sent.
+ */
+public final class HostRegistry implements Iterable<Host> {
+    private final ConcurrentHashMap<String, Host> hosts = new ConcurrentHashMap<>();
+
+    /* INTERFACE: CreationListener
+     * AIM: Called once, with the new host, when getOrCreate() had to create it (e.g. to persist it)
+     */
+    public interface CreationListener {
+        void onCreated(Host host);
+    }
+
+    /* FUNCTION: normalize(String address)
+     * RETURNS: String
+     * PARAMETERS:
+     *      - String address: address of a host, usually a complete URL
+     *
+     * AIM: Return the key of an address: the origin (lowercase scheme and host, port only if it is
+     * not the default one) followed by the path, without trailing "/", query or fragment.
+     * Values that are not URLs (e.g. a bare IP address on the server side) are only trimmed and
+     * lowercased.
+     */
+    public static String normalize(String address) {
+        String trimmed = address.trim();
+        try {
+            URI uri = new URI(trimmed);
+            if (uri.getScheme() == null || uri.getHost() == null) {
+                return trimmed.toLowerCase(Locale.ROOT);
+            }
+            String scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+            int port = uri.getPort();
+            if ((port == 80 && scheme.equals("http")) || (port == 443 && scheme.equals("https"))) {
+                port = -1;
+            }
+            String path = uri.getRawPath() == null ? "" : uri.getRawPath();
+            while (path.endsWith("/")) {
+                path = path.substring(0, path.length() - 1);
+            }
+            return scheme + "://" + uri.getHost().toLowerCase(Locale.ROOT) + (port == -1 ? "" : ":" + port) + path;
+        } catch (URISyntaxException e) {
+            return trimmed.toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /* FUNCTION: addressHash(String address)
+     * RETURNS: long
+     * PARAMETERS:
+     *      - String address: address of a host
+     *
+     * AIM: Return a 64-bit FNV-1a hash of the normalized address. Unlike the id given by a HostStore, which
+     * a purge gives to other hosts, it only depends on the address (see ConnectionEvent and the address
+     * index of MappedHostTable).
+     */
+    public static long addressHash(String address) {
+        long hash = 0xcbf29ce484222325L; //FNV-1a
+        String key = normalize(address);
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /* FUNCTION: get(String address)
+     * RETURNS: Host (null if the address is unknown)
+     */
+    public Host get(String address) {
+        return hosts.get(normalize(address));
+    }
+
+    /* FUNCTION: getOrCreate(String address, CreationListener listener)
+     * RETURNS: Host
+     * PARAMETERS:
+     *      - String address: address of the host to send a request to
+     *      - CreationListener listener: called if, and only if, a new host was created (may be null)
+     *
+     * AIM: Return the host of the address, creating it if it is a new one.
+     *
+     * PROCESS:
+     *      1. Look for the host without creating anything (the usual case)
+     *      2. Create a new host and try to insert it atomically
+     *      3. If another thread inserted a host in the meantime, return that one instead
+     *      4. Otherwise notify the listener and return the new host
+     */
+    public Host getOrCreate(String address, CreationListener listener) {
+        String key = normalize(address);
+        Host host = hosts.get(key); //STEP 1
+        if (host != null) {
+            return host;
+        }
+        Host created = new Host(address); //STEP 2
+        host = hosts.putIfAbsent(key, created);
+        if (host != null) { //STEP 3
+            return host;
+        }
+        if (listener != null) { //STEP 4
+            listener.onCreated(created);
+        }
+        return created;
+    }
+
+    public Host getOrCreate(String address) {
+        return getOrCreate(address, null);
+    }
+
+    /* FUNCTION: add(Host host)
+     * RETURNS: boolean (false if a host with the same address is already registered)
+     *
+     * AIM: Register a host loaded from the persistent storage. The first host of an address wins.
+     */
+    public boolean add(Host host) {
+        return hosts.putIfAbsent(normalize(host.getRemoteAddress()), host) == null;
+    }
+
+    public void addAll(Collection<Host> toAdd) {
+        for (Host host : toAdd) {
+            add(host);
+        }
+    }
+
+    public Host remove(String address) { return hosts.remove(normalize(address)); } //Forget one host
+    public void clear() { hosts.clear(); } //Forget every host
+    public int size() { return hosts.size(); } //Number of known hosts
+
+    @Override
+    public Iterator<Host> iterator() {
+        return hosts.values().iterator();
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.requestsender.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/* INTERFACE: HostStore extends Closeable
+ *
+ * AIM: Persistent storage of the hosts, so that the user can close the application (or restart the
+ *      device) and still communicate securely with the hosts already known.
+ *
+ * PROCESS:
+ *      1. load() is called once at startup and returns every stored host, with its id and the number
+ *         of packets exchanged up to the last verified response
+ *      2. add() stores a new host (and gives it an id)
+ *      3. update() stores the new counter of a host after a verified response. A host that is not
+ *         stored (never added, or forgotten by a purge since) is ignored: it is never stored again
+ *      4. purge() forgets every host
+ *      5. awaitDurable() waits until every change written before the call is on the disk: the changes
+ *         are synced in groups, a bounded time after being written (see GroupCommit)
+ *      6. close() syncs the changes and releases the files (and may compact them)
+ */
+public interface HostStore extends Closeable {
+    List<Host> load() throws IOException;
+    void add(Host host) throws IOException;
+    void update(Host host) throws IOException;
+    void purge() throws IOException;
+    void awaitDurable() throws IOException;
+}
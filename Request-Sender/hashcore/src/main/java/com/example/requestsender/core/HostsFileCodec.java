@@ -0,0 +1,146 @@
+package com.example.requestsender.core;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/* CLASS: HostsFileCodec
+ * ATTRIBUTES:
+ *      - String FIELD_SEPARATOR: separator between the attributes of a host
+ *      - String RECORD_SEPARATOR: separator between two hosts
+ *      - int PACKET_OFFSET: offset between the "nbPacket" of a Host and the value stored in the file
+ *
+ * AIM: Encode and read the content of the "hosts.txt" file, independently of the place where the
+ *      file is stored (external storage on Android, any file or stream on a JVM). The file is only read
+ *      by scan(), when it is imported (see LegacyHostsMigrator).
+ *
+ * PROCESS:
+ *      The structure of each record of the "hosts.txt" file is the following:
+ *      [HOST EXACT ADDRESS];[TIME OF THE FIRST PACKET SENT];[PACKET NUMBER EXPECTED ON THE NEXT RESPONSE]
+ *      The packet number stored is the "nbPacket" of the host + 2 (the request the app is going to
+ *      send and the response that will follow), hence the PACKET_OFFSET removed when reading.
+ */
+public final class HostsFileCodec {
+    public static final String FIELD_SEPARATOR = ";";
+    public static final String RECORD_SEPARATOR = "\r";
+    public static final int PACKET_OFFSET = 2;
+
+    private static final int READ_BUFFER_CHARS = 8192;
+
+    /* INTERFACE: RecordVisitor
+     * AIM: Receives each complete record found by scan(), with the packet offset already removed
+     */
+    public interface RecordVisitor {
+        void visit(String address, String time, long nbPacket) throws IOException;
+    }
+
+    private HostsFileCodec() {}
+
+    /* FUNCTION: encode(Host host)
+     * RETURNS: String
+     * PARAMETERS:
+     *      - Host host: host to be written in the file
+     *
+     * AIM: Return the record that should be inserted in the "hosts.txt" for persistence.
+     */
+    public static String encode(Host host) {
+        return encode(host.getRemoteAddress(), host.getTime(), host.getNbPacket() + PACKET_OFFSET);
+    }
+
+    /* FUNCTION: scan(Reader reader, RecordVisitor visitor)
+     * RETURNS: int (number of records given to the visitor)
+     * PARAMETERS:
+     *      - Reader reader: content of the "hosts.txt" file (read until its end, not closed)
+     *      - RecordVisitor visitor: receives every complete record
+     *
+     * AIM: Read the file in a single pass, without lines, split() nor boxed numbers, so that the records
+     * can be streamed to their destination (e.g. a HostStore) without keeping the whole file in memory.
+     *
+     * PROCESS:
+     *      1. Read the file in blocks of READ_BUFFER_CHARS characters
+     *      2. Copy the characters of the current record in a reusable buffer, remembering where its
+     *         first two FIELD_SEPARATOR are. "\r", "\n" and "\r\n" all end a record (as with
+     *         BufferedReader.readLine()), so that files written by any version of the application can be
+     *         read; empty records are ignored
+     *      3. At the end of a record, create the address and time Strings and parse the counter digit
+     *         by digit (up to the next FIELD_SEPARATOR, if any)
+     *      4. Records without three fields, or whose counter is not a number, are skipped
+     */
+    public static int scan(Reader reader, RecordVisitor visitor) throws IOException {
+        char[] block = new char[READ_BUFFER_CHARS];
+        RecordTokenizer tokenizer = new RecordTokenizer();
+        int visited = 0;
+        int read;
+        while ((read = reader.read(block)) >= 0) { //STEP 1
+            for (int i = 0; i < read; i++) {
+                char c = block[i];
+                if (c == '\r' || c == '\n') {
+                    visited += tokenizer.endRecord(visitor); //STEPS 3 & 4
+                } else {
+                    tokenizer.append(c); //STEP 2
+                }
+            }
+        }
+        return visited + tokenizer.endRecord(visitor); //The last record may not have a separator
+    }
+
+    /* CLASS: RecordTokenizer
+     * AIM: The record being read by scan(): its characters, in a buffer reused for every record, and the
+     * positions of its first two FIELD_SEPARATOR (-1 until they are found)
+     */
+    private static final class RecordTokenizer {
+        private static final char SEPARATOR = ';';
+        private static final int MAX_COUNTER_DIGITS = 18; //More digits could overflow a long
+
+        private char[] record = new char[256];
+        private int length = 0;
+        private int first = -1;
+        private int second = -1;
+
+        private void append(char c) {
+            if (length == record.length) {
+                record = Arrays.copyOf(record, record.length * 2);
+            }
+            if (c == SEPARATOR) {
+                if (first < 0) {
+                    first = length;
+                } else if (second < 0) {
+                    second = length;
+                }
+            }
+            record[length++] = c;
+        }
+
+        //Give the record to the visitor if it is complete, then start the next one. Returns 1 if it was given
+        private int endRecord(RecordVisitor visitor) throws IOException {
+            int visited = 0;
+            if (second >= 0) {
+                int position = second + 1;
+                boolean negative = position < length && record[position] == '-';
+                if (negative || (position < length && record[position] == '+')) {
+                    position++;
+                }
+                int digits = 0;
+                long stored = 0;
+                while (position < length && record[position] != SEPARATOR && digits <= MAX_COUNTER_DIGITS) {
+                    char c = record[position++];
+                    digits = c >= '0' && c <= '9' ? digits + 1 : MAX_COUNTER_DIGITS + 1;
+                    stored = stored * 10 + (c - '0');
+                }
+                if (digits > 0 && digits <= MAX_COUNTER_DIGITS) {
+                    visitor.visit(new String(record, 0, first), new String(record, first + 1, second - first - 1),
+                            (negative ? -stored : stored) - PACKET_OFFSET);
+                    visited = 1;
+                }
+            }
+            length = 0;
+            first = -1;
+            second = -1;
+            return visited;
+        }
+    }
+
+    private static String encode(String address, String time, long storedPacket) {
+        return address + FIELD_SEPARATOR + time + FIELD_SEPARATOR + storedPacket + RECORD_SEPARATOR;
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.requestsender.core;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+
+/* CLASS: JsonExporter implements MetricsExporter
+ * AIM: Write the metrics as one JSON object, durations in milliseconds:
+ *      {"timestamp": 1679533412000,
+ *       "stages": {"header_generation": {"count": 3, "mean_ms": 0.012, "p50_ms": 0.011, "p99_ms": ...,
+ *                  "p999_ms": ..., "max_ms": ...}, ...},
+ *       "outcomes": {"https://192.168.0.17:5000/hosta": {"validated": 2, "rejected": 0, ...}}}
+ */
+public final class JsonExporter implements MetricsExporter {
+    @Override
+    public void export(MetricsSnapshot snapshot, Appendable out) throws IOException {
+        out.append("{\"timestamp\":").append(String.valueOf(snapshot.getTakenAtMillis())).append(",\"stages\":{");
+        boolean first = true;
+        for (RequestMetrics.Stage stage : RequestMetrics.Stage.values()) {
+            LatencyHistogram histogram = snapshot.getStage(stage);
+            out.append(first ? "" : ",").append('"').append(stage.getMetricName()).append("\":{")
+                    .append("\"count\":").append(String.valueOf(histogram.getCount()))
+                    .append(",\"mean_ms\":").append(millis(histogram.getMean()))
+                    .append(",\"p50_ms\":").append(millis(histogram.percentile(50)))
+                    .append(",\"p99_ms\":").append(millis(histogram.percentile(99)))
+                    .append(",\"p999_ms\":").append(millis(histogram.percentile(99.9)))
+                    .append(",\"max_ms\":").append(millis(histogram.getMax()))
+                    .append('}');
+            first = false;
+        }
+        out.append("},\"outcomes\":{");
+        first = true;
+        for (Map.Entry<String, Map<ConnectionOutcome, Long>> host : snapshot.getOutcomes().entrySet()) {
+            out.append(first ? "" : ",").append('"').append(escape(host.getKey())).append("\":{");
+            boolean firstOutcome = true;
+            for (Map.Entry<ConnectionOutcome, Long> outcome : host.getValue().entrySet()) {
+                out.append(firstOutcome ? "" : ",").append('"').append(outcome.getKey().name().toLowerCase(Locale.ROOT))
+                        .append("\":").append(String.valueOf(outcome.getValue()));
+                firstOutcome = false;
+            }
+            out.append('}');
+            first = false;
+        }
+        out.append("}}");
+    }
+
+    private static String millis(double nanos) {
+        return String.format(Locale.ROOT, "%.6f", nanos / 1e6);
+    }
+
+    private static String escape(String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                escaped.append('\\').append(c);
+            } else if (c < 0x20) {
+                escaped.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+            } else {
+                escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.requestsender.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/* CLASS: LatencyHistogram
+ * ATTRIBUTES:
+ *      - AtomicLongArray counts: number of values recorded in each bucket
+ *      - AtomicLong total, sum, max: number, sum and maximum of the recorded values
+ *
+ * AIM: Record durations (or any positive value) in constant memory and time, from any thread, and give
+ *      their percentiles (p50, p99, p99.9...) with a relative error of about 3%.
+ *
+ * PROCESS:
+ *      The buckets are log-linear: the values below 64 have a bucket each, then every power of two
+ *      [2^m, 2^(m+1)) is split in 32 buckets of equal width. A value is recorded with a few bit
+ *      operations and one atomic increment, whatever the number of values already recorded, and a
+ *      whole histogram holds in BUCKETS longs.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKETS = 32;
+    private static final int LINEAR_LIMIT = 2 * SUB_BUCKETS;
+    static final int BUCKETS = LINEAR_LIMIT + 57 * SUB_BUCKETS; //Shifts 1 to 57 cover up to Long.MAX_VALUE
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /* FUNCTION: record(long value)
+     * RETURNS: void
+     * PARAMETERS:
+     *      - long value: the value to record (e.g. a latency in nanoseconds), negative values count as 0
+     */
+    public void record(long value) {
+        long v = Math.max(0, value);
+        counts.incrementAndGet(index(v));
+        total.incrementAndGet();
+        sum.addAndGet(v);
+        long current;
+        while (v > (current = max.get()) && !max.compareAndSet(current, v)) {
+            //Another thread recorded a value at the same time, compare with the new maximum
+        }
+    }
+
+    //Add every value of another histogram to this one (e.g. to merge the histograms of several threads)
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long count = other.counts.get(i);
+            if (count != 0) {
+                counts.addAndGet(i, count);
+            }
+        }
+        total.addAndGet(other.total.get());
+        sum.addAndGet(other.sum.get());
+        long otherMax = other.max.get();
+        long current;
+        while (otherMax > (current = max.get()) && !max.compareAndSet(current, otherMax)) {
+            //Retry with the new maximum
+        }
+    }
+
+    public long getCount() { return this.total.get(); } //Number of recorded values
+    public long getMax() { return this.max.get(); } //Largest recorded value
+    public long getSum() { return this.sum.get(); } //Sum of the recorded values
+    public double getMean() { long n = total.get(); return n == 0 ? 0 : (double) sum.get() / n; } //Average value
+
+    //Number of values recorded in the bucket "index" (with getBucketUpperBound(), used to export the histogram)
+    public long getBucketCount(int index) { return this.counts.get(index); }
+
+    /* FUNCTION: percentile(double percent)
+     * RETURNS: long (0 if nothing was recorded)
+     * PARAMETERS:
+     *      - double percent: e.g. 50, 99 or 99.9
+     *
+     * AIM: Return a value such that "percent" % of the recorded values are lower or equal, within the
+     * precision of the buckets (the upper bound of the bucket holding the percentile, capped by the max)
+     */
+    public long percentile(double percent) {
+        long n = total.get();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(n * percent / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(getBucketUpperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    //region Buckets
+    static int index(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - 5; //value >> shift is in [32, 63]
+        return LINEAR_LIMIT + (shift - 1) * SUB_BUCKETS + (int) (value >> shift) - SUB_BUCKETS;
+    }
+
+    //Largest value recorded in the bucket "index"
+    public static long getBucketUpperBound(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        int shift = (index - LINEAR_LIMIT) / SUB_BUCKETS + 1;
+        long sub = (index - LINEAR_LIMIT) % SUB_BUCKETS + SUB_BUCKETS;
+        return index == BUCKETS - 1 ? Long.MAX_VALUE : ((sub + 1) << shift) - 1;
+    }
+    //endregion
+}
@@ -0,0 +1,95 @@
+package com.example.requestsender.core;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.Set;
+
+/* CLASS: LegacyHostsMigrator
+ * AIM: Only import path of the legacy "hosts.txt" file (see HostLoader): one-shot conversion into the
+ *      CompactHostFormat, e.g. into the snapshot of a HostJournal, which then loads the hosts without any
+ *      text parsing, or streaming of its hosts into any other HostStore.
+ *
+ * PROCESS: (conversion into the CompactHostFormat)
+ *      1. Stream the records of the legacy file (HostsFileCodec.scan()) to a CompactHostFormat.Writer
+ *         writing a temporary file: the hosts are never all in memory, only their normalized addresses
+ *      2. Keep the first record of each address, as HostRegistry does, and
+ *         give the hosts consecutive ids. The counter written is the one of the legacy file (packets
+ *         exchanged up to the last verified response), without its PACKET_OFFSET
+ *      3. Make sure the file is on the disk, then rename it over the target (atomic), so that the
+ *         target is either the complete result or untouched
+ *
+ * USAGE: LegacyHostsMigrator hosts.txt hosts.snapshot
+ */
+public final class LegacyHostsMigrator {
+    private LegacyHostsMigrator() {}
+
+    /* FUNCTION: migrate(File legacyFile, File target)
+     * RETURNS: int (number of hosts written)
+     * PARAMETERS:
+     *      - File legacyFile: the "hosts.txt" file
+     *      - File target: the compact file to create (replaced if it exists)
+     */
+    public static int migrate(File legacyFile, File target) throws IOException {
+        File temporary = new File(target.getPath() + ".tmp");
+        Set<String> addresses = new HashSet<>();
+        int written;
+        FileOutputStream fileStream = new FileOutputStream(temporary);
+        try (Reader reader = new InputStreamReader(new FileInputStream(legacyFile), StandardCharsets.UTF_8);
+             CompactHostFormat.Writer writer = new CompactHostFormat.Writer(fileStream)) {
+            HostsFileCodec.scan(reader, (address, time, nbPacket) -> { //STEP 1
+                if (addresses.add(HostRegistry.normalize(address))) { //STEP 2
+                    writer.write(writer.getHostCount(), address, time, nbPacket);
+                }
+            });
+            writer.finish();
+            written = writer.getHostCount();
+            fileStream.getFD().sync(); //STEP 3
+        }
+        Files.move(temporary.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return written;
+    }
+
+    /* FUNCTION: migrate(File legacyFile, HostStore store, HostRegistry registry)
+     * RETURNS: int (number of hosts added)
+     * PARAMETERS:
+     *      - File legacyFile: the "hosts.txt" file
+     *      - HostStore store: a loaded store, receiving one add() per host
+     *      - HostRegistry registry: receives the hosts too; the first record of an address wins, as above
+     *
+     * AIM: Import the legacy file into a store that cannot load a CompactHostFormat file (e.g. a MappedHostTable)
+     */
+    public static int migrate(File legacyFile, HostStore store, HostRegistry registry) throws IOException {
+        int[] added = {0};
+        try (Reader reader = new InputStreamReader(new FileInputStream(legacyFile), StandardCharsets.UTF_8)) {
+            HostsFileCodec.scan(reader, (address, time, nbPacket) -> {
+                Host host = new Host(address, time, nbPacket);
+                if (registry.add(host)) {
+                    store.add(host);
+                    added[0]++;
+                }
+            });
+        }
+        return added[0];
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: LegacyHostsMigrator hosts.txt hosts.snapshot");
+            System.exit(2);
+        }
+        File legacy = new File(args[0]);
+        File target = new File(args[1]);
+        long start = System.nanoTime();
+        int hosts = migrate(legacy, target);
+        System.out.printf("%d hosts migrated in %.1f ms: %d bytes -> %d bytes%n", hosts,
+                (System.nanoTime() - start) / 1e6, legacy.length(), target.length());
+    }
+}
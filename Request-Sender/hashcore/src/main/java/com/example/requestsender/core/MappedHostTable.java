@@ -0,0 +1,344 @@
+package com.example.requestsender.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/* CLASS: MappedHostTable implements HostStore
+ * ATTRIBUTES:
+ *      - File tableFile: the memory-mapped file ("hosts.table")
+ *      - int forceEvery: number of waiting updates after which the mapped file is forced to the disk (0: no limit)
+ *      - long forceIntervalMillis: maximum time an update waits before being forced to the disk (0: no limit)
+ *      - MappedByteBuffer table: the mapping of the whole file
+ *
+ * AIM: Persist the hosts in fixed-width slots of a memory-mapped file, so that saving the counter of a
+ *      host is one in-place 8-byte write and loading the table needs no parsing nor hashing, even with
+ *      hundreds of thousands of hosts.
+ *
+ * PROCESS:
+ *      The file starts with a header of HEADER_SIZE bytes:
+ *          [magic][version][slot size][capacity][used slots]
+ *      followed by "capacity" slots of SLOT_SIZE bytes. The id of a host is the index of its slot:
+ *          offset  0   int     state (1 if the slot is used)
+ *          offset  8   long    packets exchanged up to the last verified response
+ *          offset 16   64 B    SHA256(time) in hexadecimal (as cached by the Host)
+ *          offset 80   long    hash of the normalized address (address index entry)
+ *          offset 88   short   length of the address
+ *          offset 90   short   length of the time
+ *          offset 92   116 B   address (UTF-8)
+ *          offset 208  48 B    time (UTF-8)
+ *      1. load() maps the file and creates one Host per used slot, reading its fields in place. A slot whose
+ *         address does not match its address hash was damaged or written at the wrong place: the table
+ *         is rejected rather than giving its counter to the wrong host
+ *      2. add() fills the next free slot, doubling the capacity of the file when it is full
+ *      3. update() only writes the counter of the slot of the host, if the slot still belongs to it
+ *      4. The operating system writes the modified pages back to the disk; a GroupCommit forces them
+ *         once "forceEvery" updates are waiting or the oldest one waited "forceIntervalMillis"
+ *         milliseconds, on its own thread, so that the updates never wait for the disk (both 0: only
+ *         force() and close() force the table)
+ */
+public class MappedHostTable implements HostStore {
+    public static final String TABLE_FILE = "hosts.table";
+    public static final int SLOT_SIZE = 256;
+    public static final int MAX_ADDRESS_LENGTH = 116;
+    public static final int MAX_TIME_LENGTH = 48;
+
+    private static final int MAGIC = 0x4854424C; //"HTBL"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int USED_OFFSET = 16;
+    private static final int CAPACITY_OFFSET = 12;
+    private static final int STATE = 0;
+    private static final int COUNTER = 8;
+    private static final int DIGEST = 16;
+    private static final int ADDRESS_HASH = 80;
+    private static final int ADDRESS_LENGTH = 88;
+    private static final int TIME_LENGTH = 90;
+    private static final int ADDRESS = 92;
+    private static final int TIME = 208;
+
+    private final File tableFile;
+    private final int forceEvery;
+    private final long forceIntervalMillis;
+    private RandomAccessFile file;
+    private volatile MappedByteBuffer table; //Also read by the sync thread
+    private int capacity;
+    private int used;
+    private volatile GroupCommit commits;
+    private final List<Host> slotHosts = new ArrayList<>(); //Host instance of each used slot (null if freed)
+
+    /* CONSTRUCTOR
+     * Use the table file of the given directory. Nothing is mapped before load().
+     */
+    public MappedHostTable(File directory, int forceEvery, long forceIntervalMillis) {
+        this.tableFile = new File(directory, TABLE_FILE);
+        this.forceEvery = forceEvery;
+        this.forceIntervalMillis = forceIntervalMillis;
+    }
+
+    public MappedHostTable(File directory) {
+        this(directory, 0, 0);
+    }
+
+    /* FUNCTION: load()
+     * RETURNS: List<Host>
+     * PARAMETERS: none
+     *
+     * AIM: Map the table (creating it if needed) and return the hosts of the used slots (step 1 above).
+     *      A table can only be loaded once.
+     */
+    @Override
+    public synchronized List<Host> load() throws IOException {
+        if (file != null) {
+            throw new IOException("The host table is already loaded");
+        }
+        file = new RandomAccessFile(tableFile, "rw");
+        try {
+            return readTable();
+        } catch (IOException | RuntimeException e) {
+            closeQuietly();
+            throw e;
+        }
+    }
+
+    //Body of load(), once the file is open
+    private List<Host> readTable() throws IOException {
+        if (file.length() < HEADER_SIZE) {
+            map(INITIAL_CAPACITY);
+            table.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, SLOT_SIZE);
+            table.putInt(CAPACITY_OFFSET, INITIAL_CAPACITY).putInt(USED_OFFSET, 0);
+        } else {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            file.getChannel().read(header, 0);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION || header.getInt(8) != SLOT_SIZE) {
+                throw new IOException("Unknown host table format: " + tableFile);
+            }
+            map(header.getInt(CAPACITY_OFFSET));
+        }
+        used = table.getInt(USED_OFFSET);
+
+        List<Host> hosts = new ArrayList<>(used);
+        slotHosts.clear();
+        for (int slot = 0; slot < used; slot++) {
+            int base = offset(slot);
+            if (table.getInt(base + STATE) != 1) {
+                slotHosts.add(null);
+                continue;
+            }
+            int addressLength = table.getShort(base + ADDRESS_LENGTH);
+            int timeLength = table.getShort(base + TIME_LENGTH);
+            if (addressLength < 0 || addressLength > MAX_ADDRESS_LENGTH || timeLength < 0 || timeLength > MAX_TIME_LENGTH) {
+                throw new IOException("Corrupted slot " + slot + " in " + tableFile);
+            }
+            String address = readString(base + ADDRESS, addressLength);
+            if (table.getLong(base + ADDRESS_HASH) != HostRegistry.addressHash(address)) {
+                throw new IOException("Corrupted slot " + slot + " in " + tableFile);
+            }
+            byte[] digest = new byte[ChecksumEngine.HEX_LENGTH];
+            readBytes(base + DIGEST, digest);
+            Host host = new Host(
+                    address,
+                    readString(base + TIME, timeLength),
+                    table.getLong(base + COUNTER),
+                    digest);
+            host.setId(slot);
+            hosts.add(host);
+            slotHosts.add(host);
+        }
+        if (commits == null && (forceEvery > 0 || forceIntervalMillis > 0)) {
+            commits = new GroupCommit("table-sync", forceEvery, forceIntervalMillis, this::forceMapping);
+        }
+        return hosts;
+    }
+
+    /* FUNCTION: add(Host host)
+     * RETURNS: void
+     * PARAMETERS:
+     *      - Host host: new host to be stored
+     *
+     * AIM: Write the host in the next free slot, whose index becomes the id of the host
+     *
+     * PROCESS:
+     *      1. Check that the address and the time fit in a slot
+     *      2. Double the capacity of the table if it is full
+     *      3. Write every field of the slot, then mark it as used and count it in the header
+     */
+    @Override
+    public synchronized void add(Host host) throws IOException {
+        ensureLoaded();
+        byte[] address = host.getRemoteAddress().getBytes(StandardCharsets.UTF_8); //STEP 1
+        byte[] time = host.getTime().getBytes(StandardCharsets.UTF_8);
+        if (address.length > MAX_ADDRESS_LENGTH || time.length > MAX_TIME_LENGTH) {
+            throw new IOException("Host too long for a table slot: " + host.getRemoteAddress());
+        }
+        if (used == capacity) { //STEP 2
+            map(capacity * 2);
+            table.putInt(CAPACITY_OFFSET, capacity);
+        }
+        //STEP 3
+        int slot = used;
+        int base = offset(slot);
+        table.putLong(base + COUNTER, host.getNbVerified());
+        writeBytes(base + DIGEST, host.getTimeDigest());
+        table.putLong(base + ADDRESS_HASH, HostRegistry.addressHash(host.getRemoteAddress()));
+        table.putShort(base + ADDRESS_LENGTH, (short) address.length);
+        table.putShort(base + TIME_LENGTH, (short) time.length);
+        writeBytes(base + ADDRESS, address);
+        writeBytes(base + TIME, time);
+        table.putInt(base + STATE, 1);
+        used++;
+        table.putInt(USED_OFFSET, used);
+        host.setId(slot);
+        slotHosts.add(host);
+        //END OF STEP 3
+        afterWrite();
+    }
+
+    /* FUNCTION: update(Host host)
+     * RETURNS: void
+     * PARAMETERS:
+     *      - Host host: host whose counter changed
+     *
+     * AIM: Write the new counter of the host in place. A host that is not stored is ignored: its slot may
+     *      have been freed by a purge and given to another host since.
+     */
+    @Override
+    public synchronized void update(Host host) throws IOException {
+        ensureLoaded();
+        int slot = host.getId();
+        if (slot < 0 || slot >= used || slotHosts.get(slot) != host) {
+            return;
+        }
+        table.putLong(offset(slot) + COUNTER, host.getNbVerified());
+        afterWrite();
+    }
+
+    /* FUNCTION: purge()
+     * RETURNS: void
+     *
+     * AIM: Forget every host by freeing all the slots
+     */
+    @Override
+    public synchronized void purge() throws IOException {
+        ensureLoaded();
+        for (int slot = 0; slot < used; slot++) {
+            table.putInt(offset(slot) + STATE, 0);
+        }
+        used = 0;
+        slotHosts.clear();
+        table.putInt(USED_OFFSET, 0);
+        force();
+    }
+
+    /* FUNCTION: force()
+     * RETURNS: void
+     *
+     * AIM: Make sure every modified page of the table is written on the disk
+     */
+    public synchronized void force() throws IOException {
+        if (commits != null) {
+            commits.syncNow();
+        } else {
+            forceMapping();
+        }
+    }
+
+    /* FUNCTION: awaitDurable()
+     * RETURNS: void
+     *
+     * AIM: Wait until every update written before the call is on the disk (the writers are not blocked)
+     */
+    @Override
+    public void awaitDurable() throws IOException {
+        GroupCommit current = commits;
+        if (current != null) {
+            current.awaitAll();
+        } else {
+            force();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (file == null) {
+            return;
+        }
+        if (commits != null) {
+            commits.close();
+            commits = null;
+        }
+        forceMapping();
+        table = null;
+        file.close();
+        file = null;
+    }
+
+    //region Utilities
+    private void closeQuietly() {
+        table = null;
+        try {
+            file.close();
+        } catch (IOException ignored) {
+            //The load already failed
+        }
+        file = null;
+    }
+
+    private void afterWrite() {
+        if (commits != null) {
+            commits.submit();
+        }
+    }
+
+    //Sync action of the group commit: runs on the sync thread, without the lock of the table
+    private void forceMapping() {
+        MappedByteBuffer mapped = table;
+        if (mapped != null) {
+            mapped.force();
+        }
+    }
+
+    private void map(int newCapacity) throws IOException {
+        if (table != null) {
+            table.force();
+        }
+        table = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) newCapacity * SLOT_SIZE);
+        capacity = newCapacity;
+    }
+
+    private void ensureLoaded() throws IOException {
+        if (table == null) {
+            throw new IOException("The host table is not loaded");
+        }
+    }
+
+    private static int offset(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    private void readBytes(int position, byte[] destination) {
+        for (int i = 0; i < destination.length; i++) {
+            destination[i] = table.get(position + i);
+        }
+    }
+
+    private void writeBytes(int position, byte[] source) {
+        for (int i = 0; i < source.length; i++) {
+            table.put(position + i, source[i]);
+        }
+    }
+
+    private String readString(int position, int length) {
+        byte[] bytes = new byte[length];
+        readBytes(position, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    //endregion
+}
@@ -0,0 +1,11 @@
+package com.example.requestsender.core;
+
+import java.io.IOException;
+
+/* INTERFACE: MetricsExporter
+ * AIM: Write a MetricsSnapshot in a text format read by a monitoring tool (see PrometheusExporter and
+ *      JsonExporter)
+ */
+public interface MetricsExporter {
+    void export(MetricsSnapshot snapshot, Appendable out) throws IOException;
+}
@@ -0,0 +1,36 @@
+package com.example.requestsender.core;
+
+import java.util.Collections;
+import java.util.Map;
+
+/* CLASS: MetricsSnapshot
+ * ATTRIBUTES:
+ *      - long takenAtMillis: time of the snapshot (milliseconds since 1970-01-01T00:00:00Z)
+ *      - Map<Stage, LatencyHistogram> stages: copy of the histogram of each stage, in nanoseconds
+ *      - Map<String, Map<ConnectionOutcome, Long>> outcomes: number of each outcome, per host (sorted)
+ *
+ * AIM: Values of the RequestMetrics at one point in time. The histograms are copies: they are not
+ *      modified by the requests handled after the snapshot and must not be modified by its readers.
+ */
+public final class MetricsSnapshot {
+    private final long takenAtMillis;
+    private final Map<RequestMetrics.Stage, LatencyHistogram> stages;
+    private final Map<String, Map<ConnectionOutcome, Long>> outcomes;
+
+    MetricsSnapshot(long takenAtMillis, Map<RequestMetrics.Stage, LatencyHistogram> stages,
+                    Map<String, Map<ConnectionOutcome, Long>> outcomes) {
+        this.takenAtMillis = takenAtMillis;
+        this.stages = Collections.unmodifiableMap(stages);
+        this.outcomes = Collections.unmodifiableMap(outcomes);
+    }
+
+    public long getTakenAtMillis() { return this.takenAtMillis; } //Time property
+    public LatencyHistogram getStage(RequestMetrics.Stage stage) { return this.stages.get(stage); } //Durations of a stage
+    public Map<String, Map<ConnectionOutcome, Long>> getOutcomes() { return this.outcomes; } //Outcomes per host
+
+    //Number of responses of the host with this outcome (0 if the host is unknown)
+    public long getOutcomeCount(String host, ConnectionOutcome outcome) {
+        Map<ConnectionOutcome, Long> counts = outcomes.get(host);
+        return counts == null ? 0 : counts.get(outcome);
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.requestsender.core;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+
+/* CLASS: PrometheusExporter implements MetricsExporter
+ * AIM: Write the metrics in the Prometheus text exposition format (version 0.0.4):
+ *      - one summary per stage, in seconds, with the 0.5, 0.99 and 0.999 quantiles:
+ *          requestsender_header_generation_seconds{quantile="0.99"} 0.000012
+ *          requestsender_header_generation_seconds_sum 0.42
+ *          requestsender_header_generation_seconds_count 31000
+ *      - one counter for the outcomes, labelled by host and outcome:
+ *          requestsender_outcomes_total{host="https://192.168.0.17:5000/hosta",outcome="validated"} 12
+ */
+public final class PrometheusExporter implements MetricsExporter {
+    private static final String PREFIX = "requestsender_";
+    private static final double[] QUANTILES = {0.5, 0.99, 0.999};
+
+    @Override
+    public void export(MetricsSnapshot snapshot, Appendable out) throws IOException {
+        for (RequestMetrics.Stage stage : RequestMetrics.Stage.values()) {
+            LatencyHistogram histogram = snapshot.getStage(stage);
+            String name = PREFIX + stage.getMetricName() + "_seconds";
+            out.append("# HELP ").append(name).append(" Duration of the ").append(stage.getMetricName().replace('_', ' '))
+                    .append(" stage of the requests\n");
+            out.append("# TYPE ").append(name).append(" summary\n");
+            for (double quantile : QUANTILES) {
+                out.append(name).append("{quantile=\"").append(String.valueOf(quantile)).append("\"} ")
+                        .append(seconds(histogram.percentile(quantile * 100))).append('\n');
+            }
+            out.append(name).append("_sum ").append(seconds(histogram.getSum())).append('\n');
+            out.append(name).append("_count ").append(String.valueOf(histogram.getCount())).append('\n');
+        }
+        String name = PREFIX + "outcomes_total";
+        out.append("# HELP ").append(name).append(" Results of the security assessment of the responses, per host\n");
+        out.append("# TYPE ").append(name).append(" counter\n");
+        for (Map.Entry<String, Map<ConnectionOutcome, Long>> host : snapshot.getOutcomes().entrySet()) {
+            for (Map.Entry<ConnectionOutcome, Long> outcome : host.getValue().entrySet()) {
+                out.append(name).append("{host=\"").append(escape(host.getKey())).append("\",outcome=\"")
+                        .append(outcome.getKey().name().toLowerCase(Locale.ROOT)).append("\"} ")
+                        .append(String.valueOf(outcome.getValue())).append('\n');
+            }
+        }
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+    }
+
+    //Label values escape the backslashes, double quotes and line feeds
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.requestsender.core;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/* CLASS: RequestMetrics
+ * ATTRIBUTES:
+ *      - EnumMap<Stage, LatencyHistogram> stages: duration of each stage of the requests, in nanoseconds
+ *      - ConcurrentHashMap<String, AtomicLongArray> outcomes: number of each ConnectionOutcome, per host
+ *
+ * AIM: Measure where the time goes during the lifecycle of a hash-secured request, and count the
+ *      results of the security assessments, so that latency regressions can be found in production.
+ *
+ * PROCESS:
+ *      1. The stages are timed by the code that runs them and recorded with record(), from any thread
+ *         (a record is a few atomic increments, see LatencyHistogram)
+ *      2. The outcomes are counted per host address with recordOutcome()
+ *      3. snapshot() copies every value at once into an immutable MetricsSnapshot, which can be read
+ *         in memory or written by a MetricsExporter (Prometheus text format, JSON)
+ */
+public final class RequestMetrics {
+    /* ENUM: Stage
+     * AIM: The timed stages of a request, with the name used by the exporters
+     *      - HEADERS: reservation of the packet number(s) and generation of the security headers
+     *      - NETWORK: from the generation of the headers to the parsing of the response (round trip)
+     *      - VERIFICATION: verification of the checksum(s) of the response and of its status
+     *      - PERSISTENCE: save of the host and logging of the event
+     *      - FAILED: from the generation of the headers to the network error of a request that got no
+     *        response to assess (timeout, refused connection...)
+     */
+    public enum Stage {
+        HEADERS("header_generation"),
+        NETWORK("network_rtt"),
+        VERIFICATION("verification"),
+        PERSISTENCE("persistence"),
+        FAILED("failed_request");
+
+        private final String metricName;
+
+        Stage(String metricName) {
+            this.metricName = metricName;
+        }
+
+        public String getMetricName() { return this.metricName; } //Name used in the exports
+    }
+
+    private final EnumMap<Stage, LatencyHistogram> stages = new EnumMap<>(Stage.class);
+    private final ConcurrentHashMap<String, AtomicLongArray> outcomes = new ConcurrentHashMap<>();
+
+    public RequestMetrics() {
+        for (Stage stage : Stage.values()) {
+            stages.put(stage, new LatencyHistogram()); //Never modified afterwards: safe to read from any thread
+        }
+    }
+
+    //Record the duration of one stage of a request, in nanoseconds
+    public void record(Stage stage, long nanos) {
+        stages.get(stage).record(nanos);
+    }
+
+    //Count the outcome of the security assessment of a response of the host
+    public void recordOutcome(String host, ConnectionOutcome outcome) {
+        AtomicLongArray counts = outcomes.get(host);
+        if (counts == null) {
+            counts = outcomes.computeIfAbsent(host, key -> new AtomicLongArray(ConnectionOutcome.values().length));
+        }
+        counts.incrementAndGet(outcome.ordinal());
+    }
+
+    /* FUNCTION: snapshot()
+     * RETURNS: MetricsSnapshot
+     *
+     * AIM: Copy the current values of every metric (step 3 above)
+     */
+    public MetricsSnapshot snapshot() {
+        Map<Stage, LatencyHistogram> stageCopies = new EnumMap<>(Stage.class);
+        for (Map.Entry<Stage, LatencyHistogram> stage : stages.entrySet()) {
+            LatencyHistogram copy = new LatencyHistogram();
+            copy.add(stage.getValue());
+            stageCopies.put(stage.getKey(), copy);
+        }
+        Map<String, Map<ConnectionOutcome, Long>> outcomeCopies = new TreeMap<>();
+        for (Map.Entry<String, AtomicLongArray> host : outcomes.entrySet()) {
+            Map<ConnectionOutcome, Long> counts = new LinkedHashMap<>();
+            for (ConnectionOutcome outcome : ConnectionOutcome.values()) {
+                counts.put(outcome, host.getValue().get(outcome.ordinal()));
+            }
+            outcomeCopies.put(host.getKey(), Collections.unmodifiableMap(counts));
+        }
+        return new MetricsSnapshot(System.currentTimeMillis(), stageCopies, outcomeCopies);
+    }
+}
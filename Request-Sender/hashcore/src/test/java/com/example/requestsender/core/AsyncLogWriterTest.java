@@ -0,0 +1,74 @@
+package com.example.requestsender.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class AsyncLogWriterTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static String read(File file) throws Exception {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void flush_writesEveryLoggedLine() throws Exception {
+        File file = new File(folder.getRoot(), "connlog.txt");
+        AsyncLogWriter writer = new AsyncLogWriter(file, 16, AsyncLogWriter.OverflowPolicy.BLOCK, 1 << 20, 60000, 0, 0);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(writer.log("\nline " + i));
+        }
+        writer.flush();
+        String content = read(file);
+        assertTrue(content.startsWith("\nline 0\nline 1"));
+        assertTrue(content.endsWith("\nline 99"));
+        writer.close();
+        assertFalse(writer.log("\nafter close"));
+        assertEquals(1, writer.getDroppedCount());
+    }
+
+    @Test
+    public void close_writesTheRemainingLinesAndRotates() throws Exception {
+        File file = new File(folder.getRoot(), "applog.txt");
+        AsyncLogWriter writer = new AsyncLogWriter(file, 1024, AsyncLogWriter.OverflowPolicy.BLOCK, 10, 60000, 100, 2);
+        for (int i = 0; i < 50; i++) {
+            writer.log("\n[I] - event " + i);
+        }
+        writer.close();
+        assertTrue(file.length() <= 100);
+        assertTrue(new File(file.getPath() + ".1").exists());
+        assertTrue(new File(file.getPath() + ".2").exists());
+        assertFalse(new File(file.getPath() + ".3").exists());
+        assertTrue(read(file).endsWith("\n[I] - event 49"));
+    }
+
+    @Test
+    public void failedWrite_closesTheWriterAndCountsTheLostLines() throws Exception {
+        File file = new File(folder.getRoot(), "connlog.txt");
+        AsyncLogWriter writer = new AsyncLogWriter(file, 4, AsyncLogWriter.OverflowPolicy.BLOCK, 1, 60000, 10, 0);
+        writer.log("\nfirst");
+        writer.flush();
+        //The next write rotates the file, which fails once the file cannot be deleted anymore
+        assertTrue(file.delete());
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < 100; i++) {
+                writer.log("\nline " + i);
+            }
+        });
+        producer.start();
+        producer.join(5000);
+        assertFalse(producer.isAlive());
+        writer.flush();
+        assertEquals(100, writer.getDroppedCount());
+        assertFalse(writer.log("\nafter the failure"));
+        assertEquals(101, writer.getDroppedCount());
+        writer.close();
+    }
+}
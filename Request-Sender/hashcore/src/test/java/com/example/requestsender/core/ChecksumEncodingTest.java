@@ -0,0 +1,51 @@
+package com.example.requestsender.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ChecksumEncodingTest {
+    private static final String TIME = "23 mars 2023 02:03:32";
+
+    @Test
+    public void encodings_haveTheAdvertisedLength() {
+        byte[] timeDigest = ChecksumEngine.timeDigest(TIME);
+        for (ChecksumEncoding encoding : ChecksumEncoding.values()) {
+            HashChain chain = new HashChain(timeDigest, ChecksumMode.LEGACY, encoding);
+            String checksum = chain.checksum(2);
+            assertEquals(encoding.getLength(), checksum.length());
+            assertTrue(checksum.matches("[A-Za-z0-9_-]+"));
+            assertTrue(chain.matches(2, checksum));
+            assertFalse(chain.matches(4, checksum));
+            assertSame(encoding, ChecksumEncoding.fromHeader(encoding.getName()));
+        }
+        assertEquals(43, ChecksumEncoding.BASE64URL.getLength());
+        assertEquals(22, ChecksumEncoding.BASE64URL_128.getLength());
+        assertSame(ChecksumEncoding.HEX, ChecksumEncoding.fromHeader(null));
+        assertNull(ChecksumEncoding.fromHeader("base32"));
+    }
+
+    @Test
+    public void encodings_carryTheSameDigest() {
+        byte[] timeDigest = ChecksumEngine.timeDigest(TIME);
+        String hex = new HashChain(timeDigest, ChecksumMode.LEGACY, ChecksumEncoding.HEX).checksum(2);
+        assertEquals("70b4660615d71e9c99e7a284bdb663c08d74e157e934b85d94e7e60e71fbbbef", hex);
+        byte[] full = ChecksumEncoding.BASE64URL.decode(
+                new HashChain(timeDigest, ChecksumMode.LEGACY, ChecksumEncoding.BASE64URL).checksum(2));
+        byte[] truncated = ChecksumEncoding.BASE64URL_128.decode(
+                new HashChain(timeDigest, ChecksumMode.LEGACY, ChecksumEncoding.BASE64URL_128).checksum(2));
+        assertEquals(hex, ChecksumEngine.toHex(full));
+        assertEquals(hex.substring(0, 32), ChecksumEngine.toHex(truncated));
+    }
+
+    @Test
+    public void malformedChecksums_areRejected() {
+        HashChain chain = new HashChain(ChecksumEngine.timeDigest(TIME), ChecksumMode.LEGACY, ChecksumEncoding.BASE64URL_128);
+        String checksum = chain.checksum(2);
+        assertFalse(chain.matches(2, null));
+        assertFalse(chain.matches(2, checksum + "A"));
+        assertFalse(chain.matches(2, checksum.substring(1) + "+"));
+        assertNull(ChecksumEncoding.HEX.decode("70B4660615D71E9C99E7A284BDB663C08D74E157E934B85D94E7E60E71FBBBEF"));
+        assertNull(ChecksumEncoding.HEX.decode("z0b4660615d71e9c99e7a284bdb663c08d74e157e934b85d94e7e60e71fbbbef"));
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.requestsender.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the ChecksumEngine produces the same values as the Python reference server
+ * (hashlib.sha256(hashlib.sha256(time).hexdigest() + str(number)).hexdigest()).
+ */
+public class ChecksumEngineTest {
+    private static final String TIME = "23 mars 2023 02:03:32";
+
+    @Test
+    public void checksum_matchesReferenceValues() {
+        byte[] timeDigest = ChecksumEngine.timeDigest(TIME);
+        assertEquals(ChecksumEngine.HEX_LENGTH, timeDigest.length);
+        assertEquals("70b4660615d71e9c99e7a284bdb663c08d74e157e934b85d94e7e60e71fbbbef", ChecksumEngine.checksum(timeDigest, 2));
+        assertEquals(reference(TIME, 0), ChecksumEngine.checksum(timeDigest, 0));
+        assertEquals(reference(TIME, 10), ChecksumEngine.checksum(timeDigest, 10));
+        assertEquals(reference(TIME, 123456789L), ChecksumEngine.checksum(timeDigest, 123456789L));
+    }
+
+    @Test
+    public void checksumMatches_comparesWithGeneratedHash() {
+        Host host = new Host("https://192.168.0.17:5000/hostA", TIME, 4);
+        assertTrue(host.checksumMatches(host.generateHash()));
+        assertFalse(host.checksumMatches(null));
+        assertFalse(host.checksumMatches("[YOU ARE NOT GETTING IT]"));
+        assertFalse(host.checksumMatches(reference(TIME, 5)));
+    }
+
+    //Straightforward implementation of the scheme, used as the expected value
+    private static String reference(String time, long nbPacket) {
+        return sha256Hex(sha256Hex(time) + nbPacket);
+    }
+
+    private static String sha256Hex(String value) {
+        try {
+            byte[] hash = java.security.MessageDigest.getInstance("SHA-256")
+                    .digest(value.getBytes(java.nio.charset.StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : hash) {
+                sb.append(Integer.toString((b & 0xff) + 0x100, 16).substring(1));
+            }
+            return sb.toString();
+        } catch (java.security.NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
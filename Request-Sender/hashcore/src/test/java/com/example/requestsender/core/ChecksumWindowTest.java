@@ -0,0 +1,72 @@
+package com.example.requestsender.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ChecksumWindowTest {
+    private static final String TIME = "23 mars 2023 02:03:32";
+
+    @Test
+    public void reserve_handsOutConsecutiveExchangesWithPrecomputedChecksums() {
+        Host host = new Host("https://192.168.0.17:5000/hostA", TIME, 2);
+        ChecksumWindow window = new ChecksumWindow(host, 3);
+        for (long expected = 2; expected < 14; expected += 2) {
+            ChecksumWindow.Slot slot = window.reserve();
+            assertEquals(expected, slot.getPacket());
+            assertEquals(host.generateHash(expected), slot.getRequestChecksum());
+        }
+        assertEquals(14, host.getNbPacket());
+    }
+
+    @Test
+    public void verifyResponse_acceptsOutOfOrderResponsesOnce() {
+        Host host = new Host("https://192.168.0.17:5000/hostA", TIME, 0);
+        host.enablePipelining(4);
+        ChecksumWindow window = host.getWindow();
+        long first = window.reserve().getPacket();
+        long second = window.reserve().getPacket();
+        long third = window.reserve().getPacket();
+
+        assertTrue(host.verifyResponse(third, host.generateHash(third + 1)));
+        assertEquals(third + 2, host.getNbVerified());
+        assertTrue(host.verifyResponse(first, host.generateHash(first + 1)));
+        assertEquals(third + 2, host.getNbVerified());
+        assertFalse(host.verifyResponse(first, host.generateHash(first + 1)));
+        assertFalse(host.verifyResponse(second, host.generateHash(second)));
+        assertTrue(host.verifyResponse(second, host.generateHash(second + 1)));
+        assertFalse(host.verifyResponse(second, null));
+    }
+
+    @Test
+    public void verifyResponse_decodesTheChecksumLikeTheSequentialMode() {
+        Host host = new Host("https://192.168.0.17:5000/hostA", TIME, 0);
+        host.setChecksumEncoding(ChecksumEncoding.BASE64URL_128);
+        host.enablePipelining(2);
+        long first = host.getWindow().reserve().getPacket();
+        long second = host.getWindow().reserve().getPacket();
+        String response = host.generateHash(second + 1);
+
+        assertFalse(host.verifyResponse(second, response.substring(1)));
+        assertFalse(host.verifyResponse(second, response + "A"));
+        assertFalse(host.verifyResponse(second, "!" + response.substring(1)));
+        assertTrue(host.verifyResponse(second, response));
+        assertEquals(1, host.getWindow().getPendingResponses());
+        assertTrue(host.verifyResponse(first, host.generateHash(first + 1)));
+    }
+
+    @Test
+    public void refill_forgetsTheWindowsBeforeThePreviousOne() {
+        Host host = new Host("https://192.168.0.17:5000/hostA", TIME, 0);
+        host.enablePipelining(2);
+        ChecksumWindow window = host.getWindow();
+        long first = window.reserve().getPacket();
+        window.reserve();
+        long previous = window.reserve().getPacket();
+        window.reserve();
+        window.reserve(); //Third window: the first one is forgotten
+        assertEquals(4, window.getPendingResponses());
+        assertFalse(host.verifyResponse(first, host.generateHash(first + 1)));
+        assertTrue(host.verifyResponse(previous, host.generateHash(previous + 1)));
+    }
+}
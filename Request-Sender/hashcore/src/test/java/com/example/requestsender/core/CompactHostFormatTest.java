@@ -0,0 +1,73 @@
+package com.example.requestsender.core;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CompactHostFormatTest {
+    private static byte[] write(int hosts, long packets) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (CompactHostFormat.Writer writer = new CompactHostFormat.Writer(bytes)) {
+            for (int i = 0; i < hosts; i++) {
+                writer.write(i, "https://192.168.0.17:5000/host" + i, "23 mars 2023 02:03:32", packets + i);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static List<String> read(byte[] bytes) throws IOException {
+        List<String> hosts = new ArrayList<>();
+        CompactHostFormat.read(new ByteArrayInputStream(bytes),
+                (id, address, time, packets) -> hosts.add(id + ";" + address + ";" + time + ";" + packets));
+        return hosts;
+    }
+
+    @Test
+    public void read_returnsTheHostsInTheirOrder() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (CompactHostFormat.Writer writer = new CompactHostFormat.Writer(bytes)) {
+            writer.write(7, "https://192.168.0.17:5000/hostB", "23 mars 2023 02:03:32", 4);
+            writer.write(3, "http://10.0.0.1/hostA", "23 mars 2023 02:03:42", -1);
+            writer.write(9, "no scheme", "", Long.MAX_VALUE);
+        }
+        assertEquals(Arrays.asList(
+                "7;https://192.168.0.17:5000/hostB;23 mars 2023 02:03:32;4",
+                "3;http://10.0.0.1/hostA;23 mars 2023 02:03:42;-1",
+                "9;no scheme;;" + Long.MAX_VALUE), read(bytes.toByteArray()));
+    }
+
+    @Test
+    public void sharedOrigins_areWrittenOnce() throws IOException {
+        byte[] bytes = write(100, 1000);
+        assertEquals(100, read(bytes).size());
+        //Fixed-width layout of the first snapshot: 4 + 8 + (2 + 32) + (2 + 21) bytes per host
+        assertTrue(bytes.length < 100 * 69 * 2 / 3);
+    }
+
+    @Test(expected = IOException.class)
+    public void corruptedRecord_isDetected() throws IOException {
+        byte[] bytes = write(3, 1000);
+        bytes[bytes.length / 2] ^= 0x10;
+        read(bytes);
+    }
+
+    @Test
+    public void truncatedFile_isDetected() throws IOException {
+        byte[] bytes = write(3, 1000);
+        for (int length = 0; length < bytes.length; length++) {
+            try {
+                read(Arrays.copyOf(bytes, length));
+                fail("A file of " + length + " bytes out of " + bytes.length + " was accepted");
+            } catch (IOException expected) {
+                //Every prefix of the file misses at least the END record
+            }
+        }
+    }
+}
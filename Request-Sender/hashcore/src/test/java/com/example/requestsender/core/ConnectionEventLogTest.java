@@ -0,0 +1,105 @@
+package com.example.requestsender.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ConnectionEventLogTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<ConnectionEvent> scan(File file, ConnectionEventReader.Filter filter) throws Exception {
+        List<ConnectionEvent> events = new ArrayList<>();
+        try (ConnectionEventReader reader = new ConnectionEventReader(file)) {
+            reader.scan(filter, events::add);
+        }
+        return events;
+    }
+
+    private static long host(int i) {
+        return HostRegistry.addressHash("https://10.0.0." + i + ":5000/hostA");
+    }
+
+    @Test
+    public void scan_returnsTheMatchingEventsInOrder() throws Exception {
+        File file = new File(folder.getRoot(), "connlog.bin");
+        try (ConnectionEventLog log = new ConnectionEventLog(file, 7, 60000)) {
+            for (int i = 0; i < 10000; i++) {
+                ConnectionOutcome outcome = i % 100 == 0 ? ConnectionOutcome.WRONG_CHECKSUM : ConnectionOutcome.VALIDATED;
+                log.append(new ConnectionEvent(1000L * i, host(i % 3), outcome, 2L * i));
+            }
+        }
+        assertEquals(ConnectionEventLog.HEADER_SIZE + 10000L * ConnectionEvent.SIZE, file.length());
+        assertEquals(10000, scan(file, new ConnectionEventReader.Filter()).size());
+
+        List<ConnectionEvent> wrong = scan(file, new ConnectionEventReader.Filter()
+                .host("HTTPS://10.0.0.0:5000/hostA/").outcomes(EnumSet.of(ConnectionOutcome.WRONG_CHECKSUM)));
+        assertEquals(34, wrong.size()); //i multiple of 300
+        assertEquals(300000L, wrong.get(1).getEpochMillis());
+        assertEquals(600L, wrong.get(1).getPackets());
+
+        List<ConnectionEvent> range = scan(file, new ConnectionEventReader.Filter().from(5000).to(8000));
+        assertEquals(3, range.size());
+        assertEquals(host(0), range.get(1).getAddressHash());
+        assertEquals(host(1), range.get(2).getAddressHash());
+    }
+
+    @Test
+    public void reopen_dropsTheTornRecordAndAppends() throws Exception {
+        File file = new File(folder.getRoot(), "connlog.bin");
+        try (ConnectionEventLog log = new ConnectionEventLog(file)) {
+            log.append(new ConnectionEvent(1, host(4), ConnectionOutcome.REJECTED, 6));
+            log.append(new ConnectionEvent(2, host(4), ConnectionOutcome.VALIDATED, 8));
+        }
+        try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+            raw.setLength(raw.length() - 5); //Killed while writing the second record
+        }
+        try (ConnectionEventLog log = new ConnectionEventLog(file)) {
+            log.append(new ConnectionEvent(3, host(5), ConnectionOutcome.NETWORK_ERROR, 8));
+        }
+        List<ConnectionEvent> events = scan(file, new ConnectionEventReader.Filter());
+        assertEquals(2, events.size());
+        assertEquals(ConnectionOutcome.REJECTED, events.get(0).getOutcome());
+        assertEquals(ConnectionOutcome.NETWORK_ERROR, events.get(1).getOutcome());
+        assertEquals(host(5), events.get(1).getAddressHash());
+    }
+
+    @Test
+    public void firstVersionLog_isRenamedAndANewLogStarted() throws Exception {
+        File file = new File(folder.getRoot(), "connlog.bin");
+        try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+            raw.writeInt(ConnectionEventLog.MAGIC);
+            raw.writeInt(1);
+            raw.write(new byte[21]); //One record holding a host id
+        }
+        try (ConnectionEventLog log = new ConnectionEventLog(file)) {
+            log.append(new ConnectionEvent(1, host(0), ConnectionOutcome.VALIDATED, 2));
+        }
+        assertEquals(8 + 21, new File(folder.getRoot(), "connlog.bin.v1").length());
+        List<ConnectionEvent> events = scan(file, new ConnectionEventReader.Filter());
+        assertEquals(1, events.size());
+        assertEquals(host(0), events.get(0).getAddressHash());
+    }
+
+    @Test
+    public void append_isWrittenWithinTheFlushInterval() throws Exception {
+        File file = new File(folder.getRoot(), "connlog.bin");
+        try (ConnectionEventLog log = new ConnectionEventLog(file, 64, 50)) {
+            log.append(new ConnectionEvent(1, host(0), ConnectionOutcome.VALIDATED, 2));
+            long deadline = System.currentTimeMillis() + 5000;
+            while (file.length() == ConnectionEventLog.HEADER_SIZE && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            //Written without any other append, flush() or close()
+            assertEquals(ConnectionEventLog.HEADER_SIZE + ConnectionEvent.SIZE, file.length());
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.requestsender.core;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class GroupCommitTest {
+    @Test
+    public void concurrentWrites_shareTheSyncs() throws Exception {
+        AtomicInteger syncs = new AtomicInteger();
+        GroupCommit commits = new GroupCommit("test-sync", 0, 20, () -> {
+            syncs.incrementAndGet();
+            try {
+                Thread.sleep(5); //A disk sync
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        int writers = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        Future<?>[] results = new Future<?>[writers];
+        for (int i = 0; i < writers; i++) {
+            results[i] = executor.submit(() -> {
+                for (int j = 0; j < 25; j++) {
+                    commits.await(commits.submit());
+                }
+                return null;
+            });
+        }
+        for (Future<?> result : results) {
+            result.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        assertEquals(0, commits.getPendingCount());
+        assertTrue(syncs.get() < writers * 25 / 2);
+        assertEquals(syncs.get(), commits.getSyncCount());
+        commits.close();
+    }
+
+    @Test
+    public void writes_areSyncedWithinTheBudget() throws Exception {
+        AtomicInteger syncs = new AtomicInteger();
+        GroupCommit commits = new GroupCommit("test-sync", 0, 10, syncs::incrementAndGet);
+        for (int i = 0; i < 3; i++) {
+            commits.submit();
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (commits.getPendingCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(0, commits.getPendingCount());
+        assertEquals(1, syncs.get());
+        commits.close();
+        assertEquals(1, syncs.get()); //Nothing left to sync
+    }
+
+    @Test
+    public void failedSync_isReported() {
+        GroupCommit commits = new GroupCommit("test-sync", 1, 0, () -> {
+            throw new IOException("disk full");
+        });
+        try {
+            commits.await(commits.submit());
+            fail("The failed sync was not reported");
+        } catch (IOException e) {
+            assertEquals("disk full", e.getMessage());
+        }
+        try {
+            commits.close();
+            fail("The failed sync was not reported");
+        } catch (IOException e) {
+            assertEquals("disk full", e.getMessage());
+        }
+    }
+
+    @Test
+    public void successfulSync_coversTheWritesOfAFailedOne() throws IOException {
+        AtomicInteger syncs = new AtomicInteger();
+        GroupCommit commits = new GroupCommit("test-sync", 1, 0, () -> {
+            if (syncs.incrementAndGet() == 1) {
+                throw new IOException("disk full");
+            }
+        });
+        long failed = commits.submit();
+        try {
+            commits.await(failed);
+            fail("The failed sync was not reported");
+        } catch (IOException e) {
+            assertEquals("disk full", e.getMessage());
+        }
+        commits.await(commits.submit()); //The next write is synced normally
+        commits.await(failed); //And its sync made the first write durable too
+        assertEquals(0, commits.getPendingCount());
+        assertEquals(1, commits.getSyncCount());
+        commits.close();
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.requestsender.core;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import static org.junit.Assert.*;
+
+public class HashChainTest {
+    private static final String TIME = "23 mars 2023 02:03:32";
+
+    @Test
+    public void checksums_areTheOnesOfTheEngine() {
+        byte[] timeDigest = ChecksumEngine.timeDigest(TIME);
+        HashChain chain = new HashChain(timeDigest);
+        long[] packets = {0, 1, 2, 9, 10, 99, 100, 123456789L, Long.MAX_VALUE, -1, Long.MIN_VALUE};
+        for (long packet : packets) {
+            assertEquals(ChecksumEngine.checksum(timeDigest, packet), chain.checksum(packet));
+            assertEquals(ChecksumEngine.checksum(timeDigest, packet), chain.compute(packet));
+        }
+        assertEquals("70b4660615d71e9c99e7a284bdb663c08d74e157e934b85d94e7e60e71fbbbef", chain.checksum(2));
+    }
+
+    @Test
+    public void latestChecksums_areMemoized() {
+        HashChain chain = new HashChain(ChecksumEngine.timeDigest(TIME));
+        String request = chain.checksum(40);
+        String response = chain.checksum(41);
+        assertSame(request, chain.checksum(40));
+        assertSame(response, chain.checksum(41));
+        chain.checksum(40 + HashChain.MEMO_SLOTS); //Same slot as packet 40
+        assertNotSame(request, chain.checksum(40));
+        assertEquals(request, chain.checksum(40));
+
+        assertTrue(chain.matches(41, response));
+        assertFalse(chain.matches(41, request));
+        assertFalse(chain.matches(41, null));
+        assertFalse(chain.matches(41, "[YOU ARE NOT GETTING IT]"));
+    }
+
+    @Test
+    public void hmacChecksums_areTheOnesOfTheStandardMac() throws Exception {
+        byte[] timeDigest = ChecksumEngine.timeDigest(TIME);
+        Mac derivation = Mac.getInstance("HmacSHA256");
+        derivation.init(new SecretKeySpec("RequestSender HMAC-SHA256 v1".getBytes(StandardCharsets.US_ASCII), "HmacSHA256"));
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(derivation.doFinal(timeDigest), "HmacSHA256"));
+
+        HashChain chain = new HashChain(timeDigest, ChecksumMode.HMAC_SHA256);
+        for (long packet : new long[]{0, 1, 2, 99, 123456789L, Long.MAX_VALUE, -1}) {
+            StringBuilder expected = new StringBuilder();
+            for (byte b : mac.doFinal(Long.toString(packet).getBytes(StandardCharsets.US_ASCII))) {
+                expected.append(String.format("%02x", b));
+            }
+            assertEquals(expected.toString(), chain.checksum(packet));
+            assertTrue(chain.matches(packet, expected.toString()));
+            assertNotEquals(ChecksumEngine.checksum(timeDigest, packet), chain.checksum(packet));
+        }
+    }
+
+    @Test
+    public void longHmacKeys_areHashedFirst() throws Exception {
+        byte[] key = new byte[100];
+        for (int i = 0; i < key.length; i++) {
+            key[i] = (byte) i;
+        }
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(key, "HmacSHA256"));
+        MessageDigest[] pads = ChecksumEngine.hmacPads(key);
+        byte[] expected = mac.doFinal("42".getBytes(StandardCharsets.US_ASCII));
+        StringBuilder hex = new StringBuilder();
+        for (byte b : expected) {
+            hex.append(String.format("%02x", b));
+        }
+        assertEquals(hex.toString(), ChecksumEngine.hmacChecksum(pads[0], pads[1], 42));
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.requestsender.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import static org.junit.Assert.*;
+
+public class HostJournalTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Host verifiedHost(String address, int exchanges) {
+        Host host = new Host(address, "23 mars 2023 02:03:32", 0);
+        for (int i = 0; i < exchanges; i++) {
+            long packet = host.beginExchange();
+            assertTrue(host.verifyResponse(packet, host.generateHash(packet + 1)));
+        }
+        return host;
+    }
+
+    @Test
+    public void load_replaysTheJournal() throws IOException {
+        File directory = folder.getRoot();
+        HostJournal journal = new HostJournal(directory);
+        assertTrue(journal.load().isEmpty());
+        Host hostA = verifiedHost("https://192.168.0.17:5000/hostA", 0);
+        Host hostB = verifiedHost("https://192.168.0.17:5000/hostB", 1);
+        journal.add(hostA);
+        journal.add(hostB);
+        for (int i = 0; i < 3; i++) {
+            long packet = hostA.beginExchange();
+            hostA.verifyResponse(packet, hostA.generateHash(packet + 1));
+            journal.update(hostA);
+        }
+
+        //Reopen without closing, as if the application had been killed
+        List<Host> loaded = new HostJournal(directory).load();
+        assertEquals(2, loaded.size());
+        assertEquals(hostA.getRemoteAddress(), loaded.get(0).getRemoteAddress());
+        assertEquals(6, loaded.get(0).getNbPacket());
+        assertEquals(2, loaded.get(1).getNbPacket());
+        assertEquals(hostB.getTime(), loaded.get(1).getTime());
+    }
+
+    @Test
+    public void load_ignoresATruncatedRecord() throws IOException {
+        File directory = folder.getRoot();
+        HostJournal journal = new HostJournal(directory);
+        journal.load();
+        Host host = verifiedHost("https://192.168.0.17:5000/hostA", 2);
+        journal.add(host);
+        long packet = host.beginExchange();
+        host.verifyResponse(packet, host.generateHash(packet + 1));
+        journal.update(host);
+
+        File journalFile = new File(directory, HostJournal.JOURNAL_FILE);
+        try (RandomAccessFile file = new RandomAccessFile(journalFile, "rw")) {
+            file.setLength(file.length() - 3);
+        }
+        List<Host> loaded = new HostJournal(directory).load();
+        assertEquals(1, loaded.size());
+        assertEquals(4, loaded.get(0).getNbPacket());
+    }
+
+    @Test
+    public void compact_keepsTheHostsAndEmptiesTheJournal() throws IOException {
+        File directory = folder.getRoot();
+        HostJournal journal = new HostJournal(directory, 2);
+        journal.load();
+        Host host = verifiedHost("https://192.168.0.17:5000/hostA", 0);
+        journal.add(host);
+        for (int i = 0; i < 5; i++) {
+            long packet = host.beginExchange();
+            host.verifyResponse(packet, host.generateHash(packet + 1));
+            journal.update(host);
+        }
+        journal.close();
+        assertTrue(new File(directory, HostJournal.SNAPSHOT_FILE).exists());
+
+        HostJournal reopened = new HostJournal(directory);
+        List<Host> loaded = reopened.load();
+        assertEquals(1, loaded.size());
+        assertEquals(10, loaded.get(0).getNbPacket());
+        assertEquals(0, loaded.get(0).getId());
+
+        reopened.purge();
+        assertTrue(new HostJournal(directory).load().isEmpty());
+    }
+
+    @Test
+    public void firstSnapshotFormat_isStillRead() throws IOException {
+        File directory = folder.getRoot();
+        CheckedOutputStream checked = new CheckedOutputStream(
+                new FileOutputStream(new File(directory, HostJournal.SNAPSHOT_FILE)), new CRC32());
+        try (DataOutputStream snapshot = new DataOutputStream(checked)) {
+            snapshot.writeInt(0x48534E50); //"HSNP"
+            snapshot.writeInt(1);
+            snapshot.writeInt(1);
+            snapshot.writeInt(5);
+            snapshot.writeLong(6);
+            snapshot.writeUTF("https://192.168.0.17:5000/hostA");
+            snapshot.writeUTF("23 mars 2023 02:03:32");
+            snapshot.flush();
+            snapshot.writeInt((int) checked.getChecksum().getValue());
+        }
+        HostJournal journal = new HostJournal(directory);
+        assertEquals(6, journal.load().get(0).getNbPacket());
+        journal.compact();
+
+        List<Host> loaded = new HostJournal(directory).load();
+        assertEquals(5, loaded.get(0).getId());
+        assertEquals("23 mars 2023 02:03:32", loaded.get(0).getTime());
+    }
+
+    @Test
+    public void update_ignoresAPurgedHost() throws IOException {
+        File directory = folder.getRoot();
+        HostJournal journal = new HostJournal(directory);
+        journal.load();
+        Host purged = verifiedHost("https://192.168.0.17:5000/hostA", 5);
+        journal.add(purged);
+        journal.purge();
+
+        journal.update(purged); //Verdict of a request sent before the purge
+        journal.close();
+        assertTrue(new HostJournal(directory).load().isEmpty());
+    }
+
+    @Test
+    public void purgeRecord_forgetsTheSnapshotAndTheJournal() throws IOException {
+        File directory = folder.newFolder("journal");
+        HostJournal journal = new HostJournal(directory);
+        journal.load();
+        journal.add(verifiedHost("https://192.168.0.17:5000/hostA", 2));
+        journal.compact();
+        journal.add(verifiedHost("https://192.168.0.17:5000/hostB", 1));
+        byte[] snapshot = Files.readAllBytes(new File(directory, HostJournal.SNAPSHOT_FILE).toPath());
+        byte[] records = Files.readAllBytes(new File(directory, HostJournal.JOURNAL_FILE).toPath());
+        journal.purge();
+        journal.close();
+        assertTrue(new HostJournal(directory).load().isEmpty());
+
+        //Application stopped by purge() once the PURGE record was forced, before the files were cleared
+        ByteBuffer purge = ByteBuffer.allocate(17);
+        purge.put((byte) 3).putInt(-1).putLong(0);
+        CRC32 crc = new CRC32();
+        crc.update(purge.array(), 0, 13);
+        purge.putInt((int) crc.getValue());
+        File interrupted = folder.newFolder("interrupted");
+        Files.write(new File(interrupted, HostJournal.SNAPSHOT_FILE).toPath(), snapshot);
+        try (FileOutputStream journalFile = new FileOutputStream(new File(interrupted, HostJournal.JOURNAL_FILE))) {
+            journalFile.write(records);
+            journalFile.write(purge.array());
+        }
+        HostJournal reopened = new HostJournal(interrupted);
+        assertTrue(reopened.load().isEmpty());
+        Host added = verifiedHost("https://192.168.0.17:5000/hostC", 0);
+        reopened.add(added);
+        assertEquals(0, added.getId());
+        reopened.close();
+        assertEquals(1, new HostJournal(interrupted).load().size());
+    }
+}
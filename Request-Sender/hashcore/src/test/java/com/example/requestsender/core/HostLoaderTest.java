@@ -0,0 +1,81 @@
+package com.example.requestsender.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class HostLoaderTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void legacyFile_isImportedOnce() throws Exception {
+        File directory = folder.newFolder();
+        File legacy = new File(directory, "hosts.txt");
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(legacy), StandardCharsets.UTF_8)) {
+            out.write("https://192.168.0.17:5000/hostB;23 mars 2023 02:03:32;2\r"
+                    + "https://192.168.0.17:5000/hostA;23 mars 2023 02:03:42;6\r"
+                    + "https://192.168.0.17:5000/hostA/;23 mars 2023 02:03:52;8\r");
+        }
+        HostRegistry registry = new HostRegistry();
+        try (MappedHostTable store = new MappedHostTable(directory)) {
+            HostLoader.Result result = HostLoader.load(store, legacy, registry);
+            assertEquals(0, result.getLoaded());
+            assertEquals(2, result.getImported());
+            assertTrue(result.isLegacyRenamed());
+            assertTrue(result.getElapsedNanos() > 0);
+        }
+        assertFalse(legacy.exists());
+        assertTrue(new File(directory, "hosts.txt" + HostLoader.IMPORTED_SUFFIX).exists());
+        assertEquals(4, registry.get("https://192.168.0.17:5000/hostA").getNbPacket());
+
+        HostRegistry reloaded = new HostRegistry();
+        try (MappedHostTable store = new MappedHostTable(directory)) {
+            HostLoader.Result result = HostLoader.load(store, legacy, reloaded);
+            assertEquals(2, result.getLoaded());
+            assertEquals(0, result.getImported());
+            assertEquals("2 hosts loaded in", result.toString().substring(0, 17));
+        }
+        Host hostA = reloaded.get("https://192.168.0.17:5000/hostA");
+        assertEquals(4, hostA.getNbPacket());
+        assertEquals(registry.get("https://192.168.0.17:5000/hostA").generateHash(4), hostA.generateHash(4));
+    }
+
+    @Test
+    public void legacyFile_becomesTheSnapshotOfANewJournal() throws Exception {
+        File directory = folder.newFolder();
+        File legacy = new File(directory, "hosts.txt");
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(legacy), StandardCharsets.UTF_8)) {
+            out.write("https://192.168.0.17:5000/hostB;23 mars 2023 02:03:32;2\r"
+                    + "https://192.168.0.17:5000/hostA;23 mars 2023 02:03:42;6\r"
+                    + "https://192.168.0.17:5000/hostA/;23 mars 2023 02:03:52;8\r");
+        }
+        HostRegistry registry = new HostRegistry();
+        try (HostJournal store = new HostJournal(directory)) {
+            HostLoader.Result result = HostLoader.load(store, legacy, registry);
+            assertEquals(0, result.getLoaded());
+            assertEquals(2, result.getImported());
+            assertTrue(result.isLegacyRenamed());
+            assertTrue(store.getSnapshotFile().exists());
+        }
+        assertFalse(legacy.exists());
+        assertEquals(2, registry.size());
+        assertEquals(4, registry.get("https://192.168.0.17:5000/hostA").getNbPacket());
+
+        HostRegistry reloaded = new HostRegistry();
+        try (HostJournal store = new HostJournal(directory)) {
+            HostLoader.Result result = HostLoader.load(store, legacy, reloaded);
+            assertEquals(2, result.getLoaded());
+            assertEquals(0, result.getImported());
+        }
+        assertEquals(4, reloaded.get("https://192.168.0.17:5000/hostA").getNbPacket());
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.requestsender.core;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class HostRegistryTest {
+    @Test
+    public void normalize_keepsOriginAndPath() {
+        assertEquals("https://192.168.0.17:5000/hostA", HostRegistry.normalize(" HTTPS://192.168.0.17:5000/hostA/?x=1#top "));
+        assertEquals("https://example.com/hostA", HostRegistry.normalize("https://Example.com:443/hostA"));
+        assertEquals("192.168.0.5", HostRegistry.normalize("192.168.0.5"));
+    }
+
+    @Test
+    public void getOrCreate_returnsTheSameHostForEquivalentAddresses() {
+        HostRegistry registry = new HostRegistry();
+        AtomicInteger created = new AtomicInteger();
+        Host first = registry.getOrCreate("https://192.168.0.17:5000/hostA", host -> created.incrementAndGet());
+        Host second = registry.getOrCreate("https://192.168.0.17:5000/hostA/", host -> created.incrementAndGet());
+        assertSame(first, second);
+        assertEquals(1, created.get());
+        assertEquals(1, registry.size());
+    }
+
+    @Test
+    public void getOrCreate_createsOneHostUnderContention() throws Exception {
+        HostRegistry registry = new HostRegistry();
+        AtomicInteger created = new AtomicInteger();
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        Future<?>[] results = new Future<?>[threads];
+        for (int i = 0; i < threads; i++) {
+            results[i] = executor.submit(() -> {
+                start.await();
+                return registry.getOrCreate("https://192.168.0.17:5000/hostB", host -> created.incrementAndGet());
+            });
+        }
+        start.countDown();
+        Object host = results[0].get();
+        for (Future<?> result : results) {
+            assertSame(host, result.get());
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(1, created.get());
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.requestsender.core;
+
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class HostTest {
+    private static final String TIME = "23 mars 2023 02:03:32";
+
+    @Test
+    public void generateHeaders_sendsTheTimeOnlyForTheFirstExchange() {
+        Host host = new Host("https://192.168.0.17:5000/hostA", TIME, 0);
+        Map<String, String> first = host.generateHeaders(host.beginExchange());
+        Map<String, String> second = host.generateHeaders(host.beginExchange());
+        assertEquals(TIME, first.get("X-Time-Sent"));
+        assertEquals(host.generateHash(0), first.get("X-CheckSum"));
+        assertEquals("[YOU HAVE TO KNOW]", second.get("X-Time-Sent"));
+        assertEquals(host.generateHash(2), second.get("X-CheckSum"));
+    }
+
+    @Test
+    public void verifyResponse_expectsTheNextPacketNumber() {
+        Host host = new Host("https://192.168.0.17:5000/hostA", TIME, 4);
+        long packet = host.beginExchange();
+        assertEquals(4, packet);
+        assertEquals(6, host.getNbPacket());
+        assertFalse(host.verifyResponse(packet, host.generateHash(4)));
+        assertEquals(4, host.getNbVerified());
+        assertTrue(host.verifyResponse(packet, host.generateHash(5)));
+        assertEquals(6, host.getNbVerified());
+    }
+
+    @Test
+    public void beginExchange_neverGivesTheSameNumberTwice() throws Exception {
+        Host host = new Host("https://192.168.0.17:5000/hostA", TIME, 0);
+        int threads = 8;
+        int exchanges = 10000;
+        Set<Long> packets = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int i = 0; i < threads; i++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int j = 0; j < exchanges; j++) {
+                    packets.add(host.beginExchange());
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        assertEquals(threads * exchanges, packets.size());
+        assertEquals(2L * threads * exchanges, host.getNbPacket());
+    }
+
+    @Test
+    public void acceptRequest_consumesTheExpectedPacketOnce() {
+        Host client = new Host("https://192.168.0.17:5000/hostA", TIME, 0);
+        Host server = new Host("192.168.0.20", TIME, 0);
+        long packet = client.beginExchange();
+        String checksum = client.generateHash(packet);
+        assertEquals(1, server.acceptRequest(checksum));
+        assertEquals(-1, server.acceptRequest(checksum)); //Replayed request
+        assertTrue(client.verifyResponse(packet, server.generateHash(1)));
+        assertEquals(-1, server.acceptRequest(null));
+        assertEquals(3, server.acceptRequest(client.generateHash(client.beginExchange())));
+        assertEquals(4, server.getNbVerified());
+    }
+
+    @Test
+    public void batch_consumesConsecutiveExchangesAtOnce() {
+        Host client = new Host("https://192.168.0.17:5000/hostA", TIME, 0);
+        Host server = new Host("192.168.0.20", TIME, 0);
+        long first = client.beginExchanges(3);
+        Map<String, String> headers = client.generateBatchHeaders(first, 3);
+        assertEquals(TIME, headers.get("X-Time-Sent"));
+        assertEquals("3", headers.get("X-Batch-Size"));
+        String[] checksums = headers.get("X-CheckSum").split(Host.BATCH_SEPARATOR);
+        assertEquals(client.generateHash(4), checksums[2]);
+
+        String[] wrongOrder = {checksums[1], checksums[0], checksums[2]};
+        assertEquals(-1, server.acceptRequests(wrongOrder));
+        assertEquals(0, server.getNbPacket());
+        assertEquals(1, server.acceptRequests(checksums));
+        assertEquals(6, server.getNbPacket());
+
+        String response = server.generateHash(1) + "," + server.generateHash(3) + "," + server.generateHash(5);
+        assertFalse(client.verifyBatchResponse(first, 2, response));
+        assertFalse(client.verifyBatchResponse(first, 3, server.generateHash(1)));
+        assertTrue(client.verifyBatchResponse(first, 3, response));
+        assertEquals(6, client.getNbVerified());
+        assertEquals(7, server.acceptRequest(client.generateHash(client.beginExchange())));
+    }
+
+    @Test
+    public void resync_acceptsAClientAheadWithinTheWindow() {
+        Host client = new Host("https://192.168.0.17:5000/hostA", TIME, 0);
+        Host server = new Host("192.168.0.20", TIME, 0);
+        assertEquals(1, server.acceptRequests(new String[]{client.generateHash(client.beginExchange())}, 4));
+        client.beginExchanges(3); //Three requests lost before reaching the server
+        long packet = client.beginExchange();
+        assertEquals(-1, server.acceptRequest(client.generateHash(packet)));
+        assertEquals(packet + 1, server.acceptRequests(new String[]{client.generateHash(packet)}, 4));
+        assertEquals(packet + 2, server.getNbPacket());
+        //Skipped and replayed numbers are never accepted again
+        assertEquals(-1, server.acceptRequests(new String[]{client.generateHash(4)}, 4));
+        assertEquals(-1, server.acceptRequests(new String[]{client.generateHash(packet)}, 4));
+
+        long tooFar = client.beginExchanges(5) + 10;
+        assertEquals(-1, server.acceptRequests(new String[]{client.generateHash(tooFar)}, 4));
+    }
+
+    @Test
+    public void resync_catchesUpWithAServerAhead() {
+        Host server = new Host("192.168.0.20", TIME, 0);
+        Host client = new Host("https://192.168.0.17:5000/hostA", TIME, 0);
+        assertNull(server.resyncProof());
+        for (int i = 0; i < 3; i++) { //The responses are lost, or the client restarts from an older state
+            assertTrue(server.acceptRequest(server.generateHash(server.getNbPacket())) >= 0);
+        }
+        long packet = client.beginExchange();
+        assertEquals(-1, server.acceptRequests(new String[]{client.generateHash(packet)}, 4));
+        String proof = server.resyncProof();
+        assertEquals(server.generateHash(5), proof);
+
+        assertEquals(-1, client.resynchronize(proof, 1)); //Beyond a window of one exchange
+        assertEquals(-1, client.resynchronize(client.generateHash(4), 4)); //Request checksums are not proofs
+        assertEquals(6, client.resynchronize(proof, 4));
+        assertEquals(6, client.getNbVerified());
+        assertEquals(-1, client.resynchronize(proof, 4)); //Never goes back, nor twice
+        assertEquals(7, server.acceptRequest(client.generateHash(client.beginExchange())));
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.requestsender.core;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class HostsFileCodecTest {
+    private static final String HOSTS =
+            "https://192.168.0.17:5000/hostB;23 mars 2023 02:03:32;2\r" +
+            "https://192.168.0.17:5000/hostA;23 mars 2023 02:03:42;6\r";
+
+    @Test
+    public void scan_removesPacketOffset() throws IOException {
+        List<String> records = new ArrayList<>();
+        assertEquals(2, HostsFileCodec.scan(new StringReader(HOSTS),
+                (address, time, nbPacket) -> records.add(address + "|" + time + "|" + nbPacket)));
+        assertEquals(Arrays.asList(
+                "https://192.168.0.17:5000/hostB|23 mars 2023 02:03:32|0",
+                "https://192.168.0.17:5000/hostA|23 mars 2023 02:03:42|4"), records);
+    }
+
+    @Test
+    public void encode_isReadBackByScan() throws IOException {
+        Host host = new Host("https://192.168.0.17:5000/hostA", "23 mars 2023 02:03:42", 4);
+        String line = host.toStringForLog();
+        assertEquals("https://192.168.0.17:5000/hostA;23 mars 2023 02:03:42;6\r", line);
+        long[] nbPacket = {-1};
+        HostsFileCodec.scan(new StringReader(line), (address, time, packets) -> nbPacket[0] = packets);
+        assertEquals(4L, nbPacket[0]);
+    }
+
+    @Test
+    public void scan_acceptsEverySeparatorAndSkipsBrokenRecords() throws IOException {
+        StringBuilder longAddress = new StringBuilder("https://192.168.0.17:5000/");
+        for (int i = 0; i < 600; i++) {
+            longAddress.append('x');
+        }
+        String content = "a;t1;2\r\nb;t2;12\n\nbroken;line\rc;t3;NaN\rd;t4;\r" + longAddress + ";t5;7;extra\re;t6;-3";
+        List<String> records = new ArrayList<>();
+        int visited = HostsFileCodec.scan(new StringReader(content),
+                (address, time, nbPacket) -> records.add(address + "|" + time + "|" + nbPacket));
+        assertEquals(4, visited);
+        assertEquals(Arrays.asList("a|t1|0", "b|t2|10", longAddress + "|t5|5", "e|t6|-5"), records);
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.requestsender.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+    @Test
+    public void buckets_coverEveryValueInOrder() {
+        long previous = -1;
+        for (int i = 0; i < LatencyHistogram.BUCKETS; i++) {
+            long upper = LatencyHistogram.getBucketUpperBound(i);
+            assertTrue(upper > previous);
+            assertEquals(i, LatencyHistogram.index(upper));
+            assertEquals(i, LatencyHistogram.index(previous + 1));
+            previous = upper;
+        }
+        assertEquals(Long.MAX_VALUE, previous);
+    }
+
+    @Test
+    public void percentile_isWithinThePrecisionOfTheBuckets() {
+        LatencyHistogram first = new LatencyHistogram();
+        LatencyHistogram second = new LatencyHistogram();
+        for (long v = 1; v <= 100000; v++) {
+            (v % 2 == 0 ? first : second).record(v * 1000);
+        }
+        first.add(second);
+        assertEquals(100000, first.getCount());
+        assertEquals(100000000L, first.getMax());
+        assertEquals(50000500.0, first.getMean(), 0.001);
+        assertEquals(50000000, first.percentile(50), 50000000 * 0.035);
+        assertEquals(99000000, first.percentile(99), 99000000 * 0.035);
+        assertEquals(99900000, first.percentile(99.9), 99900000 * 0.035);
+        assertEquals(0, new LatencyHistogram().percentile(99));
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.requestsender.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LegacyHostsMigratorTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void migratedFile_isLoadedByTheJournal() throws IOException {
+        File legacy = folder.newFile("hosts.txt");
+        Files.write(legacy.toPath(), (
+                "https://192.168.0.17:5000/hostB;23 mars 2023 02:03:32;2\r" +
+                "https://192.168.0.17:5000/hostA;23 mars 2023 02:03:42;6\r" +
+                "broken record\r" +
+                "HTTPS://192.168.0.17:5000/hostB;23 mars 2023 02:04:00;8\r").getBytes(StandardCharsets.UTF_8));
+        File directory = folder.newFolder("journal");
+
+        assertEquals(2, LegacyHostsMigrator.migrate(legacy, new File(directory, HostJournal.SNAPSHOT_FILE)));
+        assertFalse(new File(directory, HostJournal.SNAPSHOT_FILE + ".tmp").exists());
+
+        List<Host> loaded = new HostJournal(directory).load();
+        assertEquals(2, loaded.size());
+        assertEquals("https://192.168.0.17:5000/hostB", loaded.get(0).getRemoteAddress());
+        assertEquals(0, loaded.get(0).getNbPacket());
+        assertEquals("23 mars 2023 02:03:42", loaded.get(1).getTime());
+        assertEquals(4, loaded.get(1).getNbPacket());
+        assertEquals(1, loaded.get(1).getId());
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.requestsender.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MappedHostTableTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void update_isReadBackAfterReopening() throws IOException {
+        File directory = folder.getRoot();
+        MappedHostTable table = new MappedHostTable(directory, 1, 0);
+        assertTrue(table.load().isEmpty());
+        Host host = new Host("https://192.168.0.17:5000/hostA", "23 mars 2023 02:03:32", 0);
+        table.add(host);
+        assertEquals(0, host.getId());
+        long packet = host.beginExchange();
+        assertTrue(host.verifyResponse(packet, host.generateHash(packet + 1)));
+        table.update(host);
+        table.close();
+
+        List<Host> loaded = new MappedHostTable(directory).load();
+        assertEquals(1, loaded.size());
+        Host reloaded = loaded.get(0);
+        assertEquals(host.getRemoteAddress(), reloaded.getRemoteAddress());
+        assertEquals(host.getTime(), reloaded.getTime());
+        assertEquals(2, reloaded.getNbPacket());
+        assertEquals(host.generateHash(2), reloaded.generateHash(2));
+    }
+
+    @Test
+    public void add_growsTheTable() throws IOException {
+        File directory = folder.getRoot();
+        MappedHostTable table = new MappedHostTable(directory);
+        table.load();
+        for (int i = 0; i < 200; i++) {
+            table.add(new Host("https://10.0.0." + i + ":5000/hostA", "23 mars 2023 02:03:32", 2 * i));
+        }
+        table.close();
+
+        MappedHostTable reopened = new MappedHostTable(directory);
+        List<Host> loaded = reopened.load();
+        assertEquals(200, loaded.size());
+        assertEquals(398, loaded.get(199).getNbPacket());
+        assertEquals(199, loaded.get(199).getId());
+
+        reopened.purge();
+        reopened.close();
+        assertTrue(new MappedHostTable(directory).load().isEmpty());
+    }
+
+    @Test
+    public void update_ignoresAPurgedHost() throws IOException {
+        File directory = folder.getRoot();
+        MappedHostTable table = new MappedHostTable(directory);
+        table.load();
+        Host purged = new Host("https://192.168.0.17:5000/hostA", "23 mars 2023 02:03:32", 10);
+        table.add(purged);
+        table.purge();
+        Host recreated = new Host("https://192.168.0.17:5000/hostA", "24 mars 2023 08:00:00", 0);
+        table.add(recreated);
+        assertEquals(purged.getId(), recreated.getId()); //The slot of the purged host is reused
+
+        table.update(purged); //Verdict of a request sent before the purge
+        table.close();
+        List<Host> loaded = new MappedHostTable(directory).load();
+        assertEquals(1, loaded.size());
+        assertEquals("24 mars 2023 08:00:00", loaded.get(0).getTime());
+        assertEquals(0, loaded.get(0).getNbPacket());
+    }
+
+    @Test
+    public void load_rejectsASlotWhoseAddressDoesNotMatchItsHash() throws IOException {
+        File directory = folder.getRoot();
+        MappedHostTable table = new MappedHostTable(directory);
+        table.load();
+        table.add(new Host("https://192.168.0.17:5000/hostA", "23 mars 2023 02:03:32", 0));
+        try {
+            table.load();
+            fail("The table was loaded twice");
+        } catch (IOException e) {
+            assertEquals("The host table is already loaded", e.getMessage());
+        }
+        table.close();
+
+        try (RandomAccessFile file = new RandomAccessFile(new File(directory, MappedHostTable.TABLE_FILE), "rw")) {
+            file.seek(64 + 92 + 30); //Last letter of the address of the first slot
+            file.write('B');
+        }
+        try {
+            new MappedHostTable(directory).load();
+            fail("The damaged slot was loaded");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().startsWith("Corrupted slot 0"));
+        }
+    }
+}
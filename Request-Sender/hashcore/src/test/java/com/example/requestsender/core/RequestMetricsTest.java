@@ -0,0 +1,60 @@
+package com.example.requestsender.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RequestMetricsTest {
+    private static final String HOST = "https://192.168.0.17:5000/hostA";
+
+    private static RequestMetrics sample() {
+        RequestMetrics metrics = new RequestMetrics();
+        for (int i = 1; i <= 100; i++) {
+            metrics.record(RequestMetrics.Stage.NETWORK, i * 1_000_000L);
+        }
+        metrics.record(RequestMetrics.Stage.HEADERS, 20_000);
+        metrics.recordOutcome(HOST, ConnectionOutcome.VALIDATED);
+        metrics.recordOutcome(HOST, ConnectionOutcome.VALIDATED);
+        metrics.recordOutcome("https://evil\"host", ConnectionOutcome.WRONG_CHECKSUM);
+        return metrics;
+    }
+
+    @Test
+    public void snapshot_isACopyOfTheCurrentValues() {
+        RequestMetrics metrics = sample();
+        MetricsSnapshot snapshot = metrics.snapshot();
+        metrics.record(RequestMetrics.Stage.NETWORK, 1);
+        metrics.recordOutcome(HOST, ConnectionOutcome.REJECTED);
+        assertEquals(100, snapshot.getStage(RequestMetrics.Stage.NETWORK).getCount());
+        assertEquals(100_000_000L, snapshot.getStage(RequestMetrics.Stage.NETWORK).getMax());
+        assertEquals(0, snapshot.getStage(RequestMetrics.Stage.PERSISTENCE).getCount());
+        assertEquals(2, snapshot.getOutcomeCount(HOST, ConnectionOutcome.VALIDATED));
+        assertEquals(0, snapshot.getOutcomeCount(HOST, ConnectionOutcome.REJECTED));
+        assertEquals(0, snapshot.getOutcomeCount("unknown", ConnectionOutcome.VALIDATED));
+        assertEquals(1, metrics.snapshot().getOutcomeCount(HOST, ConnectionOutcome.REJECTED));
+    }
+
+    @Test
+    public void prometheusExporter_writesSummariesAndCounters() throws Exception {
+        StringBuilder out = new StringBuilder();
+        new PrometheusExporter().export(sample().snapshot(), out);
+        String text = out.toString();
+        assertTrue(text.contains("# TYPE requestsender_network_rtt_seconds summary\n"));
+        assertTrue(text.contains("requestsender_network_rtt_seconds_count 100\n"));
+        assertTrue(text.contains("requestsender_network_rtt_seconds_sum 5.050000000\n"));
+        assertTrue(text.contains("requestsender_header_generation_seconds{quantile=\"0.5\"} 0.000020000\n"));
+        assertTrue(text.contains("requestsender_outcomes_total{host=\"" + HOST + "\",outcome=\"validated\"} 2\n"));
+        assertTrue(text.contains("requestsender_outcomes_total{host=\"https://evil\\\"host\",outcome=\"wrong_checksum\"} 1\n"));
+    }
+
+    @Test
+    public void jsonExporter_writesOneObject() throws Exception {
+        StringBuilder out = new StringBuilder();
+        new JsonExporter().export(sample().snapshot(), out);
+        String json = out.toString();
+        assertTrue(json.startsWith("{\"timestamp\":"));
+        assertTrue(json.contains("\"network_rtt\":{\"count\":100,\"mean_ms\":50.500000,"));
+        assertTrue(json.contains("\"https://evil\\\"host\":{\"validated\":0,\"rejected\":0,\"wrong_checksum\":1,\"network_error\":0}"));
+        assertTrue(json.endsWith("}}"));
+    }
+}
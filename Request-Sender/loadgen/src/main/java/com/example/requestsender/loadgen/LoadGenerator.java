@@ -0,0 +1,213 @@
+package com.example.requestsender.loadgen;
+
+import com.example.requestsender.core.Host;
+import com.example.requestsender.core.LatencyHistogram;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+/* CLASS: LoadGenerator
+ * ATTRIBUTES:
+ *      - String baseUrl: address of the server (e.g. http://127.0.0.1:5000)
+ *      - String[] routes: routes the clients are spread on ("/hostA", "/hostB")
+ *      - int clients: number of simulated clients
+ *      - int requestsPerClient: requests sent by each client (0: until the end of the duration)
+ *      - long durationMillis: maximum duration of the run
+ *      - long thinkMillis: pause of each client between two requests
+ *      - int batchSize: operations packed in each request (1: one request per operation)
+ *
+ * AIM: Drive a verification server with many independent Request-Sender clients to measure its
+ *      capacity: throughput, latency percentiles and rate of chain desyncs.
+ *
+ * PROCESS:
+ *      1. Every client gets its own Host (and so its own hash chain, from its own first request time)
+ *         and its own X-Client-Id, so that the server keeps one state per client even though they all
+ *         share the same IP address
+ *      2. Every client runs on its own thread, like a device would, and sends its requests one after
+ *         the other exactly as the app does: beginExchange(), generateHeaders(), then verifyResponse()
+ *         with the checksum of the response
+ *         (or beginExchanges(), generateBatchHeaders() and verifyBatchResponse() in batch mode, where
+ *         the outcome of a request counts for each of its operations). After a wrong checksum, the
+ *         client resynchronizes with the server chain when the denial allows it (see Host)
+ *      3. Each client records its latencies in its own histogram, merged in the report at the end, so
+ *         that the threads do not contend on shared counters for every request
+ */
+public class LoadGenerator {
+    private final String baseUrl;
+    private final String[] routes;
+    private final int clients;
+    private final int requestsPerClient;
+    private final long durationMillis;
+    private final long thinkMillis;
+    private final int batchSize;
+
+    public LoadGenerator(String baseUrl, String[] routes, int clients, int requestsPerClient,
+                         long durationMillis, long thinkMillis) {
+        this(baseUrl, routes, clients, requestsPerClient, durationMillis, thinkMillis, 1);
+    }
+
+    public LoadGenerator(String baseUrl, String[] routes, int clients, int requestsPerClient,
+                         long durationMillis, long thinkMillis, int batchSize) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.routes = routes;
+        this.clients = clients;
+        this.requestsPerClient = requestsPerClient;
+        this.durationMillis = durationMillis;
+        this.thinkMillis = thinkMillis;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /* FUNCTION: run()
+     * RETURNS: LoadReport
+     *
+     * AIM: Start every client at the same time, wait for the end of the run and return its results
+     */
+    public LoadReport run() throws InterruptedException {
+        //The JDK only keeps 5 idle connections per server by default: each client keeps its own alive
+        if (System.getProperty("http.maxConnections") == null) {
+            System.setProperty("http.maxConnections", String.valueOf(Math.max(5, clients)));
+        }
+        LoadReport report = new LoadReport();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>(clients);
+        long deadline = System.nanoTime() + durationMillis * 1_000_000L;
+        for (int i = 0; i < clients; i++) {
+            String route = routes[i % routes.length];
+            SimulatedClient client = new SimulatedClient("loadgen-" + i, baseUrl + route, report, start, deadline);
+            Thread thread = new Thread(client, "client-" + i);
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        report.setElapsedNanos(System.nanoTime() - begin);
+        return report;
+    }
+
+    /* CLASS: SimulatedClient implements Runnable
+     * AIM: One simulated device, sending its requests to one route (steps 1 to 3 above)
+     */
+    private final class SimulatedClient implements Runnable {
+        private final String id;
+        private final URL url;
+        private final Host host;
+        private final LoadReport report;
+        private final CountDownLatch start;
+        private final long deadline;
+        private final LatencyHistogram latencies = new LatencyHistogram();
+        private final byte[] buffer = new byte[1024];
+
+        SimulatedClient(String id, String url, LoadReport report, CountDownLatch start, long deadline) {
+            this.id = id;
+            this.report = report;
+            this.start = start;
+            this.deadline = deadline;
+            try {
+                this.url = new URL(url);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Invalid server address: " + url, e);
+            }
+            this.host = new Host(url, id + " " + System.currentTimeMillis(), 0); //STEP 1
+        }
+
+        @Override
+        public void run() {
+            try {
+                start.await();
+                for (int sent = 0; (requestsPerClient == 0 || sent < requestsPerClient) && System.nanoTime() < deadline; sent++) {
+                    exchange(); //STEP 2
+                    if (thinkMillis > 0) {
+                        Thread.sleep(thinkMillis);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                report.getLatencies().add(latencies); //STEP 3
+            }
+        }
+
+        private void exchange() {
+            long packet = batchSize > 1 ? host.beginExchanges(batchSize) : host.beginExchange();
+            Map<String, String> headers = batchSize > 1 ? host.generateBatchHeaders(packet, batchSize) : host.generateHeaders(packet);
+            long begin = System.nanoTime();
+            try {
+                HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+                connection.setRequestProperty("X-Client-Id", id);
+                for (Map.Entry<String, String> header : headers.entrySet()) {
+                    connection.setRequestProperty(header.getKey(), header.getValue());
+                }
+                String checksum = connection.getHeaderField("X-CheckSum");
+                String resyncProof = connection.getHeaderField(Host.RESYNC_HEADER);
+                String body = readBody(connection);
+                latencies.record(System.nanoTime() - begin);
+                boolean verified = batchSize > 1 ? host.verifyBatchResponse(packet, batchSize, checksum)
+                        : host.verifyResponse(packet, checksum);
+                if (!verified) {
+                    report.desyncs.addAndGet(batchSize);
+                    if (host.resynchronize(resyncProof, Host.DEFAULT_RESYNC_WINDOW) >= 0) {
+                        report.resyncs.incrementAndGet();
+                    }
+                }
+                else if (body.contains("GRANTED")) {
+                    report.granted.addAndGet(batchSize);
+                }
+                else {
+                    report.rejected.addAndGet(batchSize);
+                }
+            } catch (IOException e) {
+                report.errors.incrementAndGet();
+            }
+        }
+
+        //Read the whole body, so that the connection can be reused by the next request
+        private String readBody(HttpURLConnection connection) throws IOException {
+            StringBuilder body = new StringBuilder();
+            try (InputStream in = connection.getInputStream()) {
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    body.append(new String(buffer, 0, read, StandardCharsets.UTF_8));
+                }
+            }
+            return body.toString();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String url = "http://127.0.0.1:5000";
+        String routes = "/hostA,/hostB";
+        int clients = 100;
+        int requests = 0;
+        long duration = 30;
+        long think = 0;
+        int batch = 1;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--url": url = args[++i]; break;
+                case "--routes": routes = args[++i]; break;
+                case "--clients": clients = Integer.parseInt(args[++i]); break;
+                case "--requests": requests = Integer.parseInt(args[++i]); break;
+                case "--duration": duration = Long.parseLong(args[++i]); break;
+                case "--think": think = Long.parseLong(args[++i]); break;
+                case "--batch": batch = Integer.parseInt(args[++i]); break;
+                default:
+                    System.err.println("Usage: LoadGenerator [--url URL] [--routes /hostA,/hostB] [--clients N]"
+                            + " [--requests PER_CLIENT] [--duration SECONDS] [--think MILLISECONDS] [--batch OPERATIONS]");
+                    System.exit(2);
+            }
+        }
+        LoadGenerator generator = new LoadGenerator(url, routes.split(","), clients, requests, duration * 1000, think, batch);
+        System.out.println(generator.run());
+    }
+}
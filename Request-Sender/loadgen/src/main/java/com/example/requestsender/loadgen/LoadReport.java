@@ -0,0 +1,66 @@
+package com.example.requestsender.loadgen;
+
+import com.example.requestsender.core.LatencyHistogram;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/* CLASS: LoadReport
+ * ATTRIBUTES:
+ *      - LatencyHistogram latencies: round-trip time of every answered request, in nanoseconds
+ *      - AtomicLong granted: responses with a correct checksum that granted the access ("VALIDATED US")
+ *      - AtomicLong rejected: responses with a correct checksum that denied the access ("REJECTED US")
+ *      - AtomicLong desyncs: responses with a wrong checksum ("ISSUED A WRONG CHECKSUM"), including the
+ *        requests denied by the server because the chains of the client and the server diverged
+ *      - AtomicLong resyncs: wrong checksums after which the client caught up with the server chain
+ *      - AtomicLong errors: requests that got no response (connection or protocol error)
+ *      - long elapsedNanos: duration of the run
+ *
+ * AIM: Results of a LoadGenerator run, filled by every simulated client at the same time. The outcomes
+ *      are counted per operation (several per request in batch mode), the latencies per request.
+ */
+public final class LoadReport {
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    final AtomicLong granted = new AtomicLong();
+    final AtomicLong rejected = new AtomicLong();
+    final AtomicLong desyncs = new AtomicLong();
+    final AtomicLong resyncs = new AtomicLong();
+    final AtomicLong errors = new AtomicLong();
+    private volatile long elapsedNanos;
+
+    public LatencyHistogram getLatencies() { return this.latencies; } //Latencies in nanoseconds
+    public long getGranted() { return this.granted.get(); } //Granted property
+    public long getRejected() { return this.rejected.get(); } //Rejected property
+    public long getDesyncs() { return this.desyncs.get(); } //Desyncs property
+    public long getResyncs() { return this.resyncs.get(); } //Resynchronizations property
+    public long getErrors() { return this.errors.get(); } //Errors property
+    public long getElapsedNanos() { return this.elapsedNanos; } //Duration of the run
+    void setElapsedNanos(long elapsedNanos) { this.elapsedNanos = elapsedNanos; }
+
+    public long getResponses() { return getGranted() + getRejected() + getDesyncs(); } //Answered operations
+
+    //Answered operations per second
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0 : getResponses() * 1e9 / elapsedNanos;
+    }
+
+    //Share of the answered operations whose checksum was wrong
+    public double getDesyncRate() {
+        long responses = getResponses();
+        return responses == 0 ? 0 : (double) getDesyncs() / responses;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT,
+                "operations: %d answered, %d failed requests in %.1f s%n"
+                        + "throughput: %.0f operations/s%n"
+                        + "latency (ms): p50 %.3f - p99 %.3f - p99.9 %.3f - max %.3f - mean %.3f%n"
+                        + "outcomes: %d validated, %d rejected, %d wrong checksums (desync rate %.4f%%), %d resynchronizations",
+                getResponses(), getErrors(), elapsedNanos / 1e9,
+                getThroughput(),
+                latencies.percentile(50) / 1e6, latencies.percentile(99) / 1e6, latencies.percentile(99.9) / 1e6,
+                latencies.getMax() / 1e6, latencies.getMean() / 1e6,
+                getGranted(), getRejected(), getDesyncs(), getDesyncRate() * 100, getResyncs());
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.requestsender.loadgen;
+
+import com.example.requestsender.server.VerificationServer;
+
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+
+import static org.junit.Assert.*;
+
+public class LoadGeneratorTest {
+    @Test
+    public void run_reportsEveryExchangeWithoutDesync() throws Exception {
+        VerificationServer server = new VerificationServer(new InetSocketAddress("127.0.0.1", 0), 4, 128, null);
+        server.start();
+        try {
+            LoadGenerator generator = new LoadGenerator("http://127.0.0.1:" + server.getPort(),
+                    new String[]{"/hostA", "/hostB"}, 8, 25, 60000, 0);
+            LoadReport report = generator.run();
+            assertEquals(0, report.getErrors());
+            assertEquals(200, report.getResponses());
+            assertEquals(200, report.getGranted());
+            assertEquals(0.0, report.getDesyncRate(), 0);
+            assertEquals(200, report.getLatencies().getCount());
+            assertTrue(report.getLatencies().percentile(99.9) >= report.getLatencies().percentile(50));
+            assertEquals(4, server.getRoute("/hostB").getClientCount());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void batchMode_countsEveryOperation() throws Exception {
+        VerificationServer server = new VerificationServer(new InetSocketAddress("127.0.0.1", 0), 2, 128, null);
+        server.start();
+        try {
+            LoadReport report = new LoadGenerator("http://127.0.0.1:" + server.getPort(),
+                    new String[]{"/hostA"}, 2, 10, 60000, 0, 8).run();
+            assertEquals(160, report.getGranted());
+            assertEquals(20, report.getLatencies().getCount());
+            assertEquals(160, server.getRoute("/hostA").getClient("loadgen-1").getNbPacket());
+        } finally {
+            server.stop(0);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.requestsender.server;
+
+import com.example.requestsender.core.Host;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/* CLASS: ClientStateStore
+ * ATTRIBUTES:
+ *      - Partition[] partitions: the shards of the store (a power of two), each with its own lock
+ *      - int mask: partitions.length - 1, to find the partition of a client id
+ *      - int maxPerPartition: maximum number of states of a partition (0: no limit)
+ *
+ * AIM: Keep the hash chain state (a Host) of every client of every protected route of the server, so
+ *      that requests of different clients are verified in parallel, whatever the number of routes.
+ *
+ * PROCESS:
+ *      1. A client id is always stored in the same partition, chosen from the hash of the id: the
+ *         states of one client on every route are in the same partition, and the clients are spread
+ *         evenly across the partitions
+ *      2. Each partition has its own read-write lock, only held to find or insert a state: finding
+ *         states (the usual case) only takes the read lock, so it never waits for another finding, and
+ *         insertions only block the clients of one partition
+ *      3. The verification itself is done without any lock, by the compare-and-set transitions of
+ *         the Host of the client (see Host.acceptRequests())
+ *      4. Anyone can create a state (the first checksum only depends on the X-Time-Sent and X-Client-Id
+ *         headers), so the number of states is bounded: when a partition is full, the new clients are
+ *         refused. A state is never evicted, since its client could not create it again: after its first
+ *         request, the client no longer sends its time (see Host.generateHeaders()). A flood of new clients
+ *         can then keep new clients out, but never the clients already known.
+ *      With several partitions per core, two requests of different clients almost never touch the same
+ *      lock, so the throughput grows with the number of cores.
+ */
+public final class ClientStateStore {
+    public static final int DEFAULT_MAX_STATES = 100000;
+
+    private final Partition[] partitions;
+    private final int mask;
+    private final int maxPerPartition;
+
+    /* CLASS: Partition
+     * AIM: One shard: the states of its clients, indexed by route and client id, and the lock guarding them
+     */
+    private static final class Partition {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final Map<String, Host> states = new HashMap<>();
+    }
+
+    /* CONSTRUCTOR
+     * Create a store of "partitions" shards (rounded up to a power of two), holding at most about
+     * "maxStates" states (0: no limit, rounded up to a multiple of the number of partitions)
+     */
+    public ClientStateStore(int partitions, int maxStates) {
+        int count = Integer.highestOneBit(Math.max(1, partitions - 1)) << 1;
+        if (partitions <= 1) {
+            count = 1;
+        }
+        this.partitions = new Partition[count];
+        for (int i = 0; i < count; i++) {
+            this.partitions[i] = new Partition();
+        }
+        this.mask = count - 1;
+        this.maxPerPartition = maxStates <= 0 ? 0 : (maxStates + count - 1) / count;
+    }
+
+    //Default bound: DEFAULT_MAX_STATES states
+    public ClientStateStore(int partitions) {
+        this(partitions, DEFAULT_MAX_STATES);
+    }
+
+    //Default size: 4 partitions per processor
+    public ClientStateStore() {
+        this(4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    public int getPartitionCount() { return this.partitions.length; } //Number of shards
+
+    /* FUNCTION: get(String route, String clientId)
+     * RETURNS: Host (null if the client never sent a legitimate request to the route)
+     */
+    public Host get(String route, String clientId) {
+        Partition partition = partitionOf(clientId);
+        partition.lock.readLock().lock();
+        try {
+            return partition.states.get(key(route, clientId));
+        } finally {
+            partition.lock.readLock().unlock();
+        }
+    }
+
+    /* FUNCTION: putIfAbsent(String route, String clientId, Host state)
+     * RETURNS: Host (the state stored for the client: "state", or the one another request stored first;
+     * null if the partition is full, see step 4 above)
+     */
+    public Host putIfAbsent(String route, String clientId, Host state) {
+        Partition partition = partitionOf(clientId);
+        String key = key(route, clientId);
+        partition.lock.writeLock().lock();
+        try {
+            Host existing = partition.states.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            if (maxPerPartition > 0 && partition.states.size() >= maxPerPartition) {
+                return null;
+            }
+            partition.states.put(key, state);
+            return state;
+        } finally {
+            partition.lock.writeLock().unlock();
+        }
+    }
+
+    /* FUNCTION: size(String route)
+     * RETURNS: int (number of clients of the route, across every partition)
+     */
+    public int size(String route) {
+        String prefix = route + KEY_SEPARATOR;
+        int size = 0;
+        for (Partition partition : partitions) {
+            partition.lock.readLock().lock();
+            try {
+                for (String key : partition.states.keySet()) {
+                    if (key.startsWith(prefix)) {
+                        size++;
+                    }
+                }
+            } finally {
+                partition.lock.readLock().unlock();
+            }
+        }
+        return size;
+    }
+
+    //Number of states (all routes) in each partition, to check how evenly the clients are spread
+    public int[] getPartitionSizes() {
+        int[] sizes = new int[partitions.length];
+        for (int i = 0; i < partitions.length; i++) {
+            partitions[i].lock.readLock().lock();
+            try {
+                sizes[i] = partitions[i].states.size();
+            } finally {
+                partitions[i].lock.readLock().unlock();
+            }
+        }
+        return sizes;
+    }
+
+    //region Utilities
+    private static final char KEY_SEPARATOR = '\n'; //Cannot be part of a route nor of a header value
+
+    private static String key(String route, String clientId) {
+        return route + KEY_SEPARATOR + clientId;
+    }
+
+    //Partition of a client id (step 1 above): the bits of the hash are spread like in HashMap
+    private Partition partitionOf(String clientId) {
+        int hash = clientId.hashCode();
+        return partitions[(hash ^ (hash >>> 16)) & mask];
+    }
+    //endregion
+}
@@ -0,0 +1,210 @@
+package com.example.requestsender.server;
+
+import com.example.requestsender.core.ChecksumEncoding;
+import com.example.requestsender.core.ChecksumMode;
+import com.example.requestsender.core.Host;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+
+/* CLASS: VerificationHandler implements HttpHandler
+ * ATTRIBUTES:
+ *      - String page: name of the route given in the responses ("A" for /hostA)
+ *      - ClientStateStore clients: state of every client, shared by the routes of the server and
+ *        indexed by route and client key
+ *      - int resyncWindow: number of exchanges searched to resynchronize with a client (0: disabled)
+ *
+ * AIM: One route of the verification server. It behaves like the routes of PythonServer/server-v2.py,
+ *      with the state of each client kept in a sharded store instead of global lists.
+ *
+ * PROCESS:
+ *      1. Get the key of the client: the X-Client-Id header if there is one (several simulated clients
+ *         behind one address), otherwise its IP address, as the Python server does
+ *      2. Look for the client. An unknown client is created with the X-Time-Sent header of its first
+ *         request, but only if the request is legitimate for this time and packet 0: a request with a
+ *         wrong first checksum never creates a state that could not be used afterwards. The checksum
+ *         mode and encoding of the client are the ones of its first request (X-Checksum-Mode, LEGACY
+ *         without it, and X-Checksum-Encoding, HEX without it): a later request using another mode or
+ *         encoding, or an unknown one, is denied. X-Time-Sent is read as UTF-8, the encoding the clients
+ *         use for the times of the hosts created before the times were ASCII. The new client is denied
+ *         if the store is full of clients in use (see ClientStateStore)
+ *      3. Verify the checksum of the request with Host.acceptRequests(), which consumes the packet
+ *         number of the request and of its response in one compare-and-set. A request using one of the
+ *         "resyncWindow" exchanges after the expected one is accepted too (its client lost requests)
+ *      4. If it is legitimate, reply "GRANTED" with the checksum of the response (packet N + 1), and
+ *         confirm the checksum mode and encoding in X-Checksum-Mode and X-Checksum-Encoding if they are
+ *         not LEGACY and HEX
+ *      5. If it is not, reply "DENIED" with a placeholder instead of a checksum, so that nothing can be
+ *         learned about the expected value. If the client is known, the X-Resync header gives the
+ *         checksum of its last response, so that a client that is behind can catch up (see Host)
+ *
+ * BATCHES: A request with an X-Batch-Size header of K carries the checksums of K consecutive requests
+ *      (N, N + 2...) in X-CheckSum, separated by Host.BATCH_SEPARATOR. The whole batch is verified with
+ *      Host.acceptRequests() and, if it is legitimate, the response carries the K response checksums
+ *      (N + 1, N + 3...) in the same format. A batch is accepted or denied as a whole.
+ */
+public class VerificationHandler implements HttpHandler {
+    public static final String CLIENT_ID_HEADER = "X-Client-Id";
+    public static final String TIME_HEADER = "X-Time-Sent";
+    public static final String CHECKSUM_HEADER = "X-CheckSum";
+    public static final String BATCH_HEADER = "X-Batch-Size";
+    public static final int MAX_BATCH_SIZE = 256;
+    public static final String DENIED_CHECKSUM = "[YOU ARE NOT GETTING IT]";
+
+    private final String page;
+    private final ClientStateStore clients;
+    private final int resyncWindow;
+
+    public VerificationHandler(String page, ClientStateStore clients, int resyncWindow) {
+        this.page = page;
+        this.clients = clients;
+        this.resyncWindow = resyncWindow;
+    }
+
+    public VerificationHandler(String page) {
+        this(page, new ClientStateStore(), Host.DEFAULT_RESYNC_WINDOW);
+    }
+
+    public String getPage() { return this.page; } //Route name property
+    public Host getClient(String key) { return this.clients.get(page, key); } //State of a client of the route
+    public int getClientCount() { return this.clients.size(page); } //Number of clients of the route
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try {
+            drain(exchange.getRequestBody()); //The connection can only be reused once the body was read
+            Headers headers = exchange.getRequestHeaders();
+            String[] checksums = splitChecksums(headers.getFirst(CHECKSUM_HEADER), headers.getFirst(BATCH_HEADER));
+            String key = headers.getFirst(CLIENT_ID_HEADER); //STEP 1
+            if (key == null) {
+                key = exchange.getRemoteAddress().getAddress().getHostAddress();
+            }
+            ChecksumMode mode = ChecksumMode.fromHeader(headers.getFirst(ChecksumMode.HEADER));
+            ChecksumEncoding encoding = ChecksumEncoding.fromHeader(headers.getFirst(ChecksumEncoding.HEADER));
+            Host client = checksums == null || mode == null || encoding == null ? null
+                    : findClient(key, utf8Header(headers.getFirst(TIME_HEADER)), mode, encoding, checksums[0]); //STEP 2
+            long responsePacket = client == null ? -1 : client.acceptRequests(checksums, resyncWindow); //STEP 3
+            if (responsePacket >= 0 && mode != ChecksumMode.LEGACY) {
+                exchange.getResponseHeaders().set(ChecksumMode.HEADER, mode.getName());
+            }
+            if (responsePacket >= 0 && encoding != ChecksumEncoding.HEX) {
+                exchange.getResponseHeaders().set(ChecksumEncoding.HEADER, encoding.getName());
+            }
+            if (responsePacket >= 0 && checksums.length == 1) { //STEP 4
+                respond(exchange, "Host " + page + " - GRANTED - Packet no: " + responsePacket,
+                        client.generateHash(responsePacket));
+            }
+            else if (responsePacket >= 0) {
+                StringBuilder responseChecksums = new StringBuilder();
+                for (int i = 0; i < checksums.length; i++) {
+                    if (i > 0) {
+                        responseChecksums.append(Host.BATCH_SEPARATOR);
+                    }
+                    responseChecksums.append(client.generateHash(responsePacket + 2L * i));
+                }
+                respond(exchange, "Host " + page + " - GRANTED - Packets no: " + responsePacket + " to "
+                        + (responsePacket + 2L * (checksums.length - 1)), responseChecksums.toString());
+            }
+            else { //STEP 5
+                String proof = client == null || resyncWindow <= 0 ? null : client.resyncProof();
+                if (proof != null) {
+                    exchange.getResponseHeaders().set(Host.RESYNC_HEADER, proof);
+                }
+                respond(exchange, "Host " + page + "- DENIED", DENIED_CHECKSUM);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /* FUNCTION: findClient(String key, String time, ChecksumMode mode, ChecksumEncoding encoding, String checksum)
+     * RETURNS: Host (null if the client is unknown and its request cannot create it, or if it uses
+     * another checksum mode or encoding, or if the store has no room for a new client)
+     * PARAMETERS:
+     *      - String key: key of the client
+     *      - String time: value of the X-Time-Sent header (may be null)
+     *      - ChecksumMode mode: checksum mode of the request
+     *      - ChecksumEncoding encoding: checksum encoding of the request
+     *      - String checksum: value of the X-CheckSum header (may be null)
+     *
+     * AIM: Return the state of the client, creating it on its first legitimate request (step 2 above)
+     */
+    private Host findClient(String key, String time, ChecksumMode mode, ChecksumEncoding encoding, String checksum) {
+        Host client = clients.get(page, key);
+        if (client != null) {
+            return client.getChecksumMode() == mode && client.getChecksumEncoding() == encoding ? client : null;
+        }
+        if (time == null) {
+            return null;
+        }
+        Host created = new Host(key, time, 0);
+        created.setChecksumMode(mode);
+        created.setChecksumEncoding(encoding);
+        if (!created.checksumMatches(0, checksum)) {
+            return null;
+        }
+        return clients.putIfAbsent(page, key, created); //If another request created the client first, its state is the one used (null if full)
+    }
+
+    /* FUNCTION: splitChecksums(String checksum, String batchSize)
+     * RETURNS: String[] (null if the headers are not consistent)
+     * PARAMETERS:
+     *      - String checksum: value of the X-CheckSum header (may be null)
+     *      - String batchSize: value of the X-Batch-Size header (null for a single request)
+     *
+     * AIM: Return the checksums of the requests carried by the HTTP request (one, or K for a batch)
+     */
+    static String[] splitChecksums(String checksum, String batchSize) {
+        if (batchSize == null) {
+            return new String[]{checksum};
+        }
+        if (checksum == null) {
+            return null;
+        }
+        int count;
+        try {
+            count = Integer.parseInt(batchSize.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        String[] checksums = checksum.split(Host.BATCH_SEPARATOR, -1);
+        return count < 1 || count > MAX_BATCH_SIZE || checksums.length != count ? null : checksums;
+    }
+
+    //Value of a header sent in UTF-8 (HttpServer reads the header bytes as ISO-8859-1), as is if it is not UTF-8
+    static String utf8Header(String value) {
+        if (value == null) {
+            return null;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.ISO_8859_1);
+        try {
+            return StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(bytes)).toString();
+        } catch (CharacterCodingException e) {
+            return value;
+        }
+    }
+
+    private static void respond(HttpExchange exchange, String body, String checksum) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set(CHECKSUM_HEADER, checksum);
+        exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void drain(InputStream body) throws IOException {
+        byte[] skipped = new byte[512];
+        while (body.read(skipped) >= 0) {
+            //The body of the requests is not used
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.example.requestsender.server;
+
+import com.example.requestsender.core.Host;
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+
+/* CLASS: VerificationServer
+ * ATTRIBUTES:
+ *      - HttpServer server: the JDK HTTP (or HTTPS) server
+ *      - ExecutorService executor: the worker threads running the handlers
+ *      - ClientStateStore clients: the state of every client of every route, sharded by client id
+ *      - int resyncWindow: number of exchanges searched to resynchronize with a client (0: disabled)
+ *      - Map<String, VerificationHandler> routes: the handler of each route ("/hostA", "/hostB"...)
+ *
+ * AIM: Server verifying the security headers of the client application, able to serve many clients
+ *      at the same time, with the same routes and headers as PythonServer/server-v2.py.
+ *
+ * PROCESS:
+ *      1. The JDK server accepts and parses the connections on its dispatcher thread, and hands each
+ *         request to a fixed pool of worker threads (one per processor by default, as the work is the
+ *         computation of two SHA-256). The connections are kept alive between requests.
+ *      2. Each route has its own VerificationHandler, and the state of a client is kept per route, so
+ *         that /hostA and /hostB behave like two different servers. Any number of routes can be served.
+ *      3. The states are kept in one ClientStateStore, split in lock-striped partitions by client id:
+ *         the workers only share the state of one client when they handle requests of the same client,
+ *         and only share a lock when two new clients of the same partition arrive at the same time.
+ *         The store holds at most "--max-clients" states: once it is full, the new clients are denied.
+ *
+ * USAGE: VerificationServer [--bind ADDRESS] [--port PORT] [--threads N] [--backlog N]
+ *                           [--routes /hostA,/hostB,...] [--partitions N] [--resync EXCHANGES]
+ *                           [--max-clients N] [--keystore FILE.p12 --password PASSWORD]
+ *      With a PKCS12 keystore (e.g. made with "openssl pkcs12 -export" from the certificate and key of
+ *      the "certs" folder) the server uses HTTPS, like the Flask server.
+ */
+public class VerificationServer {
+    public static final String[] DEFAULT_ROUTES = {"/hostA", "/hostB"};
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ClientStateStore clients;
+    private final int resyncWindow;
+    private final Map<String, VerificationHandler> routes = new LinkedHashMap<>();
+
+    /* CONSTRUCTOR
+     * Bind the server and register the routes. Nothing is served before start().
+     *      - String[] routes: paths of the protected routes
+     *      - ClientStateStore clients: the store of the client states (partitions and bounds)
+     *      - int resyncWindow: number of exchanges searched to resynchronize with a client (0: disabled)
+     *      - SSLContext sslContext: null for plain HTTP
+     */
+    public VerificationServer(InetSocketAddress address, int threads, int backlog, String[] routes,
+                              ClientStateStore clients, int resyncWindow, SSLContext sslContext) throws IOException {
+        if (sslContext == null) {
+            server = HttpServer.create(address, backlog);
+        }
+        else {
+            HttpsServer https = HttpsServer.create(address, backlog);
+            https.setHttpsConfigurator(new HttpsConfigurator(sslContext));
+            server = https;
+        }
+        AtomicInteger workers = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), task -> {
+            Thread worker = new Thread(task, "verifier-" + workers.incrementAndGet());
+            worker.setDaemon(true);
+            return worker;
+        });
+        server.setExecutor(executor);
+        this.clients = clients;
+        this.resyncWindow = resyncWindow;
+        for (String route : routes) {
+            addRoute(route);
+        }
+    }
+
+    //Default routes, client store (4 partitions per processor, default bounds) and resynchronization window
+    public VerificationServer(InetSocketAddress address, int threads, int backlog, SSLContext sslContext) throws IOException {
+        this(address, threads, backlog, DEFAULT_ROUTES, new ClientStateStore(), Host.DEFAULT_RESYNC_WINDOW, sslContext);
+    }
+
+    public VerificationServer(int port) throws IOException {
+        this(new InetSocketAddress(port), Runtime.getRuntime().availableProcessors(), 1024, null);
+    }
+
+    public int getPort() { return server.getAddress().getPort(); } //Port property (useful when bound to port 0)
+    public VerificationHandler getRoute(String path) { return routes.get(path); } //Handler of a route
+    public ClientStateStore getClients() { return this.clients; } //State of the clients of every route
+
+    /* FUNCTION: addRoute(String path)
+     * RETURNS: VerificationHandler (the handler of the route)
+     * PARAMETERS:
+     *      - String path: path of the route ("/hostC")
+     *
+     * AIM: Protect a new route. Its name in the responses is the path without "/" and "host" ("C")
+     */
+    public synchronized VerificationHandler addRoute(String path) {
+        if (!path.startsWith("/")) {
+            throw new IllegalArgumentException("A route must start with '/': " + path);
+        }
+        if (routes.containsKey(path)) {
+            throw new IllegalArgumentException("The route is already served: " + path);
+        }
+        String page = path.substring(1);
+        if (page.startsWith("host") && page.length() > 4) {
+            page = page.substring(4);
+        }
+        VerificationHandler handler = new VerificationHandler(page, clients, resyncWindow);
+        routes.put(path, handler);
+        server.createContext(path, handler);
+        return handler;
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /* FUNCTION: stop(int delaySeconds)
+     * RETURNS: void
+     * PARAMETERS:
+     *      - int delaySeconds: maximum time given to the requests being handled
+     *
+     * AIM: Stop accepting requests, then stop the worker threads
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    /* FUNCTION: loadSslContext(String keystore, char[] password)
+     * RETURNS: SSLContext
+     *
+     * AIM: Create the TLS context of the server from a PKCS12 keystore holding its certificate and key
+     */
+    static SSLContext loadSslContext(String keystore, char[] password) throws IOException, GeneralSecurityException {
+        KeyStore keys = KeyStore.getInstance("PKCS12");
+        try (InputStream in = new FileInputStream(keystore)) {
+            keys.load(in, password);
+        }
+        KeyManagerFactory managers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        managers.init(keys, password);
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(managers.getKeyManagers(), null, null);
+        return context;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String bind = "0.0.0.0";
+        int port = 5000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int backlog = 1024;
+        String[] routes = DEFAULT_ROUTES;
+        int partitions = 0; //4 per worker thread by default
+        int resyncWindow = Host.DEFAULT_RESYNC_WINDOW;
+        int maxClients = ClientStateStore.DEFAULT_MAX_STATES;
+        String keystore = null;
+        String password = "";
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--bind": bind = args[++i]; break;
+                case "--port": port = Integer.parseInt(args[++i]); break;
+                case "--threads": threads = Integer.parseInt(args[++i]); break;
+                case "--backlog": backlog = Integer.parseInt(args[++i]); break;
+                case "--routes": routes = args[++i].split(","); break;
+                case "--partitions": partitions = Integer.parseInt(args[++i]); break;
+                case "--resync": resyncWindow = Integer.parseInt(args[++i]); break;
+                case "--max-clients": maxClients = Integer.parseInt(args[++i]); break;
+                case "--keystore": keystore = args[++i]; break;
+                case "--password": password = args[++i]; break;
+                default:
+                    System.err.println("Usage: VerificationServer [--bind ADDRESS] [--port PORT] [--threads N]"
+                            + " [--backlog N] [--routes /hostA,/hostB,...] [--partitions N] [--resync EXCHANGES]"
+                            + " [--max-clients N] [--keystore FILE.p12 --password PASSWORD]");
+                    System.exit(2);
+            }
+        }
+        if (partitions <= 0) {
+            partitions = 4 * threads;
+        }
+        SSLContext sslContext = keystore == null ? null : loadSslContext(keystore, password.toCharArray());
+        VerificationServer server = new VerificationServer(new InetSocketAddress(bind, port), threads, backlog,
+                routes, new ClientStateStore(partitions, maxClients), resyncWindow, sslContext);
+        server.start();
+        System.out.println("Verification server listening on " + bind + ":" + server.getPort()
+                + (sslContext == null ? " (HTTP)" : " (HTTPS)") + " with " + threads + " workers, "
+                + server.getClients().getPartitionCount() + " client partitions, routes " + String.join(", ", routes));
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.requestsender.server;
+
+import com.example.requestsender.core.Host;
+
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ClientStateStoreTest {
+    @Test
+    public void partitions_areRoundedToAPowerOfTwo() {
+        assertEquals(1, new ClientStateStore(1).getPartitionCount());
+        assertEquals(8, new ClientStateStore(5).getPartitionCount());
+        assertEquals(16, new ClientStateStore(16).getPartitionCount());
+    }
+
+    @Test
+    public void states_areKeptPerRoute() {
+        ClientStateStore store = new ClientStateStore(4);
+        Host a = new Host("client", "time", 0);
+        assertSame(a, store.putIfAbsent("A", "client", a));
+        assertSame(a, store.putIfAbsent("A", "client", new Host("client", "other time", 0)));
+        assertNull(store.get("B", "client"));
+        Host b = new Host("client", "time", 0);
+        store.putIfAbsent("B", "client", b);
+        assertSame(b, store.get("B", "client"));
+        assertEquals(1, store.size("A"));
+        assertEquals(1, store.size("B"));
+    }
+
+    @Test
+    public void concurrentClients_areSpreadAcrossPartitions() throws Exception {
+        ClientStateStore store = new ClientStateStore(8);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        Future<?>[] results = new Future<?>[4];
+        for (int t = 0; t < results.length; t++) {
+            int thread = t;
+            results[t] = executor.submit(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    String id = "client-" + (thread * 1000 + i);
+                    store.putIfAbsent("A", id, new Host(id, "time", 0));
+                }
+            });
+        }
+        for (Future<?> result : results) {
+            result.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        assertEquals(4000, store.size("A"));
+        int total = 0;
+        for (int size : store.getPartitionSizes()) {
+            assertTrue(size > 0);
+            total += size;
+        }
+        assertEquals(4000, total);
+    }
+
+    @Test
+    public void fullStore_refusesNewClientsAndKeepsTheKnownOnes() {
+        ClientStateStore store = new ClientStateStore(1, 2);
+        Host first = new Host("first", "time", 0);
+        store.putIfAbsent("A", "first", first);
+        store.putIfAbsent("A", "second", new Host("second", "time", 0));
+        assertNull(store.putIfAbsent("A", "third", new Host("third", "time", 0)));
+        assertNull(store.get("A", "third"));
+        assertSame(first, store.putIfAbsent("A", "first", new Host("first", "other time", 0)));
+        assertSame(first, store.get("A", "first"));
+        assertEquals(2, store.size("A"));
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.requestsender.server;
+
+import com.example.requestsender.core.ChecksumEncoding;
+import com.example.requestsender.core.ChecksumMode;
+import com.example.requestsender.core.Host;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class VerificationServerTest {
+    private VerificationServer server;
+
+    @Before
+    public void start() throws Exception {
+        server = new VerificationServer(new InetSocketAddress("127.0.0.1", 0), 4, 128, null);
+        server.start();
+    }
+
+    @After
+    public void stop() {
+        server.stop(0);
+    }
+
+    //Send one request with the given headers, return the checksum of the response followed by its body
+    private String[] send(String route, String clientId, Map<String, String> headers) throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + server.getPort() + route).openConnection();
+        if (clientId != null) {
+            connection.setRequestProperty(VerificationHandler.CLIENT_ID_HEADER, clientId);
+        }
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            connection.setRequestProperty(header.getKey(), header.getValue());
+        }
+        assertEquals(200, connection.getResponseCode());
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream in = connection.getInputStream()) {
+            byte[] buffer = new byte[256];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                body.write(buffer, 0, read);
+            }
+        }
+        return new String[]{connection.getHeaderField(VerificationHandler.CHECKSUM_HEADER), body.toString("UTF-8")};
+    }
+
+    private String[] exchange(String route, String clientId, Host client) throws Exception {
+        long packet = client.beginExchange();
+        String[] response = send(route, clientId, client.generateHeaders(packet));
+        if (response[1].contains("GRANTED")) {
+            assertTrue(client.verifyResponse(packet, response[0]));
+        }
+        return response;
+    }
+
+    @Test
+    public void exchanges_followTheClientChain() throws Exception {
+        Host client = new Host("http://127.0.0.1/hostA", "23 mars 2023 02:03:32", 0);
+        for (int i = 0; i < 3; i++) {
+            String[] response = exchange("/hostA", null, client);
+            assertEquals("Host A - GRANTED - Packet no: " + (2 * i + 1), response[1]);
+        }
+        assertEquals(6, client.getNbVerified());
+        assertEquals(6, server.getRoute("/hostA").getClient("127.0.0.1").getNbPacket());
+        assertNull(server.getRoute("/hostB").getClient("127.0.0.1"));
+    }
+
+    @Test
+    public void replayedOrUnknownRequests_areDenied() throws Exception {
+        Host client = new Host("http://127.0.0.1/hostB", "23 mars 2023 02:03:32", 0);
+        Map<String, String> first = client.generateHeaders(client.beginExchange());
+        assertTrue(send("/hostB", "replay", first)[1].contains("GRANTED"));
+        String[] replayed = send("/hostB", "replay", first);
+        assertEquals("Host B- DENIED", replayed[1]);
+        assertEquals(VerificationHandler.DENIED_CHECKSUM, replayed[0]);
+
+        Host late = new Host("http://127.0.0.1/hostB", "23 mars 2023 02:03:32", 4); //Never sent the first request
+        assertTrue(send("/hostB", "late", late.generateHeaders(late.beginExchange()))[1].contains("DENIED"));
+        assertNull(server.getRoute("/hostB").getClient("late"));
+    }
+
+    @Test
+    public void concurrentClients_keepSeparateChains() throws Exception {
+        int clients = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        Future<?>[] results = new Future<?>[clients];
+        for (int i = 0; i < clients; i++) {
+            String id = "client-" + i;
+            results[i] = executor.submit(() -> {
+                Host client = new Host("http://127.0.0.1/hostA", "time of " + id, 0);
+                for (int j = 0; j < 50; j++) {
+                    assertTrue(exchange("/hostA", id, client)[1].contains("GRANTED"));
+                }
+                return null;
+            });
+        }
+        for (Future<?> result : results) {
+            result.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        assertEquals(clients, server.getRoute("/hostA").getClientCount());
+    }
+
+    @Test
+    public void batches_areVerifiedAsAWhole() throws Exception {
+        Host client = new Host("http://127.0.0.1/hostA", "23 mars 2023 02:03:32", 0);
+        assertTrue(exchange("/hostA", "batch", client)[1].contains("GRANTED"));
+        long first = client.beginExchanges(4);
+        String[] response = send("/hostA", "batch", client.generateBatchHeaders(first, 4));
+        assertEquals("Host A - GRANTED - Packets no: 3 to 9", response[1]);
+        assertTrue(client.verifyBatchResponse(first, 4, response[0]));
+        assertEquals(10, client.getNbVerified());
+
+        Map<String, String> inconsistent = client.generateBatchHeaders(client.beginExchanges(2), 2);
+        inconsistent.put(VerificationHandler.BATCH_HEADER, "3");
+        assertEquals(VerificationHandler.DENIED_CHECKSUM, send("/hostA", "batch", inconsistent)[0]);
+        assertEquals(10, server.getRoute("/hostA").getClient("batch").getNbPacket());
+    }
+
+    @Test
+    public void addedRoutes_haveTheirOwnChains() throws Exception {
+        VerificationHandler handler = server.addRoute("/hostC");
+        assertEquals("C", handler.getPage());
+        Host client = new Host("http://127.0.0.1/hostC", "23 mars 2023 02:03:32", 0);
+        assertEquals("Host C - GRANTED - Packet no: 1", exchange("/hostC", "multi", client)[1]);
+        assertEquals(2, handler.getClient("multi").getNbPacket());
+        assertNull(server.getRoute("/hostA").getClient("multi"));
+    }
+
+    @Test
+    public void lostExchanges_areResynchronized() throws Exception {
+        Host client = new Host("http://127.0.0.1/hostA", "23 mars 2023 02:03:32", 0);
+        assertTrue(exchange("/hostA", "lossy", client)[1].contains("GRANTED"));
+        client.beginExchanges(2); //Lost before reaching the server
+        assertTrue(exchange("/hostA", "lossy", client)[1].contains("GRANTED"));
+
+        Host restarted = new Host("http://127.0.0.1/hostA", "23 mars 2023 02:03:32", 2); //Saved before the last exchanges
+        Map<String, String> headers = restarted.generateHeaders(restarted.beginExchange());
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + server.getPort() + "/hostA").openConnection();
+        connection.setRequestProperty(VerificationHandler.CLIENT_ID_HEADER, "lossy");
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            connection.setRequestProperty(header.getKey(), header.getValue());
+        }
+        assertEquals(200, connection.getResponseCode());
+        connection.getInputStream().close();
+        assertEquals(8, restarted.resynchronize(connection.getHeaderField(Host.RESYNC_HEADER), Host.DEFAULT_RESYNC_WINDOW));
+        assertEquals("Host A - GRANTED - Packet no: 9", exchange("/hostA", "lossy", restarted)[1]);
+    }
+
+    @Test
+    public void hmacClients_keepTheirMode() throws Exception {
+        Host client = new Host("http://127.0.0.1/hostA", "23 mars 2023 02:03:32", 0);
+        client.setChecksumMode(ChecksumMode.HMAC_SHA256);
+        assertEquals("Host A - GRANTED - Packet no: 1", exchange("/hostA", "keyed", client)[1]);
+        assertEquals(ChecksumMode.HMAC_SHA256, server.getRoute("/hostA").getClient("keyed").getChecksumMode());
+
+        Host legacy = new Host("http://127.0.0.1/hostA", "23 mars 2023 02:03:32", 2); //Same chain position, legacy mode
+        assertEquals("Host A- DENIED", exchange("/hostA", "keyed", legacy)[1]);
+        assertEquals("Host A - GRANTED - Packet no: 3", exchange("/hostA", "keyed", client)[1]);
+        assertEquals(4, client.getNbVerified());
+    }
+
+    @Test
+    public void compactEncodings_areNegotiatedPerClient() throws Exception {
+        Host client = new Host("http://127.0.0.1/hostB", "23 mars 2023 02:03:32", 0);
+        client.setChecksumMode(ChecksumMode.HMAC_SHA256);
+        client.setChecksumEncoding(ChecksumEncoding.BASE64URL_128);
+        String[] response = exchange("/hostB", "compact", client);
+        assertEquals("Host B - GRANTED - Packet no: 1", response[1]);
+        assertEquals(ChecksumEncoding.BASE64URL_128.getLength(), response[0].length());
+
+        long first = client.beginExchanges(3);
+        String[] batch = send("/hostB", "compact", client.generateBatchHeaders(first, 3));
+        assertTrue(client.verifyBatchResponse(first, 3, batch[0]));
+        assertEquals(8, client.getNbVerified());
+
+        Host hex = new Host("http://127.0.0.1/hostB", "23 mars 2023 02:03:32", 8);
+        hex.setChecksumMode(ChecksumMode.HMAC_SHA256); //Same chain, hexadecimal encoding
+        assertEquals("Host B- DENIED", exchange("/hostB", "compact", hex)[1]);
+    }
+
+    @Test
+    public void fullStore_deniesNewClientsButNotTheKnownOnes() throws Exception {
+        server.stop(0);
+        server = new VerificationServer(new InetSocketAddress("127.0.0.1", 0), 4, 128, VerificationServer.DEFAULT_ROUTES,
+                new ClientStateStore(1, 1), Host.DEFAULT_RESYNC_WINDOW, null);
+        server.start();
+        Host known = new Host("http://127.0.0.1/hostA", "23 mars 2023 02:03:32", 0);
+        assertTrue(exchange("/hostA", "known", known)[1].contains("GRANTED"));
+
+        Host refused = new Host("http://127.0.0.1/hostA", "23 mars 2023 02:03:32", 0);
+        assertTrue(exchange("/hostA", "refused", refused)[1].contains("DENIED"));
+        assertNull(server.getRoute("/hostA").getClient("refused"));
+        for (int i = 0; i < 3; i++) {
+            assertTrue(exchange("/hostA", "known", known)[1].contains("GRANTED")); //Sends "[YOU HAVE TO KNOW]" as its time
+        }
+        assertEquals(8, known.getNbVerified());
+    }
+}